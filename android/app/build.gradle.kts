@@ -32,6 +32,7 @@ android {
 }
 
 dependencies {
+    implementation(project(":filter-core"))
     implementation(libs.androidx.appcompat)
     implementation(libs.google.material)
     implementation(libs.androidx.constraintlayout)
@@ -18,4 +18,12 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# Gson: the stored models (schedule, whitelist, rules, profiles, calendar instances, ...) are
+# read and written by the streaming adapters in ConfigJson and CalendarInstance, which name every
+# JSON field in code, so R8 is free to rename and shrink the model classes. List types are built
+# with TypeToken.getParameterized rather than anonymous TypeToken subclasses, so no generic
+# signatures need keeping either. Gson's own rules ship in its jar.
+# A new stored model needs an adapter there; without one Gson falls back to reflection and a
+# minified build writes obfuscated field names.
@@ -0,0 +1,60 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.Context;
+
+import com.shalev396.offdutycallfilter.core.BlockedCall;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single-writer queue that persists blocked calls off the screening path.
+ * Records that arrive while a write is in progress are batched into the next write.
+ */
+final class BlockedCallLogger {
+
+    private static BlockedCallLogger instance;
+
+    private final ConfigManager configManager;
+    private final LinkedBlockingQueue<BlockedCall> pending = new LinkedBlockingQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "BlockedCallLogger"));
+
+    private BlockedCallLogger(Context ctx) {
+        configManager = new ConfigManager(ctx);
+    }
+
+    static synchronized BlockedCallLogger getInstance(Context ctx) {
+        if (instance == null) {
+            instance = new BlockedCallLogger(ctx.getApplicationContext());
+        }
+        return instance;
+    }
+
+    void log(BlockedCall call) {
+        pending.offer(call);
+        if (drainScheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+    }
+
+    void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Blocked calls waiting to be written: " + pending.size());
+    }
+
+    private void drain() {
+        // Clear the flag first so a record queued during the write schedules another pass
+        drainScheduled.set(false);
+        List<BlockedCall> batch = new ArrayList<>();
+        pending.drainTo(batch);
+        if (!batch.isEmpty()) {
+            configManager.addBlockedCalls(batch);
+        }
+    }
+}
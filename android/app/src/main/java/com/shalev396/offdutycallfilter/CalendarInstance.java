@@ -0,0 +1,103 @@
+package com.shalev396.offdutycallfilter;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.shalev396.offdutycallfilter.core.ConfigJson;
+import com.shalev396.offdutycallfilter.core.ScheduleException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * One occurrence of an event from a synced calendar, during which calls are allowed.
+ */
+class CalendarInstance {
+
+    static final Type LIST_TYPE = ConfigJson.listOf(CalendarInstance.class);
+
+    // Same JSON as reflective Gson, see ConfigJson
+    static final TypeAdapter<CalendarInstance> JSON_ADAPTER = new TypeAdapter<CalendarInstance>() {
+        @Override
+        public void write(JsonWriter out, CalendarInstance instance) throws IOException {
+            out.beginObject();
+            out.name("eventId").value(instance.eventId);
+            out.name("begin").value(instance.begin);
+            out.name("end").value(instance.end);
+            out.name("allDay").value(instance.allDay);
+            out.endObject();
+        }
+
+        @Override
+        public CalendarInstance read(JsonReader in) throws IOException {
+            long eventId = 0;
+            long begin = 0;
+            long end = 0;
+            boolean allDay = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (ConfigJson.skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "eventId":
+                        eventId = in.nextLong();
+                        break;
+                    case "begin":
+                        begin = in.nextLong();
+                        break;
+                    case "end":
+                        end = in.nextLong();
+                        break;
+                    case "allDay":
+                        allDay = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new CalendarInstance(eventId, begin, end, allDay);
+        }
+    };
+
+    private final long eventId;
+    private final long begin;
+    private final long end;
+    private final boolean allDay;
+
+    CalendarInstance(long eventId, long begin, long end, boolean allDay) {
+        this.eventId = eventId;
+        this.begin = begin;
+        this.end = end;
+        this.allDay = allDay;
+    }
+
+    long getEventId() {
+        return eventId;
+    }
+
+    long getBegin() {
+        return begin;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * The provider stores all-day events at UTC midnight; they cover the same dates in every zone.
+     */
+    ScheduleException toScheduleException(ZoneId zone) {
+        return new ScheduleException(null, toLocal(begin, zone).toString(), toLocal(end, zone).toString(), true);
+    }
+
+    private LocalDateTime toLocal(long millis, ZoneId zone) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), allDay ? ZoneOffset.UTC : zone);
+    }
+}
@@ -0,0 +1,89 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The calendars chosen as allowed windows and the event instances {@link CalendarSync} last read
+ * from them. Only reads and writes storage; {@link ConfigManager} compiles the instances.
+ */
+final class CalendarStore {
+
+    private static final String PREFS = "call_filter_calendar";
+    private static final String KEY_CALENDAR_IDS = "calendar_ids";
+    private static final String KEY_CALENDAR_INSTANCES = "calendar_instances_json";
+    private static final String KEY_CALENDAR_SYNCED_UNTIL = "calendar_synced_until";
+
+    private final SharedPreferences prefs;
+
+    CalendarStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    void registerListener(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        prefs.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    Set<Long> getCalendarIds() {
+        Set<Long> ids = new HashSet<>();
+        for (String id : prefs.getStringSet(KEY_CALENDAR_IDS, Collections.emptySet())) {
+            ids.add(Long.parseLong(id));
+        }
+        return ids;
+    }
+
+    /**
+     * @return whether the ids differ from the stored ones and were saved
+     */
+    boolean setCalendarIds(Set<Long> ids) {
+        Set<String> stored = new HashSet<>();
+        for (long id : ids) {
+            stored.add(Long.toString(id));
+        }
+        if (stored.equals(prefs.getStringSet(KEY_CALENDAR_IDS, Collections.emptySet()))) {
+            return false;
+        }
+        prefs.edit().putStringSet(KEY_CALENDAR_IDS, stored).apply();
+        return true;
+    }
+
+    List<CalendarInstance> getInstances() {
+        String json = getInstancesJson();
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        return ConfigManager.GSON.fromJson(json, CalendarInstance.LIST_TYPE);
+    }
+
+    /**
+     * @return the stored JSON of the instances, which the compiled windows are checked against
+     */
+    String getInstancesJson() {
+        return prefs.getString(KEY_CALENDAR_INSTANCES, null);
+    }
+
+    long getSyncedUntil() {
+        return prefs.getLong(KEY_CALENDAR_SYNCED_UNTIL, 0);
+    }
+
+    /**
+     * @param json the instances as written by {@link ConfigManager#GSON}, or null to keep the stored ones
+     */
+    void putInstances(String json, long syncedUntil) {
+        SharedPreferences.Editor editor = prefs.edit().putLong(KEY_CALENDAR_SYNCED_UNTIL, syncedUntil);
+        if (json != null) {
+            editor.putString(KEY_CALENDAR_INSTANCES, json);
+        }
+        editor.apply();
+    }
+
+    void clear() {
+        prefs.edit().clear().apply();
+    }
+}
@@ -0,0 +1,194 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Calendars;
+import android.provider.CalendarContract.Instances;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mirrors the events of the selected calendars into {@link ConfigManager} as windows when calls
+ * are allowed, so screening never queries the calendar provider. Only the next
+ * {@link #HORIZON_MILLIS} are kept; the horizon is extended a day at a time, and an edited event
+ * is re-read on its own. The syncs are synchronized since each one rewrites the stored list.
+ */
+final class CalendarSync {
+
+    private static final String TAG = "CalendarSync";
+    static final long HORIZON_MILLIS = TimeUnit.DAYS.toMillis(60);
+
+    private static final String[] INSTANCE_PROJECTION = {
+            Instances.EVENT_ID, Instances.BEGIN, Instances.END, Instances.ALL_DAY
+    };
+
+    private CalendarSync() {
+    }
+
+    /**
+     * @return the device's calendars by id, with their display names
+     */
+    @WorkerThread
+    static Map<Long, String> queryCalendars(Context context) {
+        Map<Long, String> calendars = new LinkedHashMap<>();
+        String[] projection = {Calendars._ID, Calendars.CALENDAR_DISPLAY_NAME};
+        try (Cursor cursor = context.getContentResolver().query(Calendars.CONTENT_URI, projection,
+                null, null, Calendars.CALENDAR_DISPLAY_NAME)) {
+            while (cursor != null && cursor.moveToNext()) {
+                calendars.put(cursor.getLong(0), cursor.getString(1));
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "queryCalendars: Calendar permission missing", e);
+        }
+        return calendars;
+    }
+
+    /**
+     * Re-reads the whole horizon. Used when the calendars were chosen and when the provider
+     * doesn't say which events changed.
+     */
+    @WorkerThread
+    static synchronized void syncAll(Context context) {
+        ConfigManager configManager = new ConfigManager(context);
+        Set<Long> calendarIds = configManager.getCalendarIds();
+        long now = System.currentTimeMillis();
+        long until = now + HORIZON_MILLIS;
+        List<CalendarInstance> instances = new ArrayList<>();
+        if (!calendarIds.isEmpty() && !queryInstances(context, calendarIds, null, now, until, instances)) {
+            return;
+        }
+        configManager.setCalendarInstances(instances, until);
+        Log.d(TAG, "syncAll: " + instances.size() + " instances until " + until);
+    }
+
+    /**
+     * Replaces the instances of the given events only, dropping the ones that were deleted.
+     */
+    @WorkerThread
+    static synchronized void syncEvents(Context context, Set<Long> eventIds) {
+        ConfigManager configManager = new ConfigManager(context);
+        Set<Long> calendarIds = configManager.getCalendarIds();
+        long syncedUntil = configManager.getCalendarSyncedUntil();
+        if (calendarIds.isEmpty() || syncedUntil == 0) {
+            syncAll(context);
+            return;
+        }
+        List<CalendarInstance> instances = configManager.getCalendarInstances();
+        instances.removeIf(instance -> eventIds.contains(instance.getEventId()));
+        if (!queryInstances(context, calendarIds, eventIds, System.currentTimeMillis(), syncedUntil, instances)) {
+            return;
+        }
+        configManager.setCalendarInstances(instances, syncedUntil);
+        Log.d(TAG, "syncEvents: Re-read " + eventIds.size() + " events");
+    }
+
+    /**
+     * Drops instances that are over and reads only the days that have come into the horizon since
+     * the last sync.
+     */
+    @WorkerThread
+    static synchronized void extendHorizon(Context context) {
+        ConfigManager configManager = new ConfigManager(context);
+        Set<Long> calendarIds = configManager.getCalendarIds();
+        long syncedUntil = configManager.getCalendarSyncedUntil();
+        long now = System.currentTimeMillis();
+        if (calendarIds.isEmpty() || syncedUntil <= now) {
+            syncAll(context);
+            return;
+        }
+        long until = now + HORIZON_MILLIS;
+        List<CalendarInstance> instances = configManager.getCalendarInstances();
+        instances.removeIf(instance -> instance.getEnd() <= now);
+        List<CalendarInstance> added = new ArrayList<>();
+        if (!queryInstances(context, calendarIds, null, syncedUntil, until, added)) {
+            return;
+        }
+        for (CalendarInstance instance : added) {
+            // Instances overlapping the old horizon were read by the previous sync
+            if (instance.getBegin() >= syncedUntil) {
+                instances.add(instance);
+            }
+        }
+        configManager.setCalendarInstances(instances, until);
+        Log.d(TAG, "extendHorizon: " + added.size() + " new instances until " + until);
+    }
+
+    /**
+     * Adds the instances overlapping {@code [begin, end)} to {@code out}.
+     *
+     * @param eventIds only these events, or null for all events of the calendars
+     * @return false if the provider couldn't be read
+     */
+    private static boolean queryInstances(Context context, Set<Long> calendarIds, Set<Long> eventIds,
+                                          long begin, long end, List<CalendarInstance> out) {
+        Uri.Builder uri = Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(uri, begin);
+        ContentUris.appendId(uri, end);
+        StringBuilder selection = new StringBuilder(Instances.CALENDAR_ID).append(" IN (").append(join(calendarIds))
+                .append(") AND (").append(Instances.STATUS).append(" IS NULL OR ").append(Instances.STATUS)
+                .append(" != ").append(Instances.STATUS_CANCELED).append(')');
+        if (eventIds != null) {
+            selection.append(" AND ").append(Instances.EVENT_ID).append(" IN (").append(join(eventIds)).append(')');
+        }
+        try (Cursor cursor = context.getContentResolver().query(uri.build(), INSTANCE_PROJECTION,
+                selection.toString(), null, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                out.add(new CalendarInstance(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2),
+                        cursor.getInt(3) != 0));
+            }
+            return true;
+        } catch (SecurityException e) {
+            Log.e(TAG, "queryInstances: Calendar permission missing", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the ids of the events behind the changed URIs, or null if any of them isn't a
+     * single event (the provider often only reports that something changed)
+     */
+    static Set<Long> changedEvents(Uri[] uris) {
+        if (uris == null) {
+            return null; // More changes than the job could track
+        }
+        Set<Long> eventIds = new HashSet<>();
+        for (Uri uri : uris) {
+            List<String> segments = uri.getPathSegments();
+            if (!CalendarContract.AUTHORITY.equals(uri.getAuthority()) || segments.size() != 2
+                    || !"events".equals(segments.get(0))) {
+                return null;
+            }
+            try {
+                eventIds.add(Long.parseLong(segments.get(1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return eventIds;
+    }
+
+    // Ids are numbers, so they can go into the selection directly
+    private static String join(Collection<Long> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (long id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+}
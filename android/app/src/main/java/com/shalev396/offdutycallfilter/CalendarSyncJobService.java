@@ -0,0 +1,97 @@
+package com.shalev396.offdutycallfilter;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.provider.CalendarContract;
+import android.util.Log;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link CalendarSync} in the background: whenever the calendar provider reports a change,
+ * and once a day to move the horizon forward. The change job is the job scheduler's version of
+ * a ContentObserver, which also works while the app isn't running.
+ */
+public class CalendarSyncJobService extends JobService {
+
+    private static final String TAG = "CalendarSyncJob";
+    private static final int JOB_CHANGES = 1;
+    private static final int JOB_HORIZON = 2;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Starts watching the calendars chosen in {@link ConfigManager}, or stops if there are none.
+     */
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        if (new ConfigManager(context).getCalendarIds().isEmpty()) {
+            cancel(context);
+            return;
+        }
+        scheduleChanges(context);
+        if (jobScheduler.getPendingJob(JOB_HORIZON) == null) {
+            jobScheduler.schedule(new JobInfo.Builder(JOB_HORIZON, new ComponentName(context, CalendarSyncJobService.class))
+                    .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    static void cancel(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        jobScheduler.cancel(JOB_CHANGES);
+        jobScheduler.cancel(JOB_HORIZON);
+    }
+
+    // Content jobs fire once, so this is called again after every run
+    private static void scheduleChanges(Context context) {
+        context.getSystemService(JobScheduler.class).schedule(
+                new JobInfo.Builder(JOB_CHANGES, new ComponentName(context, CalendarSyncJobService.class))
+                        .addTriggerContentUri(new JobInfo.TriggerContentUri(CalendarContract.CONTENT_URI,
+                                JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                        // Syncing an account touches many events at once, wait for it to settle
+                        .setTriggerContentUpdateDelay(TimeUnit.SECONDS.toMillis(5))
+                        .setTriggerContentMaxDelay(TimeUnit.MINUTES.toMillis(1))
+                        .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Log.d(TAG, "onStartJob: " + params.getJobId());
+        executor.execute(() -> {
+            if (params.getJobId() == JOB_CHANGES) {
+                Set<Long> eventIds = CalendarSync.changedEvents(params.getTriggeredContentUris());
+                if (eventIds != null) {
+                    CalendarSync.syncEvents(this, eventIds);
+                } else {
+                    CalendarSync.syncAll(this);
+                }
+            } else {
+                CalendarSync.extendHorizon(this);
+            }
+            // Finish first, scheduling a job under the running one's id would stop it
+            jobFinished(params, false);
+            schedule(this);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
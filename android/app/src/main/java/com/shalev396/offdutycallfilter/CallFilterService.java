@@ -1,83 +1,92 @@
 package com.shalev396.offdutycallfilter;
 
+import android.net.Uri;
 import android.telecom.Call;
 import android.telecom.CallScreeningService;
-import android.telephony.PhoneNumberUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import java.time.ZonedDateTime;
-import java.util.List;
+import com.shalev396.offdutycallfilter.core.BlockedCall;
+import com.shalev396.offdutycallfilter.core.DecisionCache;
+import com.shalev396.offdutycallfilter.core.FilterSnapshot;
+import com.shalev396.offdutycallfilter.core.RepeatCallerTracker;
+import com.shalev396.offdutycallfilter.core.ScreeningEngine;
+import com.shalev396.offdutycallfilter.core.ScreeningEngine.Decision;
+import com.shalev396.offdutycallfilter.core.ScreeningStats;
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Stage;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.time.Clock;
 
 public class CallFilterService extends CallScreeningService {
 
     private static final String TAG = "CallFilterService";
+    private static final int DECISION_CACHE_SIZE = 1024;
+    private static final int REPEAT_CALLER_CAPACITY = 1024;
+
+    // Telecom binds the service per call, so the cache has to outlive the service instance
+    static final DecisionCache decisionCache = new DecisionCache(DECISION_CACHE_SIZE);
+    // Same for the repeat caller counts, which the screening path feeds as calls come in
+    static final RepeatCallerTracker repeatCallers = new RepeatCallerTracker(REPEAT_CALLER_CAPACITY);
+
+    private ConfigManager configManager;
+    private ScreeningEngine engine;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        configManager = new ConfigManager(getApplicationContext());
+        engine = new ScreeningEngine(configManager.getNumberNormalizer(), Clock.systemDefaultZone(), decisionCache,
+                repeatCallers);
+    }
 
     @Override
     public void onScreenCall(@NonNull Call.Details callDetails) {
+        long start = System.nanoTime();
         Log.d(TAG, "onScreenCall: --- New Call Received ---");
-        ConfigManager configManager = new ConfigManager(getApplicationContext());
-
-        if (!configManager.isEnabled()) {
-            Log.d(TAG, "onScreenCall: Filter is DISABLED. Allowing call.");
-            respondToCall(callDetails, new CallResponse.Builder().build());
-            return;
-        }
-        Log.d(TAG, "onScreenCall: Filter is ENABLED.");
-
-        String incomingNumber = callDetails.getHandle().getSchemeSpecificPart();
-        String normalizedNumber = PhoneNumberUtils.normalizeNumber(incomingNumber);
-        Log.d(TAG, "onScreenCall: Incoming number: " + normalizedNumber);
+        FilterSnapshot snapshot = configManager.getSnapshot();
+        ScreeningStats.lap(Stage.CONFIG_LOAD, start);
 
-        List<WhitelistedContact> whitelist = configManager.getWhitelist();
-        for (WhitelistedContact contact : whitelist) {
-            if (PhoneNumberUtils.compare(contact.getPhoneE164(), normalizedNumber)) {
-                Log.d(TAG, "onScreenCall: Number is in the WHITELIST. Allowing call.");
-                respondToCall(callDetails, new CallResponse.Builder().build());
-                return;
-            }
-        }
-        Log.d(TAG, "onScreenCall: Number is NOT in the whitelist.");
+        Uri handle = callDetails.getHandle();
+        String incomingNumber = handle != null ? handle.getSchemeSpecificPart() : "";
+        Decision decision = engine.screen(snapshot, incomingNumber);
+        Log.d(TAG, "onScreenCall: " + decision.getOutcome().getLabel() + ", number: " + decision.getNormalizedNumber());
 
-        List<DaySchedule> schedule = configManager.getSchedule();
-        if (isAllowedNow(schedule)) {
-            Log.d(TAG, "onScreenCall: Current time is INSIDE a scheduled window. Allowing call.");
-            respondToCall(callDetails, new CallResponse.Builder().build());
-        } else {
-            Log.d(TAG, "onScreenCall: Current time is OUTSIDE a scheduled window. BLOCKING call.");
-            configManager.addBlockedCall(new BlockedCall(normalizedNumber, System.currentTimeMillis()));
-            respondToCall(callDetails, new CallResponse.Builder()
-                    .setDisallowCall(true)
-                    .setRejectCall(true)
-                    .setSkipCallLog(false)
-                    .setSkipNotification(true)
-                    .build());
+        if (!decision.isBlocked()) {
+            respond(callDetails, new CallResponse.Builder().build(), start);
+            return;
         }
+        respond(callDetails, new CallResponse.Builder()
+                .setDisallowCall(true)
+                .setRejectCall(true)
+                .setSkipCallLog(false)
+                .setSkipNotification(true)
+                .build(), start);
+        // Persisting the log entry happens after Telecom has its answer
+        long mark = System.nanoTime();
+        BlockedCallLogger.getInstance(this).log(new BlockedCall(decision.getNormalizedNumber(), decision.getTimestamp()));
+        ScreeningStats.lap(Stage.LOG, mark);
     }
 
-    private boolean isAllowedNow(List<DaySchedule> schedule) {
-        ZonedDateTime now = ZonedDateTime.now();
-        int dayOfWeek = now.getDayOfWeek().getValue() % 7; // Sunday = 0, Monday = 1, ...
-        int minutes = now.getHour() * 60 + now.getMinute();
-        Log.d(TAG, "isAllowedNow: Checking schedule for day=" + dayOfWeek + ", minutes=" + minutes);
-
-        for (DaySchedule daySchedule : schedule) {
-            if (daySchedule.getDayOfWeek() == dayOfWeek) {
-                Log.d(TAG, "isAllowedNow: Found schedule for today.");
-                for (TimeWindow window : daySchedule.getWindows()) {
-                    Log.d(TAG, "isAllowedNow: Checking window: " + window.getStartMinutes() + " - " + window.getEndMinutes());
-                    if (minutes >= window.getStartMinutes() && minutes < window.getEndMinutes()) {
-                        Log.d(TAG, "isAllowedNow: Current time is INSIDE this window.");
-                        return true;
-                    }
-                }
-                Log.d(TAG, "isAllowedNow: Current time is OUTSIDE all of today's windows.");
-                break; // No need to check other days
-            }
-        }
+    /**
+     * Prints live screening state for {@code adb shell dumpsys activity service .CallFilterService}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("CallFilterService state:");
+        ScreeningStats.dump(writer, "  ");
+        decisionCache.dump(writer, "  ");
+        repeatCallers.dump(writer, "  ");
+        configManager.dump(writer, "  ");
+        BlockedCallLogger.getInstance(this).dump(writer, "  ");
+    }
 
-        Log.d(TAG, "isAllowedNow: No schedule found for today or time is outside all windows.");
-        return false;
+    private void respond(Call.Details callDetails, CallResponse response, long start) {
+        long mark = System.nanoTime();
+        respondToCall(callDetails, response);
+        ScreeningStats.lap(Stage.RESPOND, mark);
+        ScreeningStats.lap(Stage.TOTAL, start);
     }
 }
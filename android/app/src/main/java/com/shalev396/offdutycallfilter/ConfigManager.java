@@ -2,99 +2,1267 @@ package com.shalev396.offdutycallfilter;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.telephony.PhoneNumberUtils;
+import android.telephony.TelephonyManager;
+import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.shalev396.offdutycallfilter.core.BlockedCall;
+import com.shalev396.offdutycallfilter.core.BlockedCallJournal;
+import com.shalev396.offdutycallfilter.core.ConfigJson;
+import com.shalev396.offdutycallfilter.core.ContactNumberIndex;
+import com.shalev396.offdutycallfilter.core.ContactNumberSet;
+import com.shalev396.offdutycallfilter.core.DaySchedule;
+import com.shalev396.offdutycallfilter.core.E164Normalizer;
+import com.shalev396.offdutycallfilter.core.FilterProfile;
+import com.shalev396.offdutycallfilter.core.FilterSnapshot;
+import com.shalev396.offdutycallfilter.core.NumberNormalizer;
+import com.shalev396.offdutycallfilter.core.NumberRule;
+import com.shalev396.offdutycallfilter.core.RecurrenceTable;
+import com.shalev396.offdutycallfilter.core.RecurringWindow;
+import com.shalev396.offdutycallfilter.core.RepeatCallerRule;
+import com.shalev396.offdutycallfilter.core.ScheduleBitmap;
+import com.shalev396.offdutycallfilter.core.ScheduleException;
+import com.shalev396.offdutycallfilter.core.ScheduleExceptionIndex;
+import com.shalev396.offdutycallfilter.core.ScheduleNormalizer;
+import com.shalev396.offdutycallfilter.core.ScheduleState;
+import com.shalev396.offdutycallfilter.core.SpamBlocklist;
+import com.shalev396.offdutycallfilter.core.SpamBlocklistImporter;
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 public class ConfigManager {
-    private static final String PREFS_NAME = "call_filter_prefs";
+    private static final String TAG = "ConfigManager";
+    // Each store is its own file so a write only rewrites the data that changed
+    private static final String SETTINGS_PREFS = "call_filter_settings";
+    private static final String SCHEDULE_PREFS = "call_filter_schedule";
+    private static final String WHITELIST_PREFS = "call_filter_whitelist";
+    private static final String RULES_PREFS = "call_filter_rules";
+    // Single file used by earlier versions, migrated into the stores above
+    private static final String LEGACY_PREFS = "call_filter_prefs";
+    private static final String KEY_STORAGE_VERSION = "storage_version";
+    private static final int STORAGE_VERSION = 5;
     private static final String KEY_ENABLED = "enabled";
     private static final String KEY_SCHEDULE = "schedule_json";
+    private static final String KEY_SCHEDULE_BITMAP = "schedule_bitmap";
+    private static final String KEY_SCHEDULE_EXCEPTIONS = "schedule_exceptions_json";
+    private static final String KEY_RECURRING_WINDOWS = "recurring_windows_json";
+    private static final String KEY_SCHEDULE_ZONE = "schedule_zone";
     private static final String KEY_WHITELIST = "whitelist_json";
+    private static final String KEY_WHITELIST_GROUPS = "whitelist_group_ids";
+    private static final String KEY_WHITELIST_STARRED = "whitelist_starred";
+    private static final String KEY_WHITELIST_SYNCED = "whitelist_synced_numbers";
+    private static final String KEY_RULES = "number_rules_json";
     private static final String KEY_BLOCKED_CALLS = "blocked_calls_json";
     private static final String KEY_ROLE_REQUESTED = "role_requested";
+    private static final String KEY_REPEAT_CALLS = "repeat_calls";
+    private static final String KEY_REPEAT_MINUTES = "repeat_minutes";
+    private static final String KEY_ALLOW_CONTACTS = "allow_contacts";
+    private static final String KEY_DEFAULT_REGION = "default_region";
+    private static final String JOURNAL_DIR = "blocked_calls";
+    private static final String SPAM_LIST_FILE = "spam_blocklist.bin";
+    private static final int RECURRENCE_HORIZON_DAYS = 90;
 
-    private final SharedPreferences prefs;
-    private final Gson gson;
+    // Process-wide compiled configuration read by CallFilterService
+    private static final AtomicReference<FilterSnapshot> snapshot = new AtomicReference<>();
+    // Compiled snapshots of every profile by id (null for the default settings), the active one
+    // included. Kept up to date by the setters, so switching profiles is a swap of the reference.
+    private static final Map<String, FilterSnapshot> profileSnapshots = new HashMap<>();
+    private static final ExecutorService profileExecutor = Executors.newSingleThreadExecutor();
+    // Counted down once the first instance in this process brought storage up to date
+    private static final CountDownLatch migrated = new CountDownLatch(1);
+    private static boolean migrationStarted;
+    // Coalesces the preference change checks queued on profileExecutor
+    private static final AtomicBoolean changeCheckPending = new AtomicBoolean();
+    // SharedPreferences only holds listeners weakly, so keep the registered one alive here
+    private static SharedPreferences.OnSharedPreferenceChangeListener snapshotListener;
+    private static BlockedCallJournal journal;
+    private static SpamBlocklist spamBlocklist;
+    private static RecurrenceTable recurrences = RecurrenceTable.EMPTY;
+    private static E164Normalizer numberNormalizer;
+    // Serializes imports so two lists can't be merged into the same temporary files
+    private static final Object spamImportLock = new Object();
+    // Shared by all instances; every stored model has a streaming adapter, so nothing is reflected over
+    static final Gson GSON = ConfigJson.builder()
+            .registerTypeAdapter(CalendarInstance.class, CalendarInstance.JSON_ADAPTER.nullSafe())
+            .create();
+
+    private final Context context;
+    private final SharedPreferences settingsPrefs;
+    private final SharedPreferences schedulePrefs;
+    private final SharedPreferences whitelistPrefs;
+    private final SharedPreferences rulesPrefs;
+    private final CalendarStore calendarStore;
+    private final ProfileStore profileStore;
+    private final ContactStore contactStore;
 
     public ConfigManager(Context ctx) {
-        prefs = ctx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        context = ctx.getApplicationContext();
+        settingsPrefs = ctx.getSharedPreferences(SETTINGS_PREFS, Context.MODE_PRIVATE);
+        schedulePrefs = ctx.getSharedPreferences(SCHEDULE_PREFS, Context.MODE_PRIVATE);
+        whitelistPrefs = ctx.getSharedPreferences(WHITELIST_PREFS, Context.MODE_PRIVATE);
+        rulesPrefs = ctx.getSharedPreferences(RULES_PREFS, Context.MODE_PRIVATE);
+        calendarStore = new CalendarStore(ctx);
+        profileStore = new ProfileStore(ctx);
+        contactStore = new ContactStore(ctx);
+        startMigration();
+        registerSnapshotListener();
+    }
+
+    /**
+     * Brings storage written by earlier versions up to date in the background, once per process.
+     * Only does any work on the first launch after upgrading; until it's done, reads of the stores
+     * wait in {@link #awaitMigration()}.
+     */
+    private void startMigration() {
+        synchronized (ConfigManager.class) {
+            if (migrationStarted) {
+                return;
+            }
+            migrationStarted = true;
+        }
+        if (settingsPrefs.getInt(KEY_STORAGE_VERSION, 0) >= STORAGE_VERSION) {
+            migrated.countDown();
+            return;
+        }
+        profileExecutor.execute(() -> {
+            try {
+                migrateLegacyStorage();
+            } finally {
+                migrated.countDown();
+            }
+        });
+    }
+
+    private static void awaitMigration() {
+        // The migration holds the lock while it reads the stores itself
+        if (migrated.getCount() == 0 || Thread.holdsLock(ConfigManager.class)) {
+            return;
+        }
+        try {
+            migrated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void migrateLegacyStorage() {
+        int version = settingsPrefs.getInt(KEY_STORAGE_VERSION, 0);
+        synchronized (ConfigManager.class) {
+            if (version < 2) {
+                splitLegacyPrefs();
+            }
+            if (version < 3) {
+                normalizeStoredSchedule();
+            }
+            if (version < 4) {
+                normalizeStoredNumbers();
+            }
+        }
+        // Outside the lock since imports take the spam list lock first. The version is written only
+        // once the list was rewritten, so a failed rewrite is retried on the next start; normalizing
+        // the stored numbers again leaves them as they are.
+        if (version < 4) {
+            if (!normalizeSpamList()) {
+                return;
+            }
+            settingsPrefs.edit().putInt(KEY_STORAGE_VERSION, 4).commit();
+        }
+        if (version < 5) {
+            // Contact numbers used to be stored as the provider gave them, read them again in canonical form
+            ContactSync.syncAll(context);
+            settingsPrefs.edit().putInt(KEY_STORAGE_VERSION, 5).commit();
+        }
+    }
+
+    /**
+     * Splits the single preferences file used by earlier versions into the separate stores,
+     * moving its blocked call log into the journal.
+     */
+    private void splitLegacyPrefs() {
+        SharedPreferences legacy = context.getSharedPreferences(LEGACY_PREFS, Context.MODE_PRIVATE);
+        if (legacy.contains(KEY_SCHEDULE)) {
+            schedulePrefs.edit()
+                    .putString(KEY_SCHEDULE, legacy.getString(KEY_SCHEDULE, null))
+                    .putString(KEY_SCHEDULE_BITMAP, legacy.getString(KEY_SCHEDULE_BITMAP, null))
+                    .commit();
+        }
+        if (legacy.contains(KEY_WHITELIST)) {
+            whitelistPrefs.edit().putString(KEY_WHITELIST, legacy.getString(KEY_WHITELIST, null)).commit();
+        }
+        String blockedCallsJson = legacy.getString(KEY_BLOCKED_CALLS, null);
+        if (blockedCallsJson != null) {
+            Type type = ConfigJson.BLOCKED_CALLS;
+            List<BlockedCall> calls = GSON.fromJson(blockedCallsJson, type);
+            if (calls != null) {
+                Collections.reverse(calls); // Stored newest first, the journal appends oldest first
+                addBlockedCalls(calls);
+            }
+        }
+        // The version is written last so an interrupted migration is simply retried
+        settingsPrefs.edit()
+                .putBoolean(KEY_ENABLED, legacy.getBoolean(KEY_ENABLED, false))
+                .putBoolean(KEY_ROLE_REQUESTED, legacy.getBoolean(KEY_ROLE_REQUESTED, false))
+                .putInt(KEY_STORAGE_VERSION, 2)
+                .commit();
+        context.deleteSharedPreferences(LEGACY_PREFS);
+    }
+
+    /**
+     * Rewrites schedules saved before normalization existed, whose bitmap ignored windows past midnight.
+     */
+    private void normalizeStoredSchedule() {
+        if (schedulePrefs.contains(KEY_SCHEDULE)) {
+            List<DaySchedule> schedule = ScheduleNormalizer.normalize(getDefaultSchedule());
+            schedulePrefs.edit()
+                    .putString(KEY_SCHEDULE, GSON.toJson(schedule, ConfigJson.DAY_SCHEDULES))
+                    .putString(KEY_SCHEDULE_BITMAP, ScheduleBitmap.compile(schedule).encode())
+                    .commit();
+        }
+        settingsPrefs.edit().putInt(KEY_STORAGE_VERSION, 3).commit();
+    }
+
+    /**
+     * Rewrites the stored whitelist, number rules and profiles into the canonical form screening
+     * compares, e.g. entries saved with only their formatting stripped. Entries already in that
+     * form, and numbers that can't be placed in the default region, stay as they are.
+     */
+    private void normalizeStoredNumbers() {
+        NumberNormalizer normalizer = getNumberNormalizer();
+        List<WhitelistedContact> whitelist = new ArrayList<>();
+        for (WhitelistedContact contact : getWhitelist()) {
+            whitelist.add(new WhitelistedContact(contact.getName(), normalizeNumber(normalizer, contact.getPhoneE164())));
+        }
+        Set<String> synced = new HashSet<>();
+        for (String number : getWhitelistSynced()) {
+            synced.add(normalizeNumber(normalizer, number));
+        }
+        SharedPreferences.Editor whitelistEditor = whitelistPrefs.edit().putStringSet(KEY_WHITELIST_SYNCED, synced);
+        if (whitelistPrefs.contains(KEY_WHITELIST)) {
+            whitelistEditor.putString(KEY_WHITELIST, GSON.toJson(whitelist, ConfigJson.WHITELIST));
+        }
+        whitelistEditor.commit();
+        if (rulesPrefs.contains(KEY_RULES)) {
+            rulesPrefs.edit().putString(KEY_RULES, GSON.toJson(normalizeRules(normalizer, getDefaultNumberRules()), ConfigJson.NUMBER_RULES)).commit();
+        }
+        List<FilterProfile> profiles = new ArrayList<>();
+        for (FilterProfile profile : getProfiles()) {
+            List<String> numbers = null;
+            if (profile.getWhitelist() != null) {
+                numbers = new ArrayList<>();
+                for (String number : profile.getWhitelist()) {
+                    numbers.add(normalizeNumber(normalizer, number));
+                }
+            }
+            profiles.add(new FilterProfile(profile.getId(), profile.getName(), profile.getSchedule(),
+                    normalizeRules(normalizer, profile.getRules()), numbers));
+        }
+        profileStore.putAllNow(profiles);
+    }
+
+    private static String normalizeNumber(NumberNormalizer normalizer, String number) {
+        return number != null ? normalizer.normalize(number) : null;
+    }
+
+    // A range whose bounds normalize to different lengths would no longer be one, so it's kept as written
+    private static List<NumberRule> normalizeRules(NumberNormalizer normalizer, List<NumberRule> rules) {
+        if (rules == null) {
+            return null;
+        }
+        List<NumberRule> normalized = new ArrayList<>();
+        for (NumberRule rule : rules) {
+            String from = normalizeNumber(normalizer, rule.getFrom());
+            String to = normalizeNumber(normalizer, rule.getTo());
+            boolean sameShape = from != null && to != null && from.length() - rule.getFrom().length()
+                    == to.length() - rule.getTo().length();
+            normalized.add(sameShape ? new NumberRule(rule.getLabel(), from, to, rule.isBlock()) : rule);
+        }
+        return normalized;
+    }
+
+    /**
+     * Re-keys a spam list imported before numbers were normalized to E.164.
+     *
+     * @return false if the list couldn't be rewritten
+     */
+    private boolean normalizeSpamList() {
+        synchronized (spamImportLock) {
+            File file = new File(context.getFilesDir(), SPAM_LIST_FILE);
+            if (!file.exists()) {
+                return true;
+            }
+            try {
+                long count = new SpamBlocklistImporter(getNumberNormalizer()).renormalize(SpamBlocklist.open(file), file);
+                setSpamBlocklist(SpamBlocklist.open(file));
+                Log.d(TAG, "normalizeSpamList: Rewrote " + count + " numbers");
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "normalizeSpamList: Failed to rewrite the spam list", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled configuration, building it from storage only on first use in this process.
+     */
+    public FilterSnapshot getSnapshot() {
+        FilterSnapshot current = snapshot.get();
+        if (current == null) {
+            awaitMigration();
+            synchronized (profileSnapshots) {
+                if (snapshot.get() == null) {
+                    rebuildSnapshots();
+                }
+                current = snapshot.get();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Compiles the active profile now and the others in the background. The caller holds the lock.
+     */
+    private void rebuildSnapshots() {
+        profileSnapshots.clear();
+        String profileId = getActiveProfileId();
+        FilterSnapshot active = buildSnapshot(profileId);
+        profileSnapshots.put(profileId, active);
+        snapshot.set(active);
+        prebuildProfiles();
+    }
+
+    private void prebuildProfiles() {
+        profileExecutor.execute(() -> {
+            List<String> ids = new ArrayList<>();
+            ids.add(null);
+            for (FilterProfile profile : getProfiles()) {
+                ids.add(profile.getId());
+            }
+            for (String id : ids) {
+                synchronized (profileSnapshots) {
+                    if (snapshot.get() == null || profileSnapshots.containsKey(id)) {
+                        continue;
+                    }
+                    FilterSnapshot compiled = buildSnapshot(id);
+                    compiled.getScheduleState(Clock.systemDefaultZone()); // Compiles its timeline too
+                    profileSnapshots.put(id, compiled);
+                }
+            }
+        });
+    }
+
+    private FilterSnapshot buildSnapshot(String profileId) {
+        FilterProfile profile = profileId != null ? getProfile(profileId) : null;
+        if (profile == null) {
+            return buildSnapshot();
+        }
+        return applyProfile(buildSnapshot(), profile, profileStore.getJson(profileId));
+    }
+
+    // The profile's own schedule, rules and whitelist on top of the shared settings compiled in base
+    private FilterSnapshot applyProfile(FilterSnapshot base, FilterProfile profile, String json) {
+        return base.withWhitelist(profileWhitelist(getWhitelist(), profile), whitelistPrefs.getString(KEY_WHITELIST, null))
+                .withRules(profile.getRules(), json)
+                .withSchedule(ScheduleBitmap.compile(profile.getSchedule()), json)
+                .withContacts(contactsFor(profile))
+                .withProfileId(profile.getId());
+    }
+
+    // A profile that picks its own contacts doesn't let the rest of the address book through
+    private ContactNumberSet contactsFor(FilterProfile profile) {
+        if (!isAllowContacts() || (profile != null && profile.getWhitelist() != null)) {
+            return ContactNumberSet.EMPTY;
+        }
+        return contactStore.getNumbers();
+    }
+
+    private static List<WhitelistedContact> profileWhitelist(List<WhitelistedContact> whitelist, FilterProfile profile) {
+        if (profile == null || profile.getWhitelist() == null) {
+            return whitelist;
+        }
+        Set<String> numbers = new HashSet<>(profile.getWhitelist());
+        List<WhitelistedContact> subset = new ArrayList<>();
+        for (WhitelistedContact contact : whitelist) {
+            if (numbers.contains(contact.getPhoneE164())) {
+                subset.add(contact);
+            }
+        }
+        return subset;
+    }
+
+    /**
+     * Applies a change of the shared settings to the snapshots of all profiles.
+     */
+    private static void updateSnapshots(UnaryOperator<FilterSnapshot> update) {
+        synchronized (profileSnapshots) {
+            FilterSnapshot current = snapshot.get();
+            if (current == null) {
+                return; // Nothing compiled yet, getSnapshot() will read the latest values
+            }
+            profileSnapshots.replaceAll((id, compiled) -> update.apply(compiled));
+            snapshot.set(profileSnapshots.get(current.getProfileId()));
+        }
+    }
+
+    /**
+     * Applies a change to the snapshot of one profile, swapping it in if that profile is active.
+     */
+    private static void updateSnapshot(String profileId, UnaryOperator<FilterSnapshot> update) {
+        synchronized (profileSnapshots) {
+            FilterSnapshot compiled = profileSnapshots.get(profileId);
+            if (compiled == null) {
+                return; // Not compiled yet, it will be built from storage
+            }
+            compiled = update.apply(compiled);
+            profileSnapshots.put(profileId, compiled);
+            FilterSnapshot current = snapshot.get();
+            if (current != null && Objects.equals(current.getProfileId(), profileId)) {
+                snapshot.set(compiled);
+            }
+        }
+    }
+
+    private FilterSnapshot buildSnapshot() {
+        return FilterSnapshot.compile(isEnabled(), PhoneNumberUtils::compare,
+                getWhitelist(), whitelistPrefs.getString(KEY_WHITELIST, null),
+                getDefaultNumberRules(), rulesPrefs.getString(KEY_RULES, null),
+                getSpamBlocklist(),
+                getScheduleBitmap(), schedulePrefs.getString(KEY_SCHEDULE, null))
+                .withScheduleZone(getScheduleZone())
+                .withRepeatCallerRule(getRepeatCallerRule())
+                .withContacts(contactsFor(null))
+                .withOverride(FilterSnapshot.EXCEPTIONS,
+                        getScheduleExceptions(), schedulePrefs.getString(KEY_SCHEDULE_EXCEPTIONS, null))
+                .withOverride(FilterSnapshot.RECURRING, updateRecurrences(getRecurringWindows()).getIndex(),
+                        schedulePrefs.getString(KEY_RECURRING_WINDOWS, null))
+                .withOverride(FilterSnapshot.CALENDAR,
+                        getCalendarWindows(), calendarStore.getInstancesJson());
+    }
+
+    /**
+     * Whether the schedule allows calls right now and until when.
+     */
+    public ScheduleState getScheduleState() {
+        return getSnapshot().getScheduleState(Clock.systemDefaultZone());
+    }
+
+    public void invalidateScheduleState() {
+        FilterSnapshot current = snapshot.get();
+        if (current != null) {
+            current.invalidateScheduleState();
+        }
+    }
+
+    /**
+     * Calendar events are stored as instants, so their windows move with the device's zone unless
+     * the schedule has its own.
+     */
+    public void onTimeZoneChanged() {
+        if (getScheduleZone() != null) {
+            return;
+        }
+        List<ScheduleException> windows = getCalendarWindows();
+        String json = calendarStore.getInstancesJson();
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(windows);
+        updateSnapshots(current -> current.withOverride(FilterSnapshot.CALENDAR, index, json));
+    }
+
+    /**
+     * Reads the precompiled schedule saved next to the JSON, compiling and saving it only when it is
+     * missing (schedules written before the bitmap existed).
+     */
+    private ScheduleBitmap getScheduleBitmap() {
+        awaitMigration();
+        ScheduleBitmap bitmap = ScheduleBitmap.decode(schedulePrefs.getString(KEY_SCHEDULE_BITMAP, null));
+        if (bitmap == null) {
+            bitmap = ScheduleBitmap.compile(getDefaultSchedule());
+            if (schedulePrefs.contains(KEY_SCHEDULE)) {
+                schedulePrefs.edit().putString(KEY_SCHEDULE_BITMAP, bitmap.encode()).apply();
+            }
+        }
+        return bitmap;
+    }
+
+    private void registerSnapshotListener() {
+        synchronized (ConfigManager.class) {
+            if (snapshotListener != null) {
+                return;
+            }
+            // Listeners are called on the main thread, so the stores are compared in the background
+            snapshotListener = (sharedPreferences, key) -> {
+                if (changeCheckPending.compareAndSet(false, true)) {
+                    profileExecutor.execute(() -> {
+                        changeCheckPending.set(false);
+                        onPreferenceChanged();
+                    });
+                }
+            };
+            settingsPrefs.registerOnSharedPreferenceChangeListener(snapshotListener);
+            schedulePrefs.registerOnSharedPreferenceChangeListener(snapshotListener);
+            whitelistPrefs.registerOnSharedPreferenceChangeListener(snapshotListener);
+            rulesPrefs.registerOnSharedPreferenceChangeListener(snapshotListener);
+            calendarStore.registerListener(snapshotListener);
+            profileStore.registerListener(snapshotListener);
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot when storage was changed by something other than the setters below,
+     * e.g. {@link #clearAllData()}. Changes the setters already compiled are detected by identity.
+     * Runs on profileExecutor, so the stores are never read and compiled on the main thread.
+     */
+    private void onPreferenceChanged() {
+        FilterSnapshot current = snapshot.get();
+        if (current == null) {
+            return; // Nothing compiled yet, getSnapshot() will read the latest values
+        }
+        String profileId = getActiveProfileId();
+        String profileJson = profileStore.getJson(profileId);
+        if (current.isEnabled() != isEnabled()
+                || !Objects.equals(current.getProfileId(), profileId)
+                || current.getWhitelistSource() != whitelistPrefs.getString(KEY_WHITELIST, null)
+                || current.getRulesSource() != (profileId != null ? profileJson : rulesPrefs.getString(KEY_RULES, null))
+                || current.getScheduleSource() != (profileId != null ? profileJson : schedulePrefs.getString(KEY_SCHEDULE, null))
+                || current.getOverrideSource(FilterSnapshot.EXCEPTIONS) != schedulePrefs.getString(KEY_SCHEDULE_EXCEPTIONS, null)
+                || current.getOverrideSource(FilterSnapshot.RECURRING) != schedulePrefs.getString(KEY_RECURRING_WINDOWS, null)
+                || current.getOverrideSource(FilterSnapshot.CALENDAR) != calendarStore.getInstancesJson()
+                || !Objects.equals(current.getScheduleZone(), getScheduleZone())
+                || !current.getRepeatCallerRule().equals(getRepeatCallerRule())) {
+            synchronized (profileSnapshots) {
+                rebuildSnapshots();
+            }
+        }
     }
 
     public boolean isEnabled() {
-        return prefs.getBoolean(KEY_ENABLED, false);
+        awaitMigration();
+        return settingsPrefs.getBoolean(KEY_ENABLED, false);
     }
 
     public void setEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_ENABLED, enabled).apply();
+        awaitMigration();
+        if (settingsPrefs.contains(KEY_ENABLED) && isEnabled() == enabled) {
+            return;
+        }
+        updateSnapshots(current -> current.withEnabled(enabled));
+        settingsPrefs.edit().putBoolean(KEY_ENABLED, enabled).apply();
     }
 
     public boolean isRoleRequested() {
-        return prefs.getBoolean(KEY_ROLE_REQUESTED, false);
+        awaitMigration();
+        return settingsPrefs.getBoolean(KEY_ROLE_REQUESTED, false);
     }
 
     public void setRoleRequested(boolean requested) {
-        prefs.edit().putBoolean(KEY_ROLE_REQUESTED, requested).apply();
+        awaitMigration();
+        settingsPrefs.edit().putBoolean(KEY_ROLE_REQUESTED, requested).apply();
+    }
+
+    public RepeatCallerRule getRepeatCallerRule() {
+        int calls = settingsPrefs.getInt(KEY_REPEAT_CALLS, 0);
+        if (calls == 0) {
+            return RepeatCallerRule.OFF;
+        }
+        try {
+            return new RepeatCallerRule(calls, settingsPrefs.getInt(KEY_REPEAT_MINUTES, 0));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "getRepeatCallerRule: Ignoring stored rule", e);
+            return RepeatCallerRule.OFF;
+        }
+    }
+
+    /**
+     * Lets a number the schedule blocks through once it calls often enough, for every profile.
+     */
+    public void setRepeatCallerRule(RepeatCallerRule rule) {
+        if (rule.equals(getRepeatCallerRule())) {
+            return;
+        }
+        updateSnapshots(current -> current.withRepeatCallerRule(rule));
+        settingsPrefs.edit()
+                .putInt(KEY_REPEAT_CALLS, rule.getCalls())
+                .putInt(KEY_REPEAT_MINUTES, rule.getWindowMinutes())
+                .apply();
+    }
+
+    /**
+     * @return the region numbers without a country code are read in, picked from the SIM or the
+     * locale on first use
+     */
+    public String getDefaultRegion() {
+        String region = settingsPrefs.getString(KEY_DEFAULT_REGION, null);
+        if (region == null) {
+            region = detectRegion();
+            settingsPrefs.edit().putString(KEY_DEFAULT_REGION, region).apply();
+        }
+        return region;
+    }
+
+    // The SIM's country rather than the network's, so roaming doesn't change how numbers are read
+    private String detectRegion() {
+        TelephonyManager telephony = context.getSystemService(TelephonyManager.class);
+        String region = telephony != null ? telephony.getSimCountryIso() : null;
+        if (region == null || region.isEmpty()) {
+            region = Locale.getDefault().getCountry();
+        }
+        return region.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Changes the default region. Stored numbers keep the country code they were given; those that
+     * couldn't be placed before are normalized again in the new region, and the contact numbers are
+     * read again in the background.
+     */
+    public void setDefaultRegion(String region) {
+        awaitMigration();
+        if (region.equals(getDefaultRegion())) {
+            return;
+        }
+        synchronized (ConfigManager.class) {
+            settingsPrefs.edit().putString(KEY_DEFAULT_REGION, region).commit();
+            numberNormalizer = null;
+            normalizeStoredNumbers();
+        }
+        if (isAllowContacts()) {
+            profileExecutor.execute(() -> ContactSync.syncAll(context));
+        }
+        // Calls screened from now on are normalized differently, so cached decisions go with the old snapshots
+        synchronized (profileSnapshots) {
+            if (snapshot.get() != null) {
+                rebuildSnapshots();
+            }
+        }
+    }
+
+    /**
+     * @return the normalizer stored numbers and incoming calls share, for the default region
+     */
+    public NumberNormalizer getNumberNormalizer() {
+        synchronized (ConfigManager.class) {
+            if (numberNormalizer == null) {
+                numberNormalizer = E164Normalizer.forRegion(getDefaultRegion());
+            }
+            return numberNormalizer;
+        }
+    }
+
+    public boolean isAllowContacts() {
+        return settingsPrefs.getBoolean(KEY_ALLOW_CONTACTS, false);
+    }
+
+    /**
+     * Lets everyone in the device contacts ring, except in profiles that pick their own contacts.
+     * The numbers are kept in sync by {@link ContactSyncJobService}.
+     */
+    public void setAllowContacts(boolean allow) {
+        if (isAllowContacts() == allow) {
+            return;
+        }
+        settingsPrefs.edit().putBoolean(KEY_ALLOW_CONTACTS, allow).apply();
+        updateSnapshots(current -> current.withContacts(contactsFor(getProfile(current.getProfileId()))));
+    }
+
+    ContactNumberIndex getContactIndex() {
+        return contactStore.getIndex();
+    }
+
+    /**
+     * Persists the index after {@link ContactSync} updated it, unless {@link #clearAllData()} dropped
+     * it meanwhile.
+     *
+     * @param index          the index {@link #getContactIndex()} returned before the update
+     * @param numbersChanged whether any contact's numbers changed, so the snapshots need the new set
+     */
+    void saveContactIndex(ContactNumberIndex index, boolean numbersChanged) {
+        if (!contactStore.save(index, numbersChanged) || !numbersChanged) {
+            return;
+        }
+        updateSnapshots(current -> current.withContacts(contactsFor(getProfile(current.getProfileId()))));
+    }
+
+    /**
+     * @return the profiles besides the default settings, by name
+     */
+    public List<FilterProfile> getProfiles() {
+        awaitMigration();
+        List<FilterProfile> profiles = profileStore.getAll();
+        profiles.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return profiles;
+    }
+
+    private FilterProfile getProfile(String id) {
+        return profileStore.get(id);
+    }
+
+    private FilterProfile getActiveProfile() {
+        String id = getActiveProfileId();
+        return id != null ? getProfile(id) : null;
+    }
+
+    /**
+     * @return the id of the profile in use, null for the default settings
+     */
+    public String getActiveProfileId() {
+        awaitMigration();
+        return profileStore.getActiveId();
+    }
+
+    /**
+     * Creates a profile starting from the schedule and rules in use now.
+     *
+     * @param whitelist numbers of the whitelisted contacts that ring in it, null for all of them
+     */
+    public FilterProfile addProfile(String name, List<String> whitelist) {
+        FilterProfile profile = new FilterProfile(UUID.randomUUID().toString(), name, getSchedule(),
+                getNumberRules(), whitelist);
+        profileStore.put(profile.getId(), GSON.toJson(profile));
+        if (snapshot.get() != null) {
+            prebuildProfiles();
+        }
+        return profile;
     }
 
+    public void deleteProfile(String id) {
+        if (id.equals(getActiveProfileId())) {
+            setActiveProfile(null);
+        }
+        synchronized (profileSnapshots) {
+            profileSnapshots.remove(id);
+        }
+        profileStore.remove(id);
+    }
+
+    /**
+     * Switches to another profile, null for the default settings. The next screened call already
+     * uses it: its snapshot was compiled in the background and only replaces the active one.
+     */
+    public void setActiveProfile(String id) {
+        if (Objects.equals(id, getActiveProfileId())) {
+            return;
+        }
+        synchronized (profileSnapshots) {
+            if (snapshot.get() != null) {
+                FilterSnapshot next = profileSnapshots.get(id);
+                if (next == null) {
+                    next = buildSnapshot(id); // Switched before the background build got to it
+                    profileSnapshots.put(id, next);
+                }
+                snapshot.set(next);
+            }
+        }
+        profileStore.setActiveId(id);
+        ScheduleTransitionReceiver.scheduleNext(context);
+        ProfileTileService.update(context);
+    }
+
+    // Stores an edited profile and recompiles its snapshot
+    private void saveProfile(FilterProfile profile) {
+        String json = GSON.toJson(profile);
+        if (json.equals(profileStore.getJson(profile.getId()))) {
+            return;
+        }
+        updateSnapshot(profile.getId(), compiled -> applyProfile(compiled, profile, json));
+        profileStore.put(profile.getId(), json);
+        ScheduleTransitionReceiver.scheduleNext(context);
+    }
+
+    /**
+     * @return the weekly schedule of the active profile
+     */
     public List<DaySchedule> getSchedule() {
-        String json = prefs.getString(KEY_SCHEDULE, null);
+        FilterProfile profile = getActiveProfile();
+        if (profile != null) {
+            return profile.getSchedule() != null ? profile.getSchedule() : new ArrayList<>();
+        }
+        return getDefaultSchedule();
+    }
+
+    private List<DaySchedule> getDefaultSchedule() {
+        awaitMigration();
+        String json = schedulePrefs.getString(KEY_SCHEDULE, null);
         if (json == null) {
             return new ArrayList<>();
         }
-        Type type = new TypeToken<List<DaySchedule>>() {}.getType();
-        return gson.fromJson(json, type);
+        Type type = ConfigJson.DAY_SCHEDULES;
+        return GSON.fromJson(json, type);
     }
 
+    /**
+     * Saves the schedule in normalized form, see {@link ScheduleNormalizer}. Callers holding the
+     * list they passed in should read it back with {@link #getSchedule()}.
+     */
     public void setSchedule(List<DaySchedule> schedule) {
-        String json = gson.toJson(schedule);
-        prefs.edit().putString(KEY_SCHEDULE, json).apply();
+        schedule = ScheduleNormalizer.normalize(schedule);
+        FilterProfile profile = getActiveProfile();
+        if (profile != null) {
+            saveProfile(profile.withSchedule(schedule));
+            return;
+        }
+        String json = GSON.toJson(schedule, ConfigJson.DAY_SCHEDULES);
+        if (json.equals(schedulePrefs.getString(KEY_SCHEDULE, null))) {
+            return;
+        }
+        ScheduleBitmap bitmap = ScheduleBitmap.compile(schedule);
+        updateSnapshot(null, current -> current.withSchedule(bitmap, json));
+        schedulePrefs.edit()
+                .putString(KEY_SCHEDULE, json)
+                .putString(KEY_SCHEDULE_BITMAP, bitmap.encode())
+                .apply();
+        ScheduleTransitionReceiver.scheduleNext(context);
+    }
+
+    /**
+     * @return the zone the schedule is kept in, or null if it follows the device
+     */
+    public ZoneId getScheduleZone() {
+        String id = schedulePrefs.getString(KEY_SCHEDULE_ZONE, null);
+        if (id == null) {
+            return null;
+        }
+        try {
+            return ZoneId.of(id);
+        } catch (DateTimeException e) {
+            Log.e(TAG, "getScheduleZone: Unknown zone " + id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Pins the schedule, its exceptions and recurring windows to a zone, so working hours stay
+     * those at home while travelling. Null makes them follow the device again.
+     */
+    public void setScheduleZone(ZoneId zone) {
+        if (Objects.equals(zone, getScheduleZone())) {
+            return;
+        }
+        String json = calendarStore.getInstancesJson();
+        List<ScheduleException> windows = toWindows(getCalendarInstances(), zone);
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(windows);
+        updateSnapshots(current -> current.withScheduleZone(zone).withOverride(FilterSnapshot.CALENDAR, index, json));
+        if (zone != null) {
+            schedulePrefs.edit().putString(KEY_SCHEDULE_ZONE, zone.getId()).apply();
+        } else {
+            schedulePrefs.edit().remove(KEY_SCHEDULE_ZONE).apply();
+        }
+        ScheduleTransitionReceiver.scheduleNext(context);
+    }
+
+    public List<ScheduleException> getScheduleExceptions() {
+        String json = schedulePrefs.getString(KEY_SCHEDULE_EXCEPTIONS, null);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        Type type = ConfigJson.SCHEDULE_EXCEPTIONS;
+        return GSON.fromJson(json, type);
+    }
+
+    /**
+     * Saves the date ranges that override the weekly schedule, see {@link ScheduleException}.
+     */
+    public void setScheduleExceptions(List<ScheduleException> exceptions) {
+        String json = GSON.toJson(exceptions, ConfigJson.SCHEDULE_EXCEPTIONS);
+        if (json.equals(schedulePrefs.getString(KEY_SCHEDULE_EXCEPTIONS, null))) {
+            return;
+        }
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(exceptions);
+        updateSnapshots(current -> current.withOverride(FilterSnapshot.EXCEPTIONS, index, json));
+        schedulePrefs.edit().putString(KEY_SCHEDULE_EXCEPTIONS, json).apply();
+        ScheduleTransitionReceiver.scheduleNext(context);
+    }
+
+    public List<RecurringWindow> getRecurringWindows() {
+        String json = schedulePrefs.getString(KEY_RECURRING_WINDOWS, null);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        Type type = ConfigJson.RECURRING_WINDOWS;
+        return GSON.fromJson(json, type);
+    }
+
+    /**
+     * Saves the rotations that override the weekly schedule, see {@link RecurringWindow}. Only
+     * windows that were added or edited are expanded again.
+     */
+    public void setRecurringWindows(List<RecurringWindow> windows) {
+        String json = GSON.toJson(windows, ConfigJson.RECURRING_WINDOWS);
+        if (json.equals(schedulePrefs.getString(KEY_RECURRING_WINDOWS, null))) {
+            return;
+        }
+        RecurrenceTable table = updateRecurrences(windows);
+        updateSnapshots(current -> current.withOverride(FilterSnapshot.RECURRING, table.getIndex(), json));
+        schedulePrefs.edit().putString(KEY_RECURRING_WINDOWS, json).apply();
+        ScheduleTransitionReceiver.scheduleNext(context);
+        ScheduleRefreshJobService.schedule(context);
+    }
+
+    /**
+     * Moves the occurrence table of the recurring windows to a horizon starting yesterday, so it
+     * never runs out while the app isn't opened. Called daily by {@link ScheduleRefreshJobService}.
+     */
+    public void refreshRecurrences() {
+        String json = schedulePrefs.getString(KEY_RECURRING_WINDOWS, null);
+        RecurrenceTable table = updateRecurrences(getRecurringWindows());
+        updateSnapshots(current -> current.withOverride(FilterSnapshot.RECURRING, table.getIndex(), json));
+        ScheduleTransitionReceiver.scheduleNext(context);
+    }
+
+    private static RecurrenceTable updateRecurrences(List<RecurringWindow> windows) {
+        LocalDateTime from = LocalDate.now().minusDays(1).atStartOfDay();
+        synchronized (ConfigManager.class) {
+            recurrences = recurrences.update(windows, from, from.plusDays(RECURRENCE_HORIZON_DAYS));
+            return recurrences;
+        }
+    }
+
+    /**
+     * @return the calendars whose events are synced as allowed windows, empty if the mode is off
+     */
+    public Set<Long> getCalendarIds() {
+        return calendarStore.getCalendarIds();
+    }
+
+    /**
+     * Changes the synced calendars, dropping what was synced from the previous ones.
+     */
+    public void setCalendarIds(Set<Long> ids) {
+        if (calendarStore.setCalendarIds(ids)) {
+            setCalendarInstances(new ArrayList<>(), 0);
+        }
+    }
+
+    List<CalendarInstance> getCalendarInstances() {
+        return calendarStore.getInstances();
+    }
+
+    /**
+     * @return the end of the range {@link #getCalendarInstances()} was read for, 0 if never synced
+     */
+    long getCalendarSyncedUntil() {
+        return calendarStore.getSyncedUntil();
+    }
+
+    void setCalendarInstances(List<CalendarInstance> instances, long syncedUntil) {
+        String json = GSON.toJson(instances, CalendarInstance.LIST_TYPE);
+        boolean changed = !json.equals(calendarStore.getInstancesJson());
+        if (changed) {
+            List<ScheduleException> windows = toWindows(instances, getScheduleZone());
+            ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(windows);
+            updateSnapshots(current -> current.withOverride(FilterSnapshot.CALENDAR, index, json));
+        }
+        calendarStore.putInstances(changed ? json : null, syncedUntil);
+        ScheduleTransitionReceiver.scheduleNext(context);
+    }
+
+    private List<ScheduleException> getCalendarWindows() {
+        return toWindows(getCalendarInstances(), getScheduleZone());
+    }
+
+    // Events are instants, the other layers wall-clock times in the schedule's zone
+    private static List<ScheduleException> toWindows(List<CalendarInstance> instances, ZoneId scheduleZone) {
+        ZoneId zone = scheduleZone != null ? scheduleZone : ZoneId.systemDefault();
+        List<ScheduleException> windows = new ArrayList<>(instances.size());
+        for (CalendarInstance instance : instances) {
+            windows.add(instance.toScheduleException(zone));
+        }
+        return windows;
     }
 
     public List<WhitelistedContact> getWhitelist() {
-        String json = prefs.getString(KEY_WHITELIST, null);
+        awaitMigration();
+        String json = whitelistPrefs.getString(KEY_WHITELIST, null);
         if (json == null) {
             return new ArrayList<>();
         }
-        Type type = new TypeToken<List<WhitelistedContact>>() {}.getType();
-        return gson.fromJson(json, type);
+        Type type = ConfigJson.WHITELIST;
+        return GSON.fromJson(json, type);
     }
 
     public void setWhitelist(List<WhitelistedContact> wl) {
-        String json = gson.toJson(wl);
-        prefs.edit().putString(KEY_WHITELIST, json).apply();
+        awaitMigration();
+        String json = GSON.toJson(wl, ConfigJson.WHITELIST);
+        if (json.equals(whitelistPrefs.getString(KEY_WHITELIST, null))) {
+            return;
+        }
+        updateSnapshots(current -> current.withWhitelist(profileWhitelist(wl, getProfile(current.getProfileId())), json));
+        whitelistPrefs.edit().putString(KEY_WHITELIST, json).apply();
     }
 
-    public List<BlockedCall> getBlockedCalls() {
-        String json = prefs.getString(KEY_BLOCKED_CALLS, null);
+    /**
+     * @return the contact groups whose members are kept in the whitelist
+     */
+    public Set<Long> getWhitelistGroupIds() {
+        Set<Long> ids = new HashSet<>();
+        for (String id : whitelistPrefs.getStringSet(KEY_WHITELIST_GROUPS, Collections.emptySet())) {
+            ids.add(Long.parseLong(id));
+        }
+        return ids;
+    }
+
+    public boolean isWhitelistStarred() {
+        return whitelistPrefs.getBoolean(KEY_WHITELIST_STARRED, false);
+    }
+
+    /**
+     * Chooses the groups, and whether the starred contacts, {@link WhitelistGroupSync} keeps in the
+     * whitelist. The entries it added for groups that are no longer chosen go on the next sync.
+     */
+    public void setWhitelistGroups(Set<Long> groupIds, boolean starred) {
+        Set<String> stored = new HashSet<>();
+        for (long id : groupIds) {
+            stored.add(Long.toString(id));
+        }
+        whitelistPrefs.edit()
+                .putStringSet(KEY_WHITELIST_GROUPS, stored)
+                .putBoolean(KEY_WHITELIST_STARRED, starred)
+                .apply();
+    }
+
+    /**
+     * @return the numbers of the whitelist entries added by group syncs rather than by hand
+     */
+    Set<String> getWhitelistSynced() {
+        awaitMigration();
+        return new HashSet<>(whitelistPrefs.getStringSet(KEY_WHITELIST_SYNCED, Collections.emptySet()));
+    }
+
+    /**
+     * Stores a whitelist merged by {@link WhitelistGroupSync} together with the numbers the syncs
+     * added, in one write.
+     */
+    void setSyncedWhitelist(List<WhitelistedContact> wl, Set<String> synced) {
+        awaitMigration();
+        String json = GSON.toJson(wl, ConfigJson.WHITELIST);
+        boolean whitelistChanged = !json.equals(whitelistPrefs.getString(KEY_WHITELIST, null));
+        if (!whitelistChanged && synced.equals(getWhitelistSynced())) {
+            return;
+        }
+        if (whitelistChanged) {
+            updateSnapshots(current -> current.withWhitelist(profileWhitelist(wl, getProfile(current.getProfileId())), json));
+        }
+        whitelistPrefs.edit()
+                .putString(KEY_WHITELIST, json)
+                .putStringSet(KEY_WHITELIST_SYNCED, synced)
+                .apply();
+    }
+
+    /**
+     * @return the number rules of the active profile
+     */
+    public List<NumberRule> getNumberRules() {
+        FilterProfile profile = getActiveProfile();
+        if (profile != null) {
+            return profile.getRules() != null ? profile.getRules() : new ArrayList<>();
+        }
+        return getDefaultNumberRules();
+    }
+
+    private List<NumberRule> getDefaultNumberRules() {
+        awaitMigration();
+        String json = rulesPrefs.getString(KEY_RULES, null);
         if (json == null) {
             return new ArrayList<>();
         }
-        Type type = new TypeToken<List<BlockedCall>>() {}.getType();
-        return gson.fromJson(json, type);
+        Type type = ConfigJson.NUMBER_RULES;
+        return GSON.fromJson(json, type);
+    }
+
+    public void setNumberRules(List<NumberRule> rules) {
+        List<NumberRule> normalized = normalizeRules(getNumberNormalizer(), rules);
+        FilterProfile profile = getActiveProfile();
+        if (profile != null) {
+            saveProfile(profile.withRules(normalized));
+            return;
+        }
+        String json = GSON.toJson(normalized, ConfigJson.NUMBER_RULES);
+        if (json.equals(rulesPrefs.getString(KEY_RULES, null))) {
+            return;
+        }
+        updateSnapshot(null, current -> current.withRules(normalized, json));
+        rulesPrefs.edit().putString(KEY_RULES, json).apply();
+    }
+
+    public List<BlockedCall> getBlockedCalls() {
+        try {
+            return getJournal().read(0, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            Log.e(TAG, "getBlockedCalls: Failed to read the blocked call journal", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reads one page of the blocked call log into {@code page}, newest first, without loading the
+     * rest of it.
+     *
+     * @param before {@link BlockedCallJournal#NEWEST}, or the cursor returned for the previous page
+     * @return the cursor for the next page
+     */
+    public long getBlockedCalls(long before, int limit, List<BlockedCall> page) {
+        try {
+            return getJournal().readBefore(before, limit, page);
+        } catch (IOException e) {
+            Log.e(TAG, "getBlockedCalls: Failed to read the blocked call journal", e);
+            return before;
+        }
     }
 
     public void addBlockedCall(BlockedCall call) {
-        List<BlockedCall> calls = getBlockedCalls();
-        calls.add(0, call); // Add to the top of the list
-        String json = gson.toJson(calls);
-        prefs.edit().putString(KEY_BLOCKED_CALLS, json).apply();
+        addBlockedCalls(Collections.singletonList(call));
     }
 
     /**
-     * Clears all app data including schedule, whitelist, and blocked calls.
-     * The enabled state is preserved.
+     * Appends a batch of blocked calls, given oldest first, to the journal in a single write.
+     */
+    public void addBlockedCalls(List<BlockedCall> batch) {
+        try {
+            getJournal().append(batch);
+        } catch (IOException e) {
+            Log.e(TAG, "addBlockedCalls: Failed to append to the blocked call journal", e);
+        }
+    }
+
+    /**
+     * Replaces the spam list with the numbers read from {@code in}, one per line. The import streams
+     * the input and only swaps the new list in once it is completely written, so calls keep being
+     * screened against the previous list meanwhile. Call this off the main thread.
+     *
+     * @return the number of distinct numbers imported, or -1 if the import failed
+     */
+    public long importSpamList(InputStream in) {
+        synchronized (spamImportLock) {
+            File file = new File(context.getFilesDir(), SPAM_LIST_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                long count = new SpamBlocklistImporter(getNumberNormalizer()).importTo(reader, file);
+                setSpamBlocklist(SpamBlocklist.open(file));
+                Log.d(TAG, "importSpamList: Imported " + count + " numbers");
+                return count;
+            } catch (IOException e) {
+                Log.e(TAG, "importSpamList: Failed to import the spam list", e);
+                return -1;
+            }
+        }
+    }
+
+    public long getSpamListSize() {
+        return getSpamBlocklist().size();
+    }
+
+    private SpamBlocklist getSpamBlocklist() {
+        synchronized (ConfigManager.class) {
+            if (spamBlocklist == null) {
+                try {
+                    spamBlocklist = SpamBlocklist.open(new File(context.getFilesDir(), SPAM_LIST_FILE));
+                } catch (IOException e) {
+                    Log.e(TAG, "getSpamBlocklist: Failed to open the spam list", e);
+                    spamBlocklist = SpamBlocklist.EMPTY;
+                }
+            }
+            return spamBlocklist;
+        }
+    }
+
+    private void setSpamBlocklist(SpamBlocklist list) {
+        synchronized (ConfigManager.class) {
+            spamBlocklist = list;
+        }
+        updateSnapshots(current -> current.withSpamBlocklist(list));
+    }
+
+    private BlockedCallJournal getJournal() throws IOException {
+        awaitMigration();
+        synchronized (ConfigManager.class) {
+            if (journal == null) {
+                journal = new BlockedCallJournal(new File(context.getFilesDir(), JOURNAL_DIR));
+            }
+            return journal;
+        }
+    }
+
+    /**
+     * Writes the live state of the compiled snapshot and the journal, for dumpsys.
+     */
+    public void dump(PrintWriter pw, String prefix) {
+        FilterSnapshot current = snapshot.get();
+        if (current != null) {
+            current.dump(pw, prefix);
+        } else {
+            pw.println(prefix + "Snapshot: not built yet");
+        }
+        synchronized (ConfigManager.class) {
+            recurrences.dump(pw, prefix);
+        }
+        try {
+            getJournal().dump(pw, prefix);
+        } catch (IOException e) {
+            pw.println(prefix + "Journal: unavailable (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Clears all stored configuration, synced data and blocked calls. The enabled state, the repeat
+     * caller rule and the default region are preserved.
      */
     public void clearAllData() {
-        prefs.edit()
+        awaitMigration();
+        // Nothing is left for the background jobs to keep in sync
+        ScheduleRefreshJobService.cancel(context);
+        ContactSyncJobService.cancel(context);
+        CalendarSyncJobService.cancel(context);
+        schedulePrefs.edit()
                 .remove(KEY_SCHEDULE)
-                .remove(KEY_WHITELIST)
-                .remove(KEY_BLOCKED_CALLS)
+                .remove(KEY_SCHEDULE_BITMAP)
+                .remove(KEY_SCHEDULE_EXCEPTIONS)
+                .remove(KEY_RECURRING_WINDOWS)
+                .remove(KEY_SCHEDULE_ZONE)
                 .apply();
+        whitelistPrefs.edit().clear().apply();
+        settingsPrefs.edit().remove(KEY_ALLOW_CONTACTS).apply();
+        contactStore.clear();
+        updateSnapshots(current -> current.withContacts(ContactNumberSet.EMPTY));
+        rulesPrefs.edit().remove(KEY_RULES).apply();
+        calendarStore.clear();
+        profileStore.clear();
+        synchronized (spamImportLock) {
+            File spamList = new File(context.getFilesDir(), SPAM_LIST_FILE);
+            if (spamList.exists() && !spamList.delete()) {
+                Log.e(TAG, "clearAllData: Failed to delete the spam list");
+            }
+            setSpamBlocklist(SpamBlocklist.EMPTY);
+        }
+        try {
+            getJournal().clear();
+        } catch (IOException e) {
+            Log.e(TAG, "clearAllData: Failed to clear the blocked call journal", e);
+        }
     }
 }
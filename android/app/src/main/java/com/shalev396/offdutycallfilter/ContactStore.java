@@ -0,0 +1,88 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.shalev396.offdutycallfilter.core.ContactNumberIndex;
+import com.shalev396.offdutycallfilter.core.ContactNumberSet;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The device contact numbers {@link ContactSync} mirrors, and the set compiled from them. The index
+ * is read from disk on first use and shared by the whole process; only ContactSync changes it.
+ */
+final class ContactStore {
+
+    private static final String TAG = "ContactStore";
+    private static final String INDEX_FILE = "contact_numbers.bin";
+
+    private static ContactNumberIndex index;
+    private static ContactNumberSet numbers;
+
+    private final File file;
+
+    ContactStore(Context context) {
+        file = new File(context.getFilesDir(), INDEX_FILE);
+    }
+
+    ContactNumberIndex getIndex() {
+        synchronized (ContactStore.class) {
+            if (index == null) {
+                try {
+                    index = ContactNumberIndex.readFrom(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "getIndex: Failed to read the contact index", e);
+                    index = new ContactNumberIndex();
+                }
+                numbers = index.compile();
+            }
+            return index;
+        }
+    }
+
+    ContactNumberSet getNumbers() {
+        synchronized (ContactStore.class) {
+            getIndex();
+            return numbers;
+        }
+    }
+
+    /**
+     * Persists the index after it was updated, compiling it again if any numbers changed.
+     *
+     * @param updated the index as returned by {@link #getIndex()} before the update
+     * @return false if the store was cleared meanwhile, so {@code updated} was dropped
+     */
+    boolean save(ContactNumberIndex updated, boolean numbersChanged) {
+        synchronized (ContactStore.class) {
+            if (updated != index) {
+                return false;
+            }
+            try {
+                index.writeTo(file);
+            } catch (IOException e) {
+                Log.e(TAG, "save: Failed to write the contact index", e);
+            }
+            if (numbersChanged) {
+                numbers = index.compile();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Forgets every contact number, so the next sync starts over. A sync still working on the old
+     * index can't save it back.
+     */
+    void clear() {
+        synchronized (ContactStore.class) {
+            index = new ContactNumberIndex();
+            numbers = ContactNumberSet.EMPTY;
+            if (file.exists() && !file.delete()) {
+                Log.e(TAG, "clear: Failed to delete the contact index");
+            }
+        }
+    }
+}
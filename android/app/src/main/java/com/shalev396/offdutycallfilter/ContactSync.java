@@ -0,0 +1,172 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.DeletedContacts;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.shalev396.offdutycallfilter.core.ContactNumberIndex;
+import com.shalev396.offdutycallfilter.core.NumberNormalizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mirrors the numbers of the device contacts into {@link ConfigManager}'s contact index, so letting
+ * every contact ring never queries the contacts provider while a call is screened. After the first
+ * full read only contacts whose {@code CONTACT_LAST_UPDATED_TIMESTAMP} moved since the last sync are
+ * re-read, and the ones deleted since are dropped. The syncs are synchronized since each one
+ * updates the same index.
+ */
+final class ContactSync {
+
+    private static final String TAG = "ContactSync";
+    // Beyond this many changed contacts (an account sync) one full read beats a long IN list
+    private static final int MAX_DELTA_CONTACTS = 500;
+
+    private static final String[] PHONE_PROJECTION = {
+            Phone.CONTACT_ID, Phone.NUMBER, Phone.NORMALIZED_NUMBER, Phone.CONTACT_LAST_UPDATED_TIMESTAMP
+    };
+
+    private ContactSync() {
+    }
+
+    /**
+     * Re-reads every contact. Used when the mode is turned on and when a delta can't be trusted.
+     */
+    @WorkerThread
+    static synchronized void syncAll(Context context) {
+        ConfigManager configManager = new ConfigManager(context);
+        if (!configManager.isAllowContacts()) {
+            return;
+        }
+        Map<Long, List<String>> numbers = new HashMap<>();
+        long latest = queryNumbers(context, configManager.getNumberNormalizer(), null, numbers);
+        if (latest < 0) {
+            return;
+        }
+        ContactNumberIndex index = configManager.getContactIndex();
+        index.clear();
+        for (Map.Entry<Long, List<String>> entry : numbers.entrySet()) {
+            index.put(entry.getKey(), entry.getValue());
+        }
+        index.setSyncedUntil(latest);
+        configManager.saveContactIndex(index, true);
+        Log.d(TAG, "syncAll: " + index.contactCount() + " contacts with numbers");
+    }
+
+    /**
+     * Re-reads the contacts updated since the last sync and drops the deleted ones.
+     */
+    @WorkerThread
+    static synchronized void syncChanges(Context context) {
+        ConfigManager configManager = new ConfigManager(context);
+        if (!configManager.isAllowContacts()) {
+            return;
+        }
+        ContactNumberIndex index = configManager.getContactIndex();
+        long since = index.getSyncedUntil();
+        // The provider forgets deletions after a while, so an older index may hold stale contacts
+        if (since == 0 || System.currentTimeMillis() - since > DeletedContacts.DAYS_KEPT_MILLISECONDS) {
+            syncAll(context);
+            return;
+        }
+
+        // ">=" re-reads contacts updated in the same millisecond as the last sync, which is harmless
+        Set<Long> changed = new HashSet<>();
+        Set<Long> deleted = new HashSet<>();
+        long latest = since;
+        String[] args = {Long.toString(since)};
+        try (Cursor cursor = context.getContentResolver().query(Contacts.CONTENT_URI,
+                new String[]{Contacts._ID, Contacts.CONTACT_LAST_UPDATED_TIMESTAMP},
+                Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?", args, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                changed.add(cursor.getLong(0));
+                latest = Math.max(latest, cursor.getLong(1));
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "syncChanges: Contacts permission missing", e);
+            return;
+        }
+        try (Cursor cursor = context.getContentResolver().query(DeletedContacts.CONTENT_URI,
+                new String[]{DeletedContacts.CONTACT_ID, DeletedContacts.CONTACT_DELETED_TIMESTAMP},
+                DeletedContacts.CONTACT_DELETED_TIMESTAMP + " >= ?", args, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                deleted.add(cursor.getLong(0));
+                latest = Math.max(latest, cursor.getLong(1));
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "syncChanges: Contacts permission missing", e);
+            return;
+        }
+        if (changed.size() > MAX_DELTA_CONTACTS) {
+            syncAll(context);
+            return;
+        }
+
+        Map<Long, List<String>> numbers = new HashMap<>();
+        if (!changed.isEmpty() && queryNumbers(context, configManager.getNumberNormalizer(), changed, numbers) < 0) {
+            return;
+        }
+        boolean modified = false;
+        for (long contactId : deleted) {
+            modified |= index.remove(contactId);
+        }
+        for (long contactId : changed) {
+            modified |= index.put(contactId, numbers.getOrDefault(contactId, Collections.emptyList()));
+        }
+        index.setSyncedUntil(latest);
+        configManager.saveContactIndex(index, modified);
+        Log.d(TAG, "syncChanges: " + changed.size() + " changed, " + deleted.size() + " deleted, modified: " + modified);
+    }
+
+    /**
+     * Adds the numbers of the given contacts to {@code out}, in the form {@code normalizer} gives
+     * incoming calls so a contact's call matches its entry exactly. The provider's E.164 form is
+     * read where it has one, since it was placed using the contact's own country.
+     *
+     * @param contactIds only these contacts, or null for all of them
+     * @return the newest contact update timestamp seen, or -1 if the provider couldn't be read
+     */
+    private static long queryNumbers(Context context, NumberNormalizer normalizer, Set<Long> contactIds,
+                                     Map<Long, List<String>> out) {
+        String selection = contactIds != null ? Phone.CONTACT_ID + " IN (" + join(contactIds) + ")" : null;
+        long latest = 0;
+        try (Cursor cursor = context.getContentResolver().query(Phone.CONTENT_URI, PHONE_PROJECTION,
+                selection, null, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                String number = cursor.isNull(2) ? cursor.getString(1) : cursor.getString(2);
+                if (number != null) {
+                    out.computeIfAbsent(cursor.getLong(0), id -> new ArrayList<>()).add(normalizer.normalize(number));
+                }
+                latest = Math.max(latest, cursor.getLong(3));
+            }
+            return latest;
+        } catch (SecurityException e) {
+            Log.e(TAG, "queryNumbers: Contacts permission missing", e);
+            return -1;
+        }
+    }
+
+    // Ids are numbers, so they can go into the selection directly
+    private static String join(Collection<Long> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (long id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+}
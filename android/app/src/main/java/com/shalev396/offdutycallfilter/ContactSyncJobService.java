@@ -0,0 +1,92 @@
+package com.shalev396.offdutycallfilter;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link ContactSync} and {@link WhitelistGroupSync} in the background whenever the contacts
+ * provider reports a change, like {@link CalendarSyncJobService} does for calendars. Content jobs
+ * don't survive a reboot, so a daily persisted job catches up on what changed meanwhile and re-arms
+ * the change job.
+ */
+public class ContactSyncJobService extends JobService {
+
+    private static final String TAG = "ContactSyncJob";
+    // Job ids are shared by the whole app, 1 to 3 belong to the calendar and schedule jobs
+    private static final int JOB_CHANGES = 4;
+    private static final int JOB_DAILY = 5;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Starts watching the contacts while all of them may ring or groups are synced, or stops.
+     */
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        ConfigManager configManager = new ConfigManager(context);
+        if (!configManager.isAllowContacts() && configManager.getWhitelistGroupIds().isEmpty()
+                && !configManager.isWhitelistStarred()) {
+            cancel(context);
+            return;
+        }
+        scheduleChanges(context);
+        if (jobScheduler.getPendingJob(JOB_DAILY) == null) {
+            jobScheduler.schedule(new JobInfo.Builder(JOB_DAILY, new ComponentName(context, ContactSyncJobService.class))
+                    .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    static void cancel(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        jobScheduler.cancel(JOB_CHANGES);
+        jobScheduler.cancel(JOB_DAILY);
+    }
+
+    // Content jobs fire once, so this is called again after every run
+    private static void scheduleChanges(Context context) {
+        context.getSystemService(JobScheduler.class).schedule(
+                new JobInfo.Builder(JOB_CHANGES, new ComponentName(context, ContactSyncJobService.class))
+                        .addTriggerContentUri(new JobInfo.TriggerContentUri(ContactsContract.Contacts.CONTENT_URI,
+                                JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                        // Syncing an account touches many contacts at once, wait for it to settle
+                        .setTriggerContentUpdateDelay(TimeUnit.SECONDS.toMillis(5))
+                        .setTriggerContentMaxDelay(TimeUnit.MINUTES.toMillis(1))
+                        .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Log.d(TAG, "onStartJob: " + params.getJobId());
+        executor.execute(() -> {
+            ContactSync.syncChanges(this);
+            WhitelistGroupSync.sync(this, null);
+            // Finish first, scheduling a job under the running one's id would stop it
+            jobFinished(params, false);
+            schedule(this);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,65 @@
+package com.shalev396.offdutycallfilter;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+
+import com.shalev396.offdutycallfilter.core.LatencyHistogram;
+import com.shalev396.offdutycallfilter.core.ScreeningStats;
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Stage;
+
+import java.util.Locale;
+
+public class DiagnosticsFragment extends Fragment {
+
+    private TextView latencyTable;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_diagnostics, container, false);
+
+        latencyTable = view.findViewById(R.id.text_latency_table);
+        view.findViewById(R.id.button_reset_diagnostics).setOnClickListener(v -> {
+            ScreeningStats.reset();
+            CallFilterService.decisionCache.resetCounters();
+            updateLatencyTable();
+        });
+
+        return view;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateLatencyTable();
+    }
+
+    private void updateLatencyTable() {
+        if (ScreeningStats.get(Stage.TOTAL).count() == 0) {
+            latencyTable.setText(R.string.diagnostics_no_data);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-18s %6s %7s %7s %7s %7s%n", "Stage", "n", "p50", "p95", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = ScreeningStats.get(stage);
+            sb.append(String.format(Locale.US, "%-18s %6d %7.1f %7.1f %7.1f %7.1f%n", stage.getLabel(),
+                    histogram.count(),
+                    histogram.percentileNanos(50) / 1000.0,
+                    histogram.percentileNanos(95) / 1000.0,
+                    histogram.percentileNanos(99) / 1000.0,
+                    histogram.maxNanos() / 1000.0));
+        }
+        long hits = CallFilterService.decisionCache.hits();
+        long misses = CallFilterService.decisionCache.misses();
+        sb.append(String.format(Locale.US, "%nDecision cache: %d hits, %d misses", hits, misses));
+        latencyTable.setText(sb.toString().trim());
+    }
+}
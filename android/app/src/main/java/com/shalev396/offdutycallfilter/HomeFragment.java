@@ -1,16 +1,21 @@
 package com.shalev396.offdutycallfilter;
 
 import android.Manifest;
+import android.app.Activity;
 import android.app.role.RoleManager;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.Settings;
+import android.text.format.DateUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -25,12 +30,36 @@ import androidx.core.widget.TextViewCompat;
 import androidx.fragment.app.Fragment;
 
 import com.google.android.material.switchmaterial.SwitchMaterial;
+import com.shalev396.offdutycallfilter.core.FilterProfile;
+import com.shalev396.offdutycallfilter.core.RepeatCallerRule;
+import com.shalev396.offdutycallfilter.core.ScheduleState;
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HomeFragment extends Fragment {
 
+    private static final String TAG = "HomeFragment";
+
+    private static final RepeatCallerRule[] REPEAT_CALLER_RULES = {
+            RepeatCallerRule.OFF,
+            new RepeatCallerRule(2, 3),
+            new RepeatCallerRule(2, 5),
+            new RepeatCallerRule(3, 10),
+            new RepeatCallerRule(3, 15),
+    };
+
     private SwitchMaterial switchCallFilter;
     private ConfigManager configManager;
     private TextView filterStatusText;
+    private TextView scheduleStateText;
+    private Button buttonProfile;
+    private Button buttonRepeatCallers;
     
     // Permissions Card
     private LinearLayout permissionsCard;
@@ -60,6 +89,16 @@ public class HomeFragment extends Fragment {
                 updatePermissionsCard();
             });
 
+    // Imports run on their own thread, a list with millions of numbers takes a while to sort
+    private final ExecutorService spamImportExecutor = Executors.newSingleThreadExecutor();
+
+    private final ActivityResultLauncher<String[]> openSpamListLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    importSpamList(uri);
+                }
+            });
+
     // Activity result launcher for Contacts permission
     private final ActivityResultLauncher<String> requestContactsPermissionLauncher = registerForActivityResult(
             new ActivityResultContracts.RequestPermission(), isGranted -> {
@@ -77,13 +116,18 @@ public class HomeFragment extends Fragment {
         configManager = new ConfigManager(requireContext());
         switchCallFilter = view.findViewById(R.id.switch_call_filter);
         filterStatusText = view.findViewById(R.id.text_filter_status);
+        scheduleStateText = view.findViewById(R.id.text_schedule_state);
+        buttonProfile = view.findViewById(R.id.button_profile);
+        buttonRepeatCallers = view.findViewById(R.id.button_repeat_callers);
         permissionsCard = view.findViewById(R.id.permissions_card);
         permissionStatusText = view.findViewById(R.id.permission_status_text);
         permissionStatusDescription = view.findViewById(R.id.permission_status_description);
         buttonGrantPermission = view.findViewById(R.id.button_grant_permission);
         
-        // buttonResetData is only used for setting click listener, so keep as local
+        // These buttons are only used for setting click listeners, so keep as locals
         Button buttonResetData = view.findViewById(R.id.button_reset_data);
+        Button buttonDiagnostics = view.findViewById(R.id.button_diagnostics);
+        Button buttonImportSpam = view.findViewById(R.id.button_import_spam);
 
         switchCallFilter.setChecked(configManager.isEnabled());
         updateFilterStatusLabel(configManager.isEnabled());
@@ -99,15 +143,214 @@ public class HomeFragment extends Fragment {
         });
 
         buttonGrantPermission.setOnClickListener(v -> handleGrantPermissionClick());
+        buttonProfile.setOnClickListener(v -> showProfilePicker());
+        buttonRepeatCallers.setOnClickListener(v -> showRepeatCallerPicker());
         buttonResetData.setOnClickListener(v -> showResetConfirmationDialog());
+        buttonDiagnostics.setOnClickListener(v -> getParentFragmentManager().beginTransaction()
+                .replace(R.id.fragment_container, new DiagnosticsFragment())
+                .addToBackStack(null)
+                .commit());
+        buttonImportSpam.setOnClickListener(v -> openSpamListLauncher.launch(new String[]{"text/*", "application/octet-stream"}));
 
         return view;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        spamImportExecutor.shutdown();
+    }
+
+    private void importSpamList(Uri uri) {
+        // Captured up front, the fragment may be detached by the time the import finishes
+        Activity activity = requireActivity();
+        ContentResolver resolver = activity.getContentResolver();
+        ConfigManager manager = configManager;
+        spamImportExecutor.execute(() -> {
+            long count = -1;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                if (in != null) {
+                    count = manager.importSpamList(in);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "importSpamList: Failed to open " + uri, e);
+            }
+            long imported = count;
+            activity.runOnUiThread(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                if (imported >= 0) {
+                    Toast.makeText(activity, getString(R.string.spam_import_success, imported), Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(activity, R.string.spam_import_failed, Toast.LENGTH_LONG).show();
+                }
+            });
+        });
+    }
+
     @Override
     public void onResume() {
         super.onResume();
         updatePermissionsCard();
+        updateProfileButton();
+        updateRepeatCallersButton();
+    }
+
+    private String describe(RepeatCallerRule rule) {
+        return rule.isEnabled()
+                ? getString(R.string.repeat_callers_rule, rule.getCalls(), rule.getWindowMinutes())
+                : getString(R.string.repeat_callers_off);
+    }
+
+    private void updateRepeatCallersButton() {
+        buttonRepeatCallers.setText(getString(R.string.repeat_callers_button, describe(configManager.getRepeatCallerRule())));
+    }
+
+    private void showRepeatCallerPicker() {
+        String[] names = new String[REPEAT_CALLER_RULES.length];
+        int checked = -1;
+        RepeatCallerRule current = configManager.getRepeatCallerRule();
+        for (int i = 0; i < REPEAT_CALLER_RULES.length; i++) {
+            names[i] = describe(REPEAT_CALLER_RULES[i]);
+            if (REPEAT_CALLER_RULES[i].equals(current)) {
+                checked = i;
+            }
+        }
+        new AlertDialog.Builder(requireContext(), R.style.AlertDialog_Dark)
+                .setTitle(R.string.repeat_callers_title)
+                .setSingleChoiceItems(names, checked, (dialog, which) -> {
+                    configManager.setRepeatCallerRule(REPEAT_CALLER_RULES[which]);
+                    updateRepeatCallersButton();
+                    dialog.dismiss();
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void updateProfileButton() {
+        String name = getString(R.string.profile_default);
+        String active = configManager.getActiveProfileId();
+        for (FilterProfile profile : configManager.getProfiles()) {
+            if (profile.getId().equals(active)) {
+                name = profile.getName();
+            }
+        }
+        buttonProfile.setText(getString(R.string.profile_button, name));
+    }
+
+    /**
+     * Lists the profiles to switch to, plus entries to create one and to delete the active one.
+     */
+    private void showProfilePicker() {
+        List<FilterProfile> profiles = configManager.getProfiles();
+        String active = configManager.getActiveProfileId();
+        List<String> names = new ArrayList<>();
+        names.add(getString(R.string.profile_default));
+        String activeName = null;
+        for (FilterProfile profile : profiles) {
+            names.add(profile.getName());
+            if (profile.getId().equals(active)) {
+                activeName = profile.getName();
+            }
+        }
+        names.add(getString(R.string.profile_new));
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireContext(), R.style.AlertDialog_Dark)
+                .setTitle(R.string.profile_title)
+                .setItems(names.toArray(new String[0]), (dialog, which) -> {
+                    if (which == names.size() - 1) {
+                        showNewProfileDialog();
+                    } else {
+                        switchProfile(which == 0 ? null : profiles.get(which - 1).getId());
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null);
+        if (active != null) {
+            builder.setNeutralButton(getString(R.string.profile_delete, activeName), (dialog, which) -> {
+                configManager.deleteProfile(active);
+                switchProfile(null);
+            });
+        }
+        builder.show();
+    }
+
+    private void showNewProfileDialog() {
+        EditText nameInput = new EditText(requireContext());
+        nameInput.setHint(R.string.profile_new_hint);
+        nameInput.setSingleLine(true);
+        new AlertDialog.Builder(requireContext(), R.style.AlertDialog_Dark)
+                .setTitle(R.string.profile_new_title)
+                .setView(nameInput)
+                .setPositiveButton(R.string.create, (dialog, which) -> {
+                    String name = nameInput.getText().toString().trim();
+                    if (!name.isEmpty()) {
+                        showProfileWhitelistPicker(name);
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Picks the whitelisted contacts that ring in a new profile. The profile starts with a copy of
+     * the schedule and rules in use now.
+     */
+    private void showProfileWhitelistPicker(String name) {
+        List<WhitelistedContact> whitelist = configManager.getWhitelist();
+        if (whitelist.isEmpty()) {
+            switchProfile(configManager.addProfile(name, null).getId());
+            return;
+        }
+        String[] names = new String[whitelist.size()];
+        boolean[] checked = new boolean[whitelist.size()];
+        for (int i = 0; i < whitelist.size(); i++) {
+            names[i] = whitelist.get(i).getName();
+            checked[i] = true;
+        }
+        new AlertDialog.Builder(requireContext(), R.style.AlertDialog_Dark)
+                .setTitle(R.string.profile_whitelist_title)
+                .setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(R.string.create, (dialog, which) -> {
+                    List<String> numbers = new ArrayList<>();
+                    for (int i = 0; i < whitelist.size(); i++) {
+                        if (checked[i]) {
+                            numbers.add(whitelist.get(i).getPhoneE164());
+                        }
+                    }
+                    // With everyone checked, contacts whitelisted later ring in it too
+                    switchProfile(configManager.addProfile(name,
+                            numbers.size() == whitelist.size() ? null : numbers).getId());
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void switchProfile(String id) {
+        configManager.setActiveProfile(id);
+        updateProfileButton();
+        updateScheduleState();
+    }
+
+    /**
+     * Shows when the schedule next changes, and makes sure the transition alarm is set.
+     */
+    private void updateScheduleState() {
+        if (!configManager.isEnabled()) {
+            scheduleStateText.setVisibility(View.GONE);
+            return;
+        }
+        ScheduleState state = configManager.getScheduleState();
+        if (state.getValidUntil() == ScheduleState.FOREVER) {
+            scheduleStateText.setText(state.isAllowed()
+                    ? R.string.schedule_state_always_allowed : R.string.schedule_state_always_blocked);
+        } else {
+            String nextChange = DateUtils.formatDateTime(requireContext(), state.getValidUntil(),
+                    DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_ABBREV_WEEKDAY);
+            scheduleStateText.setText(getString(state.isAllowed()
+                    ? R.string.schedule_state_allowed_until : R.string.schedule_state_blocked_until, nextChange));
+        }
+        scheduleStateText.setVisibility(View.VISIBLE);
+        ScheduleTransitionReceiver.scheduleNext(requireContext());
     }
 
     /**
@@ -318,6 +561,7 @@ public class HomeFragment extends Fragment {
             configManager.setEnabled(false);
             updateFilterStatusLabel(false);
         }
+        updateScheduleState();
     }
 
     private void updateFilterStatusLabel(boolean enabled) {
@@ -13,6 +13,8 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.shalev396.offdutycallfilter.core.BlockedCall;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
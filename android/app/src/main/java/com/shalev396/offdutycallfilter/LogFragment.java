@@ -5,6 +5,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -12,11 +13,24 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.shalev396.offdutycallfilter.core.BlockedCall;
+import com.shalev396.offdutycallfilter.core.BlockedCallJournal;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.List;
 
 public class LogFragment extends Fragment {
 
     private static final String TAG = "LogFragment";
+    private static final int PAGE_SIZE = 100;
+
+    private ConfigManager configManager;
+    private final List<BlockedCall> blockedCalls = new ArrayList<>();
+    private LogAdapter adapter;
+    private boolean hasMore;
+    // Journal position of the oldest call shown, so calls blocked meanwhile don't shift the pages
+    private long cursor = BlockedCallJournal.NEWEST;
 
     @Nullable
     @Override
@@ -24,17 +38,48 @@ public class LogFragment extends Fragment {
         Log.d(TAG, "onCreateView: LogFragment is being created.");
         View view = inflater.inflate(R.layout.fragment_log, container, false);
 
+        // The journal drops its oldest calls past this many, say so rather than let them vanish
+        TextView subtitle = view.findViewById(R.id.text_log_subtitle);
+        subtitle.setText(getString(R.string.log_subtitle,
+                NumberFormat.getIntegerInstance().format(BlockedCallJournal.MAX_RECORDS)));
+
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view_log);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
 
-        ConfigManager configManager = new ConfigManager(requireContext());
-        List<BlockedCall> blockedCalls = configManager.getBlockedCalls();
+        configManager = new ConfigManager(requireContext());
+        blockedCalls.clear();
+        cursor = configManager.getBlockedCalls(BlockedCallJournal.NEWEST, PAGE_SIZE, blockedCalls);
+        hasMore = blockedCalls.size() == PAGE_SIZE;
 
-        Log.d(TAG, "onCreateView: Found " + blockedCalls.size() + " blocked calls.");
+        Log.d(TAG, "onCreateView: Loaded " + blockedCalls.size() + " blocked calls.");
 
-        LogAdapter adapter = new LogAdapter(blockedCalls, getContext());
+        adapter = new LogAdapter(blockedCalls, getContext());
         recyclerView.setAdapter(adapter);
 
+        // Load the journal one page at a time as the user scrolls towards the end
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (hasMore && layoutManager.findLastVisibleItemPosition() >= blockedCalls.size() - PAGE_SIZE / 4) {
+                    hasMore = false; // Until the posted load tells us otherwise
+                    // Adapter changes aren't allowed from inside a scroll callback
+                    rv.post(() -> loadNextPage());
+                }
+            }
+        });
+
         return view;
     }
+
+    private void loadNextPage() {
+        List<BlockedCall> page = new ArrayList<>();
+        cursor = configManager.getBlockedCalls(cursor, PAGE_SIZE, page);
+        hasMore = page.size() == PAGE_SIZE;
+        if (!page.isEmpty()) {
+            int start = blockedCalls.size();
+            blockedCalls.addAll(page);
+            adapter.notifyItemRangeInserted(start, page.size());
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.shalev396.offdutycallfilter.core.FilterProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The filter profiles and which one is active, one JSON entry per profile. Only reads and writes
+ * storage; {@link ConfigManager} keeps the compiled snapshots in step with it.
+ */
+final class ProfileStore {
+
+    private static final String PREFS = "call_filter_profiles";
+    private static final String KEY_ACTIVE_PROFILE = "active_profile";
+    private static final String KEY_PROFILE_PREFIX = "profile_";
+
+    private final SharedPreferences prefs;
+
+    ProfileStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    void registerListener(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        prefs.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    /**
+     * @return every stored profile, in no particular order
+     */
+    List<FilterProfile> getAll() {
+        List<FilterProfile> profiles = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getKey().startsWith(KEY_PROFILE_PREFIX)) {
+                profiles.add(ConfigManager.GSON.fromJson((String) entry.getValue(), FilterProfile.class));
+            }
+        }
+        return profiles;
+    }
+
+    FilterProfile get(String id) {
+        String json = getJson(id);
+        return json != null ? ConfigManager.GSON.fromJson(json, FilterProfile.class) : null;
+    }
+
+    /**
+     * @return the stored JSON of a profile, which its compiled snapshot is checked against
+     */
+    String getJson(String id) {
+        return id != null ? prefs.getString(KEY_PROFILE_PREFIX + id, null) : null;
+    }
+
+    /**
+     * @return the id of the profile in use, null for the default settings or if it was deleted
+     */
+    String getActiveId() {
+        String id = prefs.getString(KEY_ACTIVE_PROFILE, null);
+        return id != null && prefs.contains(KEY_PROFILE_PREFIX + id) ? id : null;
+    }
+
+    void setActiveId(String id) {
+        if (id != null) {
+            prefs.edit().putString(KEY_ACTIVE_PROFILE, id).apply();
+        } else {
+            prefs.edit().remove(KEY_ACTIVE_PROFILE).apply();
+        }
+    }
+
+    void put(String id, String json) {
+        prefs.edit().putString(KEY_PROFILE_PREFIX + id, json).apply();
+    }
+
+    /**
+     * Rewrites several profiles in one synchronous write, for migrations.
+     */
+    void putAllNow(List<FilterProfile> profiles) {
+        SharedPreferences.Editor editor = prefs.edit();
+        for (FilterProfile profile : profiles) {
+            editor.putString(KEY_PROFILE_PREFIX + profile.getId(), ConfigManager.GSON.toJson(profile));
+        }
+        editor.commit();
+    }
+
+    void remove(String id) {
+        prefs.edit().remove(KEY_PROFILE_PREFIX + id).apply();
+    }
+
+    void clear() {
+        prefs.edit().clear().apply();
+    }
+}
@@ -0,0 +1,69 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+import android.util.Log;
+
+import com.shalev396.offdutycallfilter.core.FilterProfile;
+
+import java.util.List;
+
+/**
+ * Quick settings tile showing the active profile. Tapping it moves on to the next one, the default
+ * settings after the last.
+ */
+public class ProfileTileService extends TileService {
+
+    private static final String TAG = "ProfileTileService";
+
+    /**
+     * Asks the system to refresh the tile after the profile was switched elsewhere.
+     */
+    static void update(Context context) {
+        TileService.requestListeningState(context, new ComponentName(context, ProfileTileService.class));
+    }
+
+    @Override
+    public void onStartListening() {
+        // Compiles the profiles ahead of the first tap if this process was started for the tile
+        new ConfigManager(this).getSnapshot();
+        updateTile();
+    }
+
+    @Override
+    public void onClick() {
+        ConfigManager configManager = new ConfigManager(this);
+        List<FilterProfile> profiles = configManager.getProfiles();
+        String active = configManager.getActiveProfileId();
+        int index = -1;
+        for (int i = 0; i < profiles.size(); i++) {
+            if (profiles.get(i).getId().equals(active)) {
+                index = i;
+            }
+        }
+        String next = index + 1 < profiles.size() ? profiles.get(index + 1).getId() : null;
+        Log.d(TAG, "onClick: Switching to " + next);
+        configManager.setActiveProfile(next);
+        updateTile();
+    }
+
+    private void updateTile() {
+        Tile tile = getQsTile();
+        if (tile == null) {
+            return;
+        }
+        ConfigManager configManager = new ConfigManager(this);
+        String name = getString(R.string.profile_default);
+        String active = configManager.getActiveProfileId();
+        for (FilterProfile profile : configManager.getProfiles()) {
+            if (profile.getId().equals(active)) {
+                name = profile.getName();
+            }
+        }
+        tile.setLabel(name);
+        tile.setState(configManager.isEnabled() ? Tile.STATE_ACTIVE : Tile.STATE_INACTIVE);
+        tile.updateTile();
+    }
+}
@@ -7,6 +7,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.shalev396.offdutycallfilter.core.DaySchedule;
+
 import java.util.ArrayList;
 import java.util.List;
 
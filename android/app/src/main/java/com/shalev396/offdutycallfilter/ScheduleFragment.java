@@ -1,6 +1,9 @@
 package com.shalev396.offdutycallfilter;
 
+import android.Manifest;
+import android.app.Activity;
 import android.app.TimePickerDialog;
+import android.content.pm.PackageManager;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -8,7 +11,10 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
@@ -17,21 +23,43 @@ import androidx.fragment.app.Fragment;
 
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
+import com.shalev396.offdutycallfilter.core.DaySchedule;
+import com.shalev396.offdutycallfilter.core.TimeWindow;
 
 import java.text.DateFormatSymbols;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ScheduleFragment extends Fragment implements TimeSheetView.OnWindowClickListener {
 
     private ChipGroup daySelectorChipGroup;
     private TimeSheetView timeSheetView;
     private ConfigManager configManager;
+    private Button scheduleZoneButton;
     private List<DaySchedule> schedule;
     private int selectedDay = Calendar.getInstance().get(Calendar.DAY_OF_WEEK) - 1; // Sunday is 0
 
+    // Calendar queries and syncs stay off the main thread
+    private final ExecutorService calendarExecutor = Executors.newSingleThreadExecutor();
+
+    private final ActivityResultLauncher<String> requestCalendarPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), isGranted -> {
+                if (isGranted) {
+                    showCalendarPicker();
+                } else {
+                    Toast.makeText(getContext(), R.string.calendar_permission_required, Toast.LENGTH_LONG).show();
+                }
+            });
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -49,10 +77,94 @@ public class ScheduleFragment extends Fragment implements TimeSheetView.OnWindow
         updateScheduleView();
 
         view.findViewById(R.id.fab_add_schedule).setOnClickListener(v -> showAddTimeWindowDialog());
+        view.findViewById(R.id.button_calendar_sync).setOnClickListener(v -> {
+            if (ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.READ_CALENDAR)
+                    != PackageManager.PERMISSION_GRANTED) {
+                requestCalendarPermissionLauncher.launch(Manifest.permission.READ_CALENDAR);
+            } else {
+                showCalendarPicker();
+            }
+        });
+        scheduleZoneButton = view.findViewById(R.id.button_schedule_zone);
+        scheduleZoneButton.setOnClickListener(v -> showZonePicker());
+        updateScheduleZoneButton();
 
         return view;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        calendarExecutor.shutdown();
+    }
+
+    /**
+     * Lets the user pick the calendars whose events are working hours. Choosing none turns the
+     * calendar sync off.
+     */
+    private void showCalendarPicker() {
+        Activity activity = requireActivity();
+        calendarExecutor.execute(() -> {
+            Map<Long, String> calendars = CalendarSync.queryCalendars(activity);
+            activity.runOnUiThread(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                if (calendars.isEmpty()) {
+                    Toast.makeText(activity, R.string.calendar_sync_none, Toast.LENGTH_LONG).show();
+                    return;
+                }
+                List<Long> ids = new ArrayList<>(calendars.keySet());
+                Set<Long> selected = configManager.getCalendarIds();
+                boolean[] checked = new boolean[ids.size()];
+                for (int i = 0; i < ids.size(); i++) {
+                    checked[i] = selected.contains(ids.get(i));
+                }
+                new AlertDialog.Builder(activity, R.style.AlertDialog_Dark)
+                        .setTitle(R.string.calendar_sync_title)
+                        .setMultiChoiceItems(calendars.values().toArray(new String[0]), checked,
+                                (dialog, which, isChecked) -> checked[which] = isChecked)
+                        .setPositiveButton(R.string.save, (dialog, which) -> {
+                            Set<Long> chosen = new HashSet<>();
+                            for (int i = 0; i < ids.size(); i++) {
+                                if (checked[i]) {
+                                    chosen.add(ids.get(i));
+                                }
+                            }
+                            configManager.setCalendarIds(chosen);
+                            CalendarSyncJobService.schedule(activity);
+                            calendarExecutor.execute(() -> CalendarSync.syncAll(activity));
+                        })
+                        .setNegativeButton(R.string.cancel, null)
+                        .show();
+            });
+        });
+    }
+
+    /**
+     * Lets the user keep the schedule in a fixed zone, e.g. their home zone while travelling.
+     */
+    private void showZonePicker() {
+        List<String> zones = new ArrayList<>(new TreeSet<>(ZoneId.getAvailableZoneIds()));
+        List<String> items = new ArrayList<>();
+        items.add(getString(R.string.schedule_zone_device));
+        items.addAll(zones);
+        new AlertDialog.Builder(requireContext(), R.style.AlertDialog_Dark)
+                .setTitle(R.string.schedule_zone_title)
+                .setItems(items.toArray(new String[0]), (dialog, which) -> {
+                    configManager.setScheduleZone(which == 0 ? null : ZoneId.of(zones.get(which - 1)));
+                    updateScheduleZoneButton();
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void updateScheduleZoneButton() {
+        ZoneId zone = configManager.getScheduleZone();
+        scheduleZoneButton.setText(getString(R.string.schedule_zone_button,
+                zone != null ? zone.getId() : getString(R.string.schedule_zone_device)));
+    }
+
     private void setupDaySelector() {
         daySelectorChipGroup.removeAllViews();
         String[] weekdays = new DateFormatSymbols().getShortWeekdays();
@@ -146,7 +258,7 @@ public class ScheduleFragment extends Fragment implements TimeSheetView.OnWindow
                 schedule.add(daySchedule);
             }
             daySchedule.getWindows().add(newWindow);
-            configManager.setSchedule(schedule);
+            saveSchedule();
             updateScheduleView();
             setupDaySelector();
             dialog.dismiss();
@@ -199,7 +311,7 @@ public class ScheduleFragment extends Fragment implements TimeSheetView.OnWindow
                     DaySchedule daySchedule = findDaySchedule(selectedDay);
                     if (daySchedule != null) {
                         daySchedule.getWindows().remove(window);
-                        configManager.setSchedule(schedule);
+                        saveSchedule();
                         updateScheduleView();
                         setupDaySelector();
                     }
@@ -211,8 +323,9 @@ public class ScheduleFragment extends Fragment implements TimeSheetView.OnWindow
         saveButton.setOnClickListener(v -> {
             window.setStartMinutes(startMinutes[0]);
             window.setEndMinutes(endMinutes[0]);
-            configManager.setSchedule(schedule);
+            saveSchedule();
             updateScheduleView();
+            setupDaySelector(); // The window may now reach into the next day
             dialog.dismiss();
         });
 
@@ -221,6 +334,15 @@ public class ScheduleFragment extends Fragment implements TimeSheetView.OnWindow
         dialog.show();
     }
 
+    /**
+     * Saves the edited schedule and reloads it, since saving merges overlapping windows and splits
+     * the ones that run past midnight.
+     */
+    private void saveSchedule() {
+        configManager.setSchedule(schedule);
+        schedule = configManager.getSchedule();
+    }
+
     private DaySchedule findDaySchedule(int day) {
         for (DaySchedule daySchedule : schedule) {
             if (daySchedule.getDayOfWeek() == day) {
@@ -0,0 +1,68 @@
+package com.shalev396.offdutycallfilter;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the occurrence table of the recurring windows forward once a day, so screening only ever
+ * looks occurrences up and never expands a rule during a call.
+ */
+public class ScheduleRefreshJobService extends JobService {
+
+    private static final String TAG = "ScheduleRefreshJob";
+    // Job ids are shared by the whole app, 1 and 2 belong to CalendarSyncJobService
+    private static final int JOB_REFRESH = 3;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Starts the daily refresh if there are recurring windows, or stops it if there are none.
+     */
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        if (new ConfigManager(context).getRecurringWindows().isEmpty()) {
+            cancel(context);
+            return;
+        }
+        if (jobScheduler.getPendingJob(JOB_REFRESH) == null) {
+            jobScheduler.schedule(new JobInfo.Builder(JOB_REFRESH, new ComponentName(context, ScheduleRefreshJobService.class))
+                    .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    static void cancel(Context context) {
+        context.getSystemService(JobScheduler.class).cancel(JOB_REFRESH);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Log.d(TAG, "onStartJob: " + params.getJobId());
+        executor.execute(() -> {
+            new ConfigManager(this).refreshRecurrences();
+            jobFinished(params, false);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
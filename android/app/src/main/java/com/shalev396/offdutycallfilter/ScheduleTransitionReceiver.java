@@ -0,0 +1,60 @@
+package com.shalev396.offdutycallfilter;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import com.shalev396.offdutycallfilter.core.ScheduleState;
+
+/**
+ * Keeps the precomputed schedule state current: an alarm fires at each schedule transition, and a
+ * manual clock or time zone change throws away state computed for the old time.
+ */
+public class ScheduleTransitionReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "ScheduleTransition";
+    private static final String ACTION_TRANSITION = "com.shalev396.offdutycallfilter.action.SCHEDULE_TRANSITION";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        Log.d(TAG, "onReceive: " + action);
+        if (Intent.ACTION_TIME_CHANGED.equals(action) || Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            ConfigManager configManager = new ConfigManager(context);
+            if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+                configManager.onTimeZoneChanged();
+            }
+            configManager.invalidateScheduleState();
+            CallFilterService.decisionCache.clear();
+        }
+        scheduleNext(context);
+    }
+
+    /**
+     * Sets the alarm for the next schedule transition, replacing any earlier one. Screening doesn't
+     * depend on it firing on time; it only refreshes the state ahead of the next call.
+     */
+    static void scheduleNext(Context context) {
+        ScheduleState state = new ConfigManager(context).getScheduleState();
+        AlarmManager alarmManager = context.getSystemService(AlarmManager.class);
+        Intent intent = new Intent(context, ScheduleTransitionReceiver.class).setAction(ACTION_TRANSITION);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        if (state.getValidUntil() == ScheduleState.FOREVER) {
+            Log.d(TAG, "scheduleNext: Schedule never changes, no alarm needed");
+            alarmManager.cancel(pendingIntent);
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExact(AlarmManager.RTC, state.getValidUntil(), pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC, state.getValidUntil(), pendingIntent);
+        }
+        Log.d(TAG, "scheduleNext: Next transition at " + state.getValidUntil());
+    }
+}
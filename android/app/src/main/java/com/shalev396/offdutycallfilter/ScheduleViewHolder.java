@@ -10,6 +10,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
+import com.shalev396.offdutycallfilter.core.DaySchedule;
+import com.shalev396.offdutycallfilter.core.TimeWindow;
 
 import java.text.DateFormatSymbols;
 import java.util.Locale;
@@ -13,6 +13,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 
+import com.shalev396.offdutycallfilter.core.TimeWindow;
+
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
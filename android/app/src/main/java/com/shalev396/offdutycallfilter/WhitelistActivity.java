@@ -18,6 +18,8 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -53,7 +55,7 @@ public class WhitelistActivity extends AppCompatActivity {
                     String name = cursor.getString(nameIndex);
                     String number = cursor.getString(numberIndex);
 
-                    String normalizedNumber = number.replaceAll("[\\s\\-()]", "");
+                    String normalizedNumber = configManager.getNumberNormalizer().normalize(number);
 
                     WhitelistedContact newContact = new WhitelistedContact(name, normalizedNumber);
                     whitelist.add(newContact);
@@ -7,6 +7,8 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
+
 import java.util.List;
 
 public class WhitelistAdapter extends RecyclerView.Adapter<WhitelistViewHolder> {
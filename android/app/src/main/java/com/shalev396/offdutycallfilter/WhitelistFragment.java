@@ -1,6 +1,8 @@
 package com.shalev396.offdutycallfilter;
 
 import android.Manifest;
+import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
@@ -12,28 +14,43 @@ import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.switchmaterial.SwitchMaterial;
+import com.shalev396.offdutycallfilter.core.E164Normalizer;
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class WhitelistFragment extends Fragment {
 
     private WhitelistAdapter adapter;
     private ConfigManager configManager;
     private List<WhitelistedContact> whitelist;
+    private SwitchMaterial allowContactsSwitch;
+    private Button regionButton;
+    private final ExecutorService contactExecutor = Executors.newSingleThreadExecutor();
 
     private final ActivityResultLauncher<String> requestPermissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
         if (isGranted) {
@@ -43,6 +60,25 @@ public class WhitelistFragment extends Fragment {
         }
     });
 
+    private final ActivityResultLauncher<String> requestAllowContactsPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), isGranted -> {
+                if (isGranted) {
+                    setAllowContacts(true);
+                } else {
+                    allowContactsSwitch.setChecked(false);
+                    Toast.makeText(getContext(), R.string.allow_contacts_permission_required, Toast.LENGTH_LONG).show();
+                }
+            });
+
+    private final ActivityResultLauncher<String> requestGroupsPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), isGranted -> {
+                if (isGranted) {
+                    showGroupPicker();
+                } else {
+                    Toast.makeText(getContext(), R.string.whitelist_groups_permission_required, Toast.LENGTH_LONG).show();
+                }
+            });
+
     private final ActivityResultLauncher<Intent> pickContactLauncher = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
         if (result.getResultCode() == -1 && result.getData() != null) {
             Uri contactUri = result.getData().getData();
@@ -53,7 +89,7 @@ public class WhitelistFragment extends Fragment {
                     int numberIndex = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER);                    if (nameIndex != -1 && numberIndex != -1) {
                         String name = cursor.getString(nameIndex);
                         String number = cursor.getString(numberIndex);
-                        String normalizedNumber = number.replaceAll("[\\s\\-()]", "");
+                        String normalizedNumber = configManager.getNumberNormalizer().normalize(number);
 
                         WhitelistedContact newContact = new WhitelistedContact(name, normalizedNumber);
                         whitelist.add(newContact);
@@ -75,6 +111,29 @@ public class WhitelistFragment extends Fragment {
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view_whitelist);
         EditText searchEditText = view.findViewById(R.id.edit_text_search);
         FloatingActionButton fab = view.findViewById(R.id.fab_add_contact);
+        allowContactsSwitch = view.findViewById(R.id.switch_allow_contacts);
+        view.findViewById(R.id.button_whitelist_groups).setOnClickListener(v -> {
+            if (ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.READ_CONTACTS)
+                    != PackageManager.PERMISSION_GRANTED) {
+                requestGroupsPermissionLauncher.launch(Manifest.permission.READ_CONTACTS);
+            } else {
+                showGroupPicker();
+            }
+        });
+
+        regionButton = view.findViewById(R.id.button_default_region);
+        regionButton.setOnClickListener(v -> showRegionPicker());
+        updateRegionButton();
+
+        allowContactsSwitch.setChecked(configManager.isAllowContacts());
+        allowContactsSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked && ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.READ_CONTACTS)
+                    != PackageManager.PERMISSION_GRANTED) {
+                requestAllowContactsPermissionLauncher.launch(Manifest.permission.READ_CONTACTS);
+            } else {
+                setAllowContacts(isChecked);
+            }
+        });
 
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
@@ -112,6 +171,151 @@ public class WhitelistFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        contactExecutor.shutdown();
+    }
+
+    private void setAllowContacts(boolean allow) {
+        Context context = requireContext();
+        configManager.setAllowContacts(allow);
+        ContactSyncJobService.schedule(context);
+        if (allow) {
+            contactExecutor.execute(() -> ContactSync.syncAll(context));
+        }
+    }
+
+    /**
+     * Lets the user pick the contact groups, and the starred contacts, whose members are kept in
+     * the whitelist. Choosing none stops the sync and removes the entries it added.
+     */
+    private void showGroupPicker() {
+        Activity activity = requireActivity();
+        contactExecutor.execute(() -> {
+            Map<Long, String> groups = WhitelistGroupSync.queryGroups(activity);
+            activity.runOnUiThread(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                List<Long> ids = new ArrayList<>(groups.keySet());
+                List<String> names = new ArrayList<>();
+                names.add(getString(R.string.whitelist_groups_starred));
+                names.addAll(groups.values());
+                Set<Long> selected = configManager.getWhitelistGroupIds();
+                boolean[] checked = new boolean[names.size()];
+                checked[0] = configManager.isWhitelistStarred();
+                for (int i = 0; i < ids.size(); i++) {
+                    checked[i + 1] = selected.contains(ids.get(i));
+                }
+                new AlertDialog.Builder(activity, R.style.AlertDialog_Dark)
+                        .setTitle(R.string.whitelist_groups_title)
+                        .setMultiChoiceItems(names.toArray(new String[0]), checked,
+                                (dialog, which, isChecked) -> checked[which] = isChecked)
+                        .setPositiveButton(R.string.save, (dialog, which) -> {
+                            Set<Long> chosen = new HashSet<>();
+                            for (int i = 0; i < ids.size(); i++) {
+                                if (checked[i + 1]) {
+                                    chosen.add(ids.get(i));
+                                }
+                            }
+                            configManager.setWhitelistGroups(chosen, checked[0]);
+                            ContactSyncJobService.schedule(activity);
+                            syncGroups();
+                        })
+                        .setNegativeButton(R.string.cancel, null)
+                        .show();
+            });
+        });
+    }
+
+    // Runs the first sync with a progress dialog, large groups take a few batches
+    private void syncGroups() {
+        Activity activity = requireActivity();
+        ProgressBar progressBar = new ProgressBar(activity, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setIndeterminate(true);
+        progressBar.setPadding(48, 0, 48, 0);
+        AlertDialog progressDialog = new AlertDialog.Builder(activity, R.style.AlertDialog_Dark)
+                .setTitle(R.string.whitelist_groups_syncing)
+                .setMessage("")
+                .setView(progressBar)
+                .setCancelable(false)
+                .show();
+        contactExecutor.execute(() -> {
+            int changed = WhitelistGroupSync.sync(activity, (read, total) -> activity.runOnUiThread(() -> {
+                if (isAdded()) {
+                    progressBar.setIndeterminate(false);
+                    progressBar.setMax(total);
+                    progressBar.setProgress(read);
+                    progressDialog.setMessage(getString(R.string.whitelist_groups_progress, read, total));
+                }
+            }));
+            activity.runOnUiThread(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                progressDialog.dismiss();
+                if (changed < 0) {
+                    Toast.makeText(activity, R.string.whitelist_groups_failed, Toast.LENGTH_LONG).show();
+                    return;
+                }
+                whitelist = configManager.getWhitelist();
+                adapter.filterList(whitelist);
+                adapter.notifyDataSetChanged();
+            });
+        });
+    }
+
+    private void updateRegionButton() {
+        regionButton.setText(getString(R.string.default_region_button, regionLabel(configManager.getDefaultRegion())));
+    }
+
+    private String regionLabel(String region) {
+        E164Normalizer normalizer = E164Normalizer.forRegion(region);
+        String name = new Locale("", region).getDisplayCountry();
+        return normalizer.getCountryCode() != null
+                ? getString(R.string.default_region_label, name, normalizer.getCountryCode()) : name;
+    }
+
+    /**
+     * Lets the user pick the region numbers without a country code are read in, for contacts
+     * added from now on and calls screened with them.
+     */
+    private void showRegionPicker() {
+        Context context = requireContext();
+        List<String> regions = new ArrayList<>(E164Normalizer.regions());
+        String current = configManager.getDefaultRegion();
+        if (!regions.contains(current)) {
+            regions.add(0, current);
+        }
+        String[] labels = new String[regions.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = regionLabel(regions.get(i));
+        }
+        new AlertDialog.Builder(context, R.style.AlertDialog_Dark)
+                .setTitle(R.string.default_region_title)
+                .setSingleChoiceItems(labels, regions.indexOf(current), (dialog, which) -> {
+                    dialog.dismiss();
+                    String region = regions.get(which);
+                    // Rewrites the stored numbers, so off the main thread
+                    Activity activity = requireActivity();
+                    contactExecutor.execute(() -> {
+                        configManager.setDefaultRegion(region);
+                        activity.runOnUiThread(() -> {
+                            if (!isAdded()) {
+                                return;
+                            }
+                            updateRegionButton();
+                            whitelist = configManager.getWhitelist();
+                            adapter.filterList(whitelist);
+                            adapter.notifyDataSetChanged();
+                        });
+                    });
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
     private void launchContactPicker() {
         Intent intent = new Intent(Intent.ACTION_PICK, ContactsContract.CommonDataKinds.Phone.CONTENT_URI);
         pickContactLauncher.launch(intent);
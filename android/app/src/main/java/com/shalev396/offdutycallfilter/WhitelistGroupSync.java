@@ -0,0 +1,157 @@
+package com.shalev396.offdutycallfilter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.Groups;
+import android.telephony.PhoneNumberUtils;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.shalev396.offdutycallfilter.core.NumberNormalizer;
+import com.shalev396.offdutycallfilter.core.WhitelistMerge;
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the members of the contact groups chosen in {@link ConfigManager} (and the starred
+ * contacts, if chosen) in the whitelist. Members are read in batches of {@link #BATCH_SIZE}
+ * contacts with only the columns needed, merged with {@link WhitelistMerge} and stored with a
+ * single write. Runs after every contacts change from {@link ContactSyncJobService}.
+ */
+final class WhitelistGroupSync {
+
+    private static final String TAG = "WhitelistGroupSync";
+    static final int BATCH_SIZE = 200;
+
+    private static final String[] PHONE_PROJECTION = {Phone.DISPLAY_NAME, Phone.NUMBER};
+
+    interface ProgressListener {
+        void onProgress(int contactsRead, int contactsTotal);
+    }
+
+    private WhitelistGroupSync() {
+    }
+
+    /**
+     * @return the device's contact groups by id, with their titles
+     */
+    @WorkerThread
+    static Map<Long, String> queryGroups(Context context) {
+        Map<Long, String> groups = new LinkedHashMap<>();
+        String[] projection = {Groups._ID, Groups.TITLE, Groups.ACCOUNT_NAME};
+        try (Cursor cursor = context.getContentResolver().query(Groups.CONTENT_URI, projection,
+                Groups.DELETED + " = 0", null, Groups.TITLE)) {
+            while (cursor != null && cursor.moveToNext()) {
+                String account = cursor.getString(2);
+                groups.put(cursor.getLong(0), account != null ? cursor.getString(1) + " (" + account + ")" : cursor.getString(1));
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "queryGroups: Contacts permission missing", e);
+        }
+        return groups;
+    }
+
+    /**
+     * Merges the current members into the whitelist.
+     *
+     * @param listener told after each batch, on the calling thread; may be null
+     * @return the number of entries added and removed, or -1 if the provider couldn't be read
+     */
+    @WorkerThread
+    static synchronized int sync(Context context, ProgressListener listener) {
+        ConfigManager configManager = new ConfigManager(context);
+        Set<Long> groupIds = configManager.getWhitelistGroupIds();
+        boolean starred = configManager.isWhitelistStarred();
+        List<WhitelistedContact> members = new ArrayList<>();
+        if (!groupIds.isEmpty() || starred) {
+            Set<Long> contactIds = new LinkedHashSet<>();
+            if (!queryMemberIds(context, groupIds, starred, contactIds)) {
+                return -1;
+            }
+            List<Long> ids = new ArrayList<>(contactIds);
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+                if (!queryPhones(context, batch, configManager.getNumberNormalizer(), members)) {
+                    return -1;
+                }
+                if (listener != null) {
+                    listener.onProgress(from + batch.size(), ids.size());
+                }
+            }
+        }
+        WhitelistMerge merge = WhitelistMerge.merge(configManager.getWhitelist(), configManager.getWhitelistSynced(),
+                members, PhoneNumberUtils::compare);
+        configManager.setSyncedWhitelist(merge.getWhitelist(), merge.getSynced());
+        Log.d(TAG, "sync: " + members.size() + " numbers, " + merge.getAdded() + " added, " + merge.getRemoved() + " removed");
+        return merge.getAdded() + merge.getRemoved();
+    }
+
+    private static boolean queryMemberIds(Context context, Set<Long> groupIds, boolean starred, Set<Long> out) {
+        try {
+            if (!groupIds.isEmpty()) {
+                try (Cursor cursor = context.getContentResolver().query(Data.CONTENT_URI,
+                        new String[]{GroupMembership.CONTACT_ID},
+                        Data.MIMETYPE + " = ? AND " + GroupMembership.GROUP_ROW_ID + " IN (" + join(groupIds) + ")",
+                        new String[]{GroupMembership.CONTENT_ITEM_TYPE}, null)) {
+                    while (cursor != null && cursor.moveToNext()) {
+                        out.add(cursor.getLong(0));
+                    }
+                }
+            }
+            if (starred) {
+                try (Cursor cursor = context.getContentResolver().query(Contacts.CONTENT_URI,
+                        new String[]{Contacts._ID}, Contacts.STARRED + " = 1", null, null)) {
+                    while (cursor != null && cursor.moveToNext()) {
+                        out.add(cursor.getLong(0));
+                    }
+                }
+            }
+            return true;
+        } catch (SecurityException e) {
+            Log.e(TAG, "queryMemberIds: Contacts permission missing", e);
+            return false;
+        }
+    }
+
+    private static boolean queryPhones(Context context, List<Long> contactIds, NumberNormalizer normalizer,
+                                       List<WhitelistedContact> out) {
+        try (Cursor cursor = context.getContentResolver().query(Phone.CONTENT_URI, PHONE_PROJECTION,
+                Phone.CONTACT_ID + " IN (" + join(contactIds) + ")", null, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                String number = cursor.getString(1);
+                if (number != null) {
+                    // Stored like numbers picked one at a time in WhitelistFragment
+                    out.add(new WhitelistedContact(cursor.getString(0), normalizer.normalize(number)));
+                }
+            }
+            return true;
+        } catch (SecurityException e) {
+            Log.e(TAG, "queryPhones: Contacts permission missing", e);
+            return false;
+        }
+    }
+
+    // Ids are numbers, so they can go into the selection directly
+    private static String join(Collection<Long> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (long id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+}
@@ -7,6 +7,8 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
+
 public class WhitelistViewHolder extends RecyclerView.ViewHolder {
 
     private final TextView textContactName;
@@ -0,0 +1,85 @@
+package com.shalev396.offdutycallfilter.core;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the stored whitelist and schedule with reflective Gson against {@link ConfigJson}. The
+ * "cold" variants build a new Gson per read, which is what every fresh {@link Gson} pays on a
+ * process start before its adapter cache is warm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int whitelistSize;
+
+    private final Gson reflective = new Gson();
+    private final Gson adapters = ConfigJson.builder().create();
+    private List<WhitelistedContact> whitelist;
+    private String whitelistJson;
+    private String scheduleJson;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        whitelist = new ArrayList<>(whitelistSize);
+        for (int i = 0; i < whitelistSize; i++) {
+            whitelist.add(new WhitelistedContact("Contact " + i, "+9725" + WhitelistBenchmark.digits(random, 8)));
+        }
+        whitelistJson = reflective.toJson(whitelist, ConfigJson.WHITELIST);
+
+        List<DaySchedule> schedule = new ArrayList<>();
+        for (int day = 1; day <= 7; day++) {
+            List<TimeWindow> windows = new ArrayList<>();
+            windows.add(new TimeWindow(8 * 60, 12 * 60));
+            windows.add(new TimeWindow(13 * 60, 17 * 60));
+            schedule.add(new DaySchedule(day, windows));
+        }
+        scheduleJson = reflective.toJson(schedule, ConfigJson.DAY_SCHEDULES);
+    }
+
+    @Benchmark
+    public List<WhitelistedContact> readWhitelistReflective() {
+        return reflective.fromJson(whitelistJson, ConfigJson.WHITELIST);
+    }
+
+    @Benchmark
+    public List<WhitelistedContact> readWhitelistAdapters() {
+        return adapters.fromJson(whitelistJson, ConfigJson.WHITELIST);
+    }
+
+    @Benchmark
+    public String writeWhitelistReflective() {
+        return reflective.toJson(whitelist, ConfigJson.WHITELIST);
+    }
+
+    @Benchmark
+    public String writeWhitelistAdapters() {
+        return adapters.toJson(whitelist, ConfigJson.WHITELIST);
+    }
+
+    @Benchmark
+    public List<DaySchedule> coldScheduleReflective() {
+        return new Gson().fromJson(scheduleJson, ConfigJson.DAY_SCHEDULES);
+    }
+
+    @Benchmark
+    public List<DaySchedule> coldScheduleAdapters() {
+        return ConfigJson.builder().create().fromJson(scheduleJson, ConfigJson.DAY_SCHEDULES);
+    }
+}
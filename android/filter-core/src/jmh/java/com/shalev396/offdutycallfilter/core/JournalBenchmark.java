@@ -0,0 +1,73 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append and page-read throughput of the blocked call journal on the local filesystem.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JournalBenchmark {
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    private File dir;
+    private BlockedCallJournal journal;
+    private List<BlockedCall> batch;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("journal-bench").toFile();
+        journal = new BlockedCallJournal(dir);
+        batch = new ArrayList<>(batchSize);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new BlockedCall("+97250" + (1000000 + i), now + i));
+        }
+        // Fill a few segments so reads cross segment boundaries
+        List<BlockedCall> fill = new ArrayList<>();
+        for (int i = 0; i < 3 * BlockedCallJournal.RECORDS_PER_SEGMENT; i++) {
+            fill.add(new BlockedCall("0541234" + (i % 1000), now - i));
+        }
+        journal.append(fill);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.clear();
+        dir.delete();
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        journal.append(batch);
+    }
+
+    @Benchmark
+    public List<BlockedCall> readFirstPage() throws IOException {
+        return journal.read(0, 100);
+    }
+
+    @Benchmark
+    public List<BlockedCall> readDeepPage() throws IOException {
+        return journal.read(2 * BlockedCallJournal.RECORDS_PER_SEGMENT, 100);
+    }
+}
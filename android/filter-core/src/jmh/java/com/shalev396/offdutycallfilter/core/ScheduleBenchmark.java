@@ -0,0 +1,75 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiling a week of windows into a {@link ScheduleBitmap} and evaluating it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScheduleBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1", "8", "64"})
+    public int windowsPerDay;
+
+    private List<DaySchedule> schedule;
+    private ScheduleBitmap bitmap;
+    private String encoded;
+    private int[] days;
+    private int[] minutes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        schedule = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            List<TimeWindow> windows = new ArrayList<>();
+            for (int i = 0; i < windowsPerDay; i++) {
+                int start = random.nextInt(ScheduleBitmap.MINUTES_PER_DAY);
+                windows.add(new TimeWindow(start, start + 1 + random.nextInt(180)));
+            }
+            schedule.add(new DaySchedule(day, windows));
+        }
+        bitmap = ScheduleBitmap.compile(schedule);
+        encoded = bitmap.encode();
+
+        days = new int[QUERIES];
+        minutes = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            days[i] = random.nextInt(7);
+            minutes[i] = random.nextInt(ScheduleBitmap.MINUTES_PER_DAY);
+        }
+    }
+
+    @Benchmark
+    public ScheduleBitmap compile() {
+        return ScheduleBitmap.compile(schedule);
+    }
+
+    @Benchmark
+    public ScheduleBitmap decode() {
+        return ScheduleBitmap.decode(encoded);
+    }
+
+    @Benchmark
+    public boolean isAllowedAt() {
+        int i = next++ & (QUERIES - 1);
+        return bitmap.isAllowedAt(days[i], minutes[i]);
+    }
+}
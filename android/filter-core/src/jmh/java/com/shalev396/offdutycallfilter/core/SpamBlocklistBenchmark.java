@@ -0,0 +1,77 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spam list lookups, where misses should mostly stop at the Bloom filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpamBlocklistBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private File file;
+    private SpamBlocklist blocklist;
+    private String[] hits;
+    private String[] misses;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        String[] numbers = new String[size];
+        StringBuilder sb = new StringBuilder(size * 14);
+        for (int i = 0; i < size; i++) {
+            // Listed numbers start with +1, misses with +44, so the two sets never overlap
+            numbers[i] = "+1" + WhitelistBenchmark.digits(random, 10);
+            sb.append(numbers[i]).append('\n');
+        }
+        file = Files.createTempFile("spam-bench", ".bin").toFile();
+        new SpamBlocklistImporter(new DigitNumberNormalizer())
+                .importTo(new BufferedReader(new StringReader(sb.toString())), file);
+        blocklist = SpamBlocklist.open(file);
+
+        hits = new String[QUERIES];
+        misses = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            hits[i] = numbers[random.nextInt(size)];
+            misses[i] = "+44" + WhitelistBenchmark.digits(random, 10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return blocklist.contains(hits[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return blocklist.contains(misses[next++ & (QUERIES - 1)]);
+    }
+}
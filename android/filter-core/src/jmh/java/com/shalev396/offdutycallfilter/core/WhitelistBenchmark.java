@@ -0,0 +1,76 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whitelist lookups against lists from a handful of contacts up to a bulk-imported directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WhitelistBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int size;
+
+    private List<WhitelistedContact> whitelist;
+    private WhitelistIndex index;
+    private String[] hits;
+    private String[] misses;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        whitelist = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            whitelist.add(new WhitelistedContact("Contact " + i, "+9725" + digits(random, 8)));
+        }
+        index = new WhitelistIndex(whitelist, new LooseNumberMatcher());
+
+        hits = new String[QUERIES];
+        misses = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // Callers usually present the national form of a stored international number
+            hits[i] = "05" + whitelist.get(random.nextInt(size)).getPhoneE164().substring(5);
+            misses[i] = "+1" + digits(random, 10);
+        }
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return index.isWhitelisted(hits[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return index.isWhitelisted(misses[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public WhitelistIndex build() {
+        return new WhitelistIndex(whitelist, new LooseNumberMatcher());
+    }
+
+    static String digits(Random random, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+}
@@ -1,4 +1,4 @@
-package com.shalev396.offdutycallfilter;
+package com.shalev396.offdutycallfilter.core;
 
 public class BlockedCall {
     private final String number;
@@ -0,0 +1,315 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Append-only log of blocked calls stored as fixed-size binary records.
+ * <p>
+ * Each record is 16 bytes: the number packed by {@link PhoneNumberCodec} followed by the timestamp.
+ * Numbers the codec can't pack (with '*' or '#', or longer than 18 digits) are appended to a side
+ * file next to their segment, and the record holds their offset there instead. Records go into
+ * numbered segment files; when the active segment is full a new one is started and the oldest
+ * segments beyond {@link #MAX_SEGMENTS} are deleted. Reads walk the segments newest first and only
+ * touch the records they return.
+ * <p>
+ * Every record has a position that never changes, {@code sequence * RECORDS_PER_SEGMENT} plus its
+ * index in the segment, so a reader paging through the log with {@link #readBefore} isn't thrown
+ * off by calls appended meanwhile.
+ */
+public final class BlockedCallJournal {
+
+    public static final int RECORD_SIZE = 16;
+    public static final int RECORDS_PER_SEGMENT = 4096;
+    public static final int MAX_SEGMENTS = 16;
+    /** The most calls kept; each new segment past it drops the oldest {@link #RECORDS_PER_SEGMENT}. */
+    public static final int MAX_RECORDS = RECORDS_PER_SEGMENT * MAX_SEGMENTS;
+    /** Cursor for {@link #readBefore} that starts at the newest record. */
+    public static final long NEWEST = Long.MAX_VALUE;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final String SIDE_SUFFIX = ".num";
+    // Packed numbers keep their digits below 10^18 in the low 60 bits with no flags above, so the
+    // values from here up to 2^60 are free to mark a number stored at (value - SIDE_BASE) in the side file
+    private static final long SIDE_BASE = 1_000_000_000_000_000_000L;
+    private static final long SIDE_END = 1L << 60;
+    // Side entries are a length byte and the number in UTF-8, longer numbers are cut
+    private static final int MAX_SIDE_BYTES = 255;
+    // Records read per positional read when walking a segment backwards
+    private static final int READ_CHUNK = 256;
+
+    private final File dir;
+    // Segment sequence numbers, oldest first
+    private final List<Long> segments = new ArrayList<>();
+    private FileChannel active;
+    private long activeRecords;
+    // Side file of the active segment, opened on the first number that needs it
+    private FileChannel activeSide;
+
+    public BlockedCallJournal(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + dir);
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException ignored) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        segments.sort(null);
+    }
+
+    public synchronized void append(List<BlockedCall> calls) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(calls.size(), RECORDS_PER_SEGMENT) * RECORD_SIZE);
+        int i = 0;
+        while (i < calls.size()) {
+            FileChannel channel = activeChannel();
+            buffer.clear();
+            boolean sideWritten = false;
+            while (i < calls.size() && activeRecords < RECORDS_PER_SEGMENT && buffer.hasRemaining()) {
+                BlockedCall call = calls.get(i++);
+                String number = call.getNumber();
+                long encoded = PhoneNumberCodec.encode(number);
+                if (encoded == PhoneNumberCodec.UNKNOWN && number != null && !number.isEmpty()) {
+                    encoded = SIDE_BASE + appendSide(number);
+                    sideWritten = true;
+                }
+                buffer.putLong(encoded);
+                buffer.putLong(call.getTimestamp());
+                activeRecords++;
+            }
+            // A side entry without its record is only wasted space, the reverse would be a broken record
+            if (sideWritten) {
+                activeSide.force(false);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Number of records currently kept across all segments.
+     */
+    public synchronized long size() {
+        long total = 0;
+        for (Long sequence : segments) {
+            total += recordCount(sequence);
+        }
+        return total;
+    }
+
+    /**
+     * Reads up to {@code limit} records, newest first, skipping the {@code offset} newest ones.
+     */
+    public synchronized List<BlockedCall> read(long offset, int limit) throws IOException {
+        List<BlockedCall> page = new ArrayList<>(Math.min(limit, READ_CHUNK));
+        ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK * RECORD_SIZE);
+        for (int s = segments.size() - 1; s >= 0 && page.size() < limit; s--) {
+            long sequence = segments.get(s);
+            long count = recordCount(sequence);
+            if (offset >= count) {
+                offset -= count;
+                continue;
+            }
+            readSegment(sequence, count - offset, limit, page, buffer);
+            offset = 0;
+        }
+        return page;
+    }
+
+    /**
+     * Adds up to {@code limit} records positioned before {@code before} to {@code page}, newest first.
+     *
+     * @param before the cursor the previous call returned, or {@link #NEWEST} for the first page
+     * @return the cursor for the next page, the position of the oldest record added
+     */
+    public synchronized long readBefore(long before, int limit, List<BlockedCall> page) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK * RECORD_SIZE);
+        int wanted = (int) Math.min(Integer.MAX_VALUE, (long) page.size() + limit);
+        long cursor = before;
+        for (int s = segments.size() - 1; s >= 0 && page.size() < wanted; s--) {
+            long sequence = segments.get(s);
+            long first = sequence * RECORDS_PER_SEGMENT;
+            if (first >= cursor) {
+                continue;
+            }
+            long end = Math.min(recordCount(sequence), cursor - first);
+            int added = page.size();
+            readSegment(sequence, end, wanted, page, buffer);
+            cursor = first + end - (page.size() - added);
+        }
+        return cursor;
+    }
+
+    /**
+     * Adds the records of a segment before index {@code end} to {@code page}, newest first, until
+     * it holds {@code limit}.
+     */
+    private void readSegment(long sequence, long end, int limit, List<BlockedCall> page, ByteBuffer buffer)
+            throws IOException {
+        FileChannel side = null;
+        try (FileChannel channel = FileChannel.open(segmentFile(sequence).toPath(), StandardOpenOption.READ)) {
+            while (end > 0 && page.size() < limit) {
+                int chunk = (int) Math.min(Math.min(end, READ_CHUNK), limit - page.size());
+                long start = end - chunk;
+                buffer.clear().limit(chunk * RECORD_SIZE);
+                long position = start * RECORD_SIZE;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of " + segmentFile(sequence));
+                    }
+                }
+                for (int r = chunk - 1; r >= 0; r--) {
+                    long number = buffer.getLong(r * RECORD_SIZE);
+                    long timestamp = buffer.getLong(r * RECORD_SIZE + 8);
+                    if (number >= SIDE_BASE && number < SIDE_END) {
+                        if (side == null) {
+                            side = FileChannel.open(sideFile(sequence).toPath(), StandardOpenOption.READ);
+                        }
+                        page.add(new BlockedCall(readSide(side, number - SIDE_BASE), timestamp));
+                    } else {
+                        page.add(new BlockedCall(PhoneNumberCodec.decode(number), timestamp));
+                    }
+                }
+                end = start;
+            }
+        } finally {
+            if (side != null) {
+                side.close();
+            }
+        }
+    }
+
+    public synchronized void dump(PrintWriter pw, String prefix) {
+        long bytes = 0;
+        for (Long sequence : segments) {
+            bytes += segmentFile(sequence).length() + sideFile(sequence).length();
+        }
+        pw.println(prefix + "Journal: " + size() + " records in " + segments.size()
+                + " segments, " + bytes + " bytes");
+    }
+
+    public synchronized void clear() throws IOException {
+        closeActive();
+        for (Long sequence : segments) {
+            deleteSegment(sequence);
+        }
+        segments.clear();
+    }
+
+    private FileChannel activeChannel() throws IOException {
+        if (active != null && activeRecords < RECORDS_PER_SEGMENT) {
+            return active;
+        }
+        closeActive();
+        if (!segments.isEmpty() && recordCount(segments.get(segments.size() - 1)) < RECORDS_PER_SEGMENT) {
+            openActive(segments.get(segments.size() - 1));
+        } else {
+            long sequence = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+            segments.add(sequence);
+            openActive(sequence);
+            while (segments.size() > MAX_SEGMENTS) {
+                deleteSegment(segments.remove(0));
+            }
+        }
+        return active;
+    }
+
+    private void openActive(long sequence) throws IOException {
+        active = FileChannel.open(segmentFile(sequence).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop a torn record left behind by a crash mid-write, then append after the last whole one
+        long whole = active.size() / RECORD_SIZE;
+        active.truncate(whole * RECORD_SIZE);
+        active.position(whole * RECORD_SIZE);
+        activeRecords = whole;
+    }
+
+    private void closeActive() throws IOException {
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+        if (activeSide != null) {
+            activeSide.close();
+            activeSide = null;
+        }
+    }
+
+    /**
+     * Appends a number to the active segment's side file.
+     *
+     * @return its offset there
+     */
+    private long appendSide(String number) throws IOException {
+        if (activeSide == null) {
+            activeSide = FileChannel.open(sideFile(segments.get(segments.size() - 1)).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            activeSide.position(activeSide.size());
+        }
+        byte[] bytes = number.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_SIDE_BYTES);
+        ByteBuffer entry = ByteBuffer.allocate(1 + length);
+        entry.put((byte) length).put(bytes, 0, length).flip();
+        long offset = activeSide.position();
+        while (entry.hasRemaining()) {
+            activeSide.write(entry);
+        }
+        return offset;
+    }
+
+    private static String readSide(FileChannel side, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(1);
+        if (side.read(length, offset) < 1) {
+            throw new IOException("Unexpected end of side file at " + offset);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length.get(0) & 0xFF);
+        while (bytes.hasRemaining()) {
+            if (side.read(bytes, offset + 1 + bytes.position()) < 0) {
+                throw new IOException("Unexpected end of side file at " + offset);
+            }
+        }
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private void deleteSegment(long sequence) throws IOException {
+        for (File file : new File[]{segmentFile(sequence), sideFile(sequence)}) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+        }
+    }
+
+    private long recordCount(long sequence) {
+        return segmentFile(sequence).length() / RECORD_SIZE;
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(dir, String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private File sideFile(long sequence) {
+        return new File(dir, String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, sequence, SIDE_SUFFIX));
+    }
+}
@@ -0,0 +1,439 @@
+package com.shalev396.offdutycallfilter.core;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming Gson adapters for the stored configuration models, so Gson never reflects over them.
+ * That saves the reflective setup on a cold start, which is when Telecom wakes the process for a
+ * call, and keeps the JSON names fixed when R8 renames the fields.
+ * <p>
+ * The JSON is the same as reflective Gson writes: fields by name in declaration order, null
+ * fields left out. Unknown names are skipped and missing ones read as null, 0 or false, so
+ * stored configuration reads back the same either way.
+ */
+public final class ConfigJson {
+
+    public static final Type DAY_SCHEDULES = listOf(DaySchedule.class);
+    public static final Type WHITELIST = listOf(WhitelistedContact.class);
+    public static final Type NUMBER_RULES = listOf(NumberRule.class);
+    public static final Type SCHEDULE_EXCEPTIONS = listOf(ScheduleException.class);
+    public static final Type RECURRING_WINDOWS = listOf(RecurringWindow.class);
+    public static final Type BLOCKED_CALLS = listOf(BlockedCall.class);
+
+    static final TypeAdapter<TimeWindow> TIME_WINDOW = new TypeAdapter<TimeWindow>() {
+        @Override
+        public void write(JsonWriter out, TimeWindow window) throws IOException {
+            out.beginObject();
+            out.name("startMinutes").value(window.getStartMinutes());
+            out.name("endMinutes").value(window.getEndMinutes());
+            out.endObject();
+        }
+
+        @Override
+        public TimeWindow read(JsonReader in) throws IOException {
+            int startMinutes = 0;
+            int endMinutes = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "startMinutes":
+                        startMinutes = in.nextInt();
+                        break;
+                    case "endMinutes":
+                        endMinutes = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new TimeWindow(startMinutes, endMinutes);
+        }
+    };
+
+    static final TypeAdapter<DaySchedule> DAY_SCHEDULE = new TypeAdapter<DaySchedule>() {
+        @Override
+        public void write(JsonWriter out, DaySchedule day) throws IOException {
+            out.beginObject();
+            out.name("dayOfWeek").value(day.getDayOfWeek());
+            writeList(out, "windows", day.getWindows(), TIME_WINDOW);
+            out.endObject();
+        }
+
+        @Override
+        public DaySchedule read(JsonReader in) throws IOException {
+            int dayOfWeek = 0;
+            List<TimeWindow> windows = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "dayOfWeek":
+                        dayOfWeek = in.nextInt();
+                        break;
+                    case "windows":
+                        windows = readList(in, TIME_WINDOW);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new DaySchedule(dayOfWeek, windows);
+        }
+    };
+
+    static final TypeAdapter<WhitelistedContact> WHITELISTED_CONTACT = new TypeAdapter<WhitelistedContact>() {
+        @Override
+        public void write(JsonWriter out, WhitelistedContact contact) throws IOException {
+            out.beginObject();
+            writeString(out, "name", contact.getName());
+            writeString(out, "phoneE164", contact.getPhoneE164());
+            out.endObject();
+        }
+
+        @Override
+        public WhitelistedContact read(JsonReader in) throws IOException {
+            String contactName = null;
+            String phoneE164 = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "name":
+                        contactName = in.nextString();
+                        break;
+                    case "phoneE164":
+                        phoneE164 = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new WhitelistedContact(contactName, phoneE164);
+        }
+    };
+
+    static final TypeAdapter<BlockedCall> BLOCKED_CALL = new TypeAdapter<BlockedCall>() {
+        @Override
+        public void write(JsonWriter out, BlockedCall call) throws IOException {
+            out.beginObject();
+            writeString(out, "number", call.getNumber());
+            out.name("timestamp").value(call.getTimestamp());
+            out.endObject();
+        }
+
+        @Override
+        public BlockedCall read(JsonReader in) throws IOException {
+            String number = null;
+            long timestamp = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "number":
+                        number = in.nextString();
+                        break;
+                    case "timestamp":
+                        timestamp = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new BlockedCall(number, timestamp);
+        }
+    };
+
+    static final TypeAdapter<NumberRule> NUMBER_RULE = new TypeAdapter<NumberRule>() {
+        @Override
+        public void write(JsonWriter out, NumberRule rule) throws IOException {
+            out.beginObject();
+            writeString(out, "label", rule.getLabel());
+            writeString(out, "from", rule.getFrom());
+            writeString(out, "to", rule.getTo());
+            out.name("block").value(rule.isBlock());
+            out.endObject();
+        }
+
+        @Override
+        public NumberRule read(JsonReader in) throws IOException {
+            String label = null;
+            String from = null;
+            String to = null;
+            boolean block = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "label":
+                        label = in.nextString();
+                        break;
+                    case "from":
+                        from = in.nextString();
+                        break;
+                    case "to":
+                        to = in.nextString();
+                        break;
+                    case "block":
+                        block = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new NumberRule(label, from, to, block);
+        }
+    };
+
+    static final TypeAdapter<ScheduleException> SCHEDULE_EXCEPTION = new TypeAdapter<ScheduleException>() {
+        @Override
+        public void write(JsonWriter out, ScheduleException exception) throws IOException {
+            out.beginObject();
+            writeString(out, "label", exception.getLabel());
+            writeString(out, "start", exception.getStart());
+            writeString(out, "end", exception.getEnd());
+            out.name("allow").value(exception.isAllow());
+            out.endObject();
+        }
+
+        @Override
+        public ScheduleException read(JsonReader in) throws IOException {
+            String label = null;
+            String start = null;
+            String end = null;
+            boolean allow = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "label":
+                        label = in.nextString();
+                        break;
+                    case "start":
+                        start = in.nextString();
+                        break;
+                    case "end":
+                        end = in.nextString();
+                        break;
+                    case "allow":
+                        allow = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ScheduleException(label, start, end, allow);
+        }
+    };
+
+    static final TypeAdapter<RecurringWindow> RECURRING_WINDOW = new TypeAdapter<RecurringWindow>() {
+        @Override
+        public void write(JsonWriter out, RecurringWindow window) throws IOException {
+            out.beginObject();
+            writeString(out, "label", window.getLabel());
+            writeString(out, "start", window.getStart());
+            out.name("durationMinutes").value(window.getDurationMinutes());
+            writeString(out, "rule", window.getRule());
+            out.name("allow").value(window.isAllow());
+            out.endObject();
+        }
+
+        @Override
+        public RecurringWindow read(JsonReader in) throws IOException {
+            String label = null;
+            String start = null;
+            int durationMinutes = 0;
+            String rule = null;
+            boolean allow = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "label":
+                        label = in.nextString();
+                        break;
+                    case "start":
+                        start = in.nextString();
+                        break;
+                    case "durationMinutes":
+                        durationMinutes = in.nextInt();
+                        break;
+                    case "rule":
+                        rule = in.nextString();
+                        break;
+                    case "allow":
+                        allow = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new RecurringWindow(label, start, durationMinutes, rule, allow);
+        }
+    };
+
+    static final TypeAdapter<FilterProfile> FILTER_PROFILE = new TypeAdapter<FilterProfile>() {
+        @Override
+        public void write(JsonWriter out, FilterProfile profile) throws IOException {
+            out.beginObject();
+            writeString(out, "id", profile.getId());
+            writeString(out, "name", profile.getName());
+            writeList(out, "schedule", profile.getSchedule(), DAY_SCHEDULE);
+            writeList(out, "rules", profile.getRules(), NUMBER_RULE);
+            writeList(out, "whitelist", profile.getWhitelist(), STRING);
+            out.endObject();
+        }
+
+        @Override
+        public FilterProfile read(JsonReader in) throws IOException {
+            String id = null;
+            String profileName = null;
+            List<DaySchedule> schedule = null;
+            List<NumberRule> rules = null;
+            List<String> whitelist = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (skipNull(in)) {
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        id = in.nextString();
+                        break;
+                    case "name":
+                        profileName = in.nextString();
+                        break;
+                    case "schedule":
+                        schedule = readList(in, DAY_SCHEDULE);
+                        break;
+                    case "rules":
+                        rules = readList(in, NUMBER_RULE);
+                        break;
+                    case "whitelist":
+                        whitelist = readList(in, STRING);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new FilterProfile(id, profileName, schedule, rules, whitelist);
+        }
+    };
+
+    private static final TypeAdapter<String> STRING = new TypeAdapter<String>() {
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return in.nextString();
+        }
+    };
+
+    private ConfigJson() {
+    }
+
+    /**
+     * @return a builder with the adapters for every model in this module registered, for callers
+     * to add their own to before creating the shared instance
+     */
+    public static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(TimeWindow.class, TIME_WINDOW.nullSafe())
+                .registerTypeAdapter(DaySchedule.class, DAY_SCHEDULE.nullSafe())
+                .registerTypeAdapter(WhitelistedContact.class, WHITELISTED_CONTACT.nullSafe())
+                .registerTypeAdapter(BlockedCall.class, BLOCKED_CALL.nullSafe())
+                .registerTypeAdapter(NumberRule.class, NUMBER_RULE.nullSafe())
+                .registerTypeAdapter(ScheduleException.class, SCHEDULE_EXCEPTION.nullSafe())
+                .registerTypeAdapter(RecurringWindow.class, RECURRING_WINDOW.nullSafe())
+                .registerTypeAdapter(FilterProfile.class, FILTER_PROFILE.nullSafe());
+    }
+
+    // Built from the classes rather than an anonymous TypeToken, whose generic signature R8 may strip
+    public static Type listOf(Class<?> elementType) {
+        return TypeToken.getParameterized(List.class, elementType).getType();
+    }
+
+    // Consumes an explicit null, which leaves the field at its default like reflective Gson does
+    public static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL) {
+            return false;
+        }
+        in.nextNull();
+        return true;
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static <T> void writeList(JsonWriter out, String name, List<T> list, TypeAdapter<T> adapter)
+            throws IOException {
+        if (list == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (T item : list) {
+            if (item == null) {
+                out.nullValue();
+            } else {
+                adapter.write(out, item);
+            }
+        }
+        out.endArray();
+    }
+
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(skipNull(in) ? null : adapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+}
@@ -0,0 +1,144 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The numbers of each device contact, so a sync can replace the numbers of the contacts that
+ * changed without re-reading the others, and compile the result into a {@link ContactNumberSet}.
+ * <p>
+ * Persisted as a small binary file: a header with the provider timestamp the index is synced up
+ * to, then per contact its id, the count of numbers and the numbers as modified UTF-8. A cold
+ * start reads it back without touching the contacts provider. Version 1 files only held suffix
+ * keys and are rejected, which makes the next sync a full one. Not thread-safe.
+ */
+public final class ContactNumberIndex {
+
+    static final int MAGIC = 0x4F44434E; // "ODCN"
+    static final int FORMAT_VERSION = 2;
+
+    private final Map<Long, String[]> byContact = new HashMap<>();
+    private long syncedUntil;
+
+    /**
+     * Replaces the numbers of a contact. Numbers that can't be keyed (e.g. {@code *86}) are skipped.
+     *
+     * @return whether the contact's numbers changed
+     */
+    public boolean put(long contactId, List<String> numbers) {
+        Set<String> distinct = new HashSet<>();
+        for (String number : numbers) {
+            if (number != null && WhitelistIndex.suffixKey(number) != WhitelistIndex.NO_KEY) {
+                distinct.add(number);
+            }
+        }
+        if (distinct.isEmpty()) {
+            return remove(contactId);
+        }
+        String[] sorted = distinct.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return !Arrays.equals(byContact.put(contactId, sorted), sorted);
+    }
+
+    /**
+     * @return whether the contact had any numbers
+     */
+    public boolean remove(long contactId) {
+        return byContact.remove(contactId) != null;
+    }
+
+    public void clear() {
+        byContact.clear();
+        syncedUntil = 0;
+    }
+
+    /**
+     * @return the last contact update timestamp the index reflects, 0 if it was never synced
+     */
+    public long getSyncedUntil() {
+        return syncedUntil;
+    }
+
+    public void setSyncedUntil(long syncedUntil) {
+        this.syncedUntil = syncedUntil;
+    }
+
+    public int contactCount() {
+        return byContact.size();
+    }
+
+    public ContactNumberSet compile() {
+        // Contacts often share a number (a switchboard, a household landline)
+        Set<String> distinct = new HashSet<>();
+        for (String[] numbers : byContact.values()) {
+            Collections.addAll(distinct, numbers);
+        }
+        return ContactNumberSet.of(distinct.toArray(new String[0]));
+    }
+
+    /**
+     * Writes the index to a temporary file renamed over {@code file}, so a crash never leaves a
+     * half written index behind.
+     */
+    public void writeTo(File file) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(syncedUntil);
+            out.writeInt(byContact.size());
+            for (Map.Entry<Long, String[]> entry : byContact.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeShort(entry.getValue().length);
+                for (String number : entry.getValue()) {
+                    out.writeUTF(number);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}, or returns an empty one if there is none.
+     */
+    public static ContactNumberIndex readFrom(File file) throws IOException {
+        ContactNumberIndex index = new ContactNumberIndex();
+        if (!file.exists()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a contact index: " + file);
+            }
+            index.syncedUntil = in.readLong();
+            int contacts = in.readInt();
+            for (int i = 0; i < contacts; i++) {
+                long contactId = in.readLong();
+                String[] numbers = new String[in.readUnsignedShort()];
+                for (int k = 0; k < numbers.length; k++) {
+                    numbers[k] = in.readUTF();
+                }
+                index.byContact.put(contactId, numbers);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated contact index: " + file, e);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,93 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Hash set of the device's contact numbers, keyed like {@link WhitelistIndex} on their last
+ * {@link WhitelistIndex#SUFFIX_DIGITS} digits, which is also how far the platform's caller ID
+ * matches a number to a contact. The key only finds the candidates: a number is a contact once
+ * one of the numbers sharing its key compares equal, or matches under the snapshot's
+ * {@link NumberMatcher}. Letting every contact ring costs one probe per call and no contacts
+ * provider query. Compiled by {@link ContactNumberIndex}.
+ */
+public final class ContactNumberSet {
+
+    public static final ContactNumberSet EMPTY = new ContactNumberSet(new String[0]);
+
+    private final String[] numbers;
+    // Open addressing table, 0 marks an empty slot (valid keys are always >= 1)
+    private final int[] keys;
+    private final int[] heads;
+    // Chains numbers that share a key, -1 terminated
+    private final int[] next;
+    private final int mask;
+
+    private ContactNumberSet(String[] numbers) {
+        this.numbers = numbers;
+        int capacity = Integer.highestOneBit(Math.max(2, numbers.length * 2) - 1) << 1;
+        keys = new int[capacity];
+        heads = new int[capacity];
+        next = new int[numbers.length];
+        mask = capacity - 1;
+
+        for (int i = 0; i < numbers.length; i++) {
+            int key = (int) WhitelistIndex.suffixKey(numbers[i]);
+            int slot = slotOf(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                heads[slot] = -1;
+            }
+            next[i] = heads[slot];
+            heads[slot] = i;
+        }
+    }
+
+    /**
+     * @param distinctNumbers numbers that all have a suffix key, without duplicates
+     */
+    static ContactNumberSet of(String[] distinctNumbers) {
+        return distinctNumbers.length == 0 ? EMPTY : new ContactNumberSet(distinctNumbers);
+    }
+
+    public boolean contains(String normalizedNumber, NumberMatcher matcher) {
+        if (numbers.length == 0 || normalizedNumber == null) {
+            return false;
+        }
+        long key = WhitelistIndex.suffixKey(normalizedNumber);
+        if (key == WhitelistIndex.NO_KEY) {
+            return false;
+        }
+        int slot = slotOf((int) key);
+        if (keys[slot] != key) {
+            return false;
+        }
+        for (int i = heads[slot]; i >= 0; i = next[i]) {
+            if (numbers[i].equals(normalizedNumber)) {
+                return true;
+            }
+        }
+        for (int i = heads[slot]; i >= 0; i = next[i]) {
+            if (matcher.matches(numbers[i], normalizedNumber)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int slotOf(int key) {
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int size() {
+        return numbers.length;
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Contact numbers: " + numbers.length + " (" + keys.length + " slots)");
+    }
+}
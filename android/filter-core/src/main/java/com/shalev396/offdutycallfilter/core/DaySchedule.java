@@ -1,4 +1,4 @@
-package com.shalev396.offdutycallfilter;
+package com.shalev396.offdutycallfilter.core;
 
 import java.util.List;
 
@@ -0,0 +1,102 @@
+package com.shalev396.offdutycallfilter.core;
+
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Outcome;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded LRU of recent decisions keyed by the normalized number, so a repeat caller skips the
+ * whitelist, rules, spam list and schedule however the network formatted the number this time.
+ * <p>
+ * Each entry remembers the snapshot version it was decided under and is ignored once the
+ * configuration changes. Decisions that depend on the schedule also expire at its next transition.
+ */
+public final class DecisionCache {
+
+    /** Expiry for decisions that only change with the configuration. */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries;
+    private long version = -1;
+    private long hits;
+    private long misses;
+
+    public DecisionCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecisionCache.Entry> eldest) {
+                return size() > DecisionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the cached outcome, or null if there is none for this configuration and time
+     */
+    public synchronized Outcome get(String normalizedNumber, long snapshotVersion, long nowMillis) {
+        if (snapshotVersion != version) {
+            // Everything cached was decided under an older configuration
+            entries.clear();
+            version = snapshotVersion;
+        }
+        Entry entry = entries.get(normalizedNumber);
+        if (entry != null && nowMillis >= entry.expiresAt) {
+            entries.remove(normalizedNumber);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.outcome;
+    }
+
+    public synchronized void put(String normalizedNumber, long snapshotVersion, Outcome outcome, long expiresAt) {
+        if (snapshotVersion == version && normalizedNumber != null) {
+            entries.put(normalizedNumber, new Entry(outcome, expiresAt));
+        }
+    }
+
+    /**
+     * Forgets every decision, e.g. after the wall clock jumped and expiry times no longer apply.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    public synchronized void dump(PrintWriter pw, String prefix) {
+        long lookups = hits + misses;
+        pw.println(prefix + String.format(Locale.US, "Decision cache: %d/%d entries, %d hits, %d misses (%.1f%% hit rate)",
+                entries.size(), capacity, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups));
+    }
+
+    private static final class Entry {
+
+        final Outcome outcome;
+        final long expiresAt;
+
+        Entry(Outcome outcome, long expiresAt) {
+            this.outcome = outcome;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
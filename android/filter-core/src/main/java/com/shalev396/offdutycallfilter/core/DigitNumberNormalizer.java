@@ -0,0 +1,33 @@
+package com.shalev396.offdutycallfilter.core;
+
+/**
+ * Plain-Java equivalent of {@code PhoneNumberUtils.normalizeNumber}: keeps digits and a leading
+ * '+', maps keypad letters to their digits and drops everything else.
+ */
+public final class DigitNumberNormalizer implements NumberNormalizer {
+
+    // Keypad digit for 'A'..'Z'
+    private static final String KEYPAD = "22233344455566677778889999";
+
+    @Override
+    public String normalize(String number) {
+        if (number == null || number.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            int digit = Character.digit(c, 10);
+            if (digit != -1) {
+                sb.append((char) ('0' + digit));
+            } else if (sb.length() == 0 && c == '+') {
+                sb.append(c);
+            } else if (c >= 'a' && c <= 'z') {
+                sb.append(KEYPAD.charAt(c - 'a'));
+            } else if (c >= 'A' && c <= 'Z') {
+                sb.append(KEYPAD.charAt(c - 'A'));
+            }
+        }
+        return sb.toString();
+    }
+}
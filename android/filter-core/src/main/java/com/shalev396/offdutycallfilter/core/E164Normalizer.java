@@ -0,0 +1,195 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Turns a number into its E.164 form, reading numbers without a country code as dialled in one
+ * default region: "054-123 4567" in IL becomes "+972541234567", "(212) 555-0100" in US becomes
+ * "+12125550100". Stored and incoming numbers normalized by the same instance compare equal as
+ * strings.
+ * <p>
+ * Only the international and trunk prefixes are known per region, not the numbering plans, so
+ * numbers that can't be placed (local numbers without an area code, short codes, anything with
+ * '*', '#' or pauses) keep their digits as written, like {@link DigitNumberNormalizer} would.
+ */
+public final class E164Normalizer implements NumberNormalizer {
+
+    // Keypad digit for 'A'..'Z'
+    private static final String KEYPAD = "22233344455566677778889999";
+    // Room in front of the digits for '+' and a country code of up to three digits
+    private static final int HEAD_ROOM = 4;
+
+    // Region, country code, international prefix, trunk prefix ("" if there is none) and the
+    // length of a national number, which numbers without a trunk prefix must have to be read as
+    // one, and those with it too (0 if numbers vary in length)
+    private static final Object[][] REGIONS = {
+            {"AE", "971", "00", "0", 0},
+            {"AT", "43", "00", "0", 0},
+            {"AU", "61", "0011", "0", 0},
+            {"BE", "32", "00", "0", 0},
+            {"CA", "1", "011", "1", 10},
+            {"CH", "41", "00", "0", 0},
+            {"CN", "86", "00", "0", 0},
+            {"CZ", "420", "00", "", 9},
+            {"DE", "49", "00", "0", 0},
+            {"DK", "45", "00", "", 8},
+            {"EG", "20", "00", "0", 0},
+            {"ES", "34", "00", "", 9},
+            {"FI", "358", "00", "0", 0},
+            {"FR", "33", "00", "0", 0},
+            {"GB", "44", "00", "0", 0},
+            {"GR", "30", "00", "", 10},
+            {"HK", "852", "001", "", 8},
+            {"HU", "36", "00", "06", 0},
+            {"IE", "353", "00", "0", 0},
+            {"IL", "972", "00", "0", 0},
+            {"IN", "91", "00", "0", 0},
+            {"IT", "39", "00", "", 0},
+            {"JP", "81", "010", "0", 0},
+            {"KR", "82", "001", "0", 0},
+            {"MX", "52", "00", "", 10},
+            {"NL", "31", "00", "0", 0},
+            {"NO", "47", "00", "", 8},
+            {"NZ", "64", "00", "0", 0},
+            {"PL", "48", "00", "", 9},
+            {"PT", "351", "00", "", 9},
+            {"RO", "40", "00", "0", 0},
+            {"RU", "7", "810", "8", 0},
+            {"SA", "966", "00", "0", 0},
+            {"SE", "46", "00", "0", 0},
+            {"SG", "65", "000", "", 8},
+            {"TR", "90", "00", "0", 0},
+            {"UA", "380", "00", "0", 0},
+            {"US", "1", "011", "1", 10},
+            {"ZA", "27", "00", "0", 0},
+    };
+
+    private static final Map<String, E164Normalizer> BY_REGION = new TreeMap<>();
+
+    static {
+        for (Object[] region : REGIONS) {
+            BY_REGION.put((String) region[0], new E164Normalizer((String) region[0], (String) region[1],
+                    (String) region[2], (String) region[3], (Integer) region[4]));
+        }
+    }
+
+    // For regions not in the table: numbers with a '+' stay international, the rest keep their digits
+    private static final E164Normalizer UNKNOWN_REGION = new E164Normalizer(null, null, null, "", 0);
+
+    private final String region;
+    private final String countryCode;
+    private final String internationalPrefix;
+    private final String trunkPrefix;
+    private final int nationalLength;
+
+    private E164Normalizer(String region, String countryCode, String internationalPrefix, String trunkPrefix,
+                           int nationalLength) {
+        this.region = region;
+        this.countryCode = countryCode;
+        this.internationalPrefix = internationalPrefix;
+        this.trunkPrefix = trunkPrefix;
+        this.nationalLength = nationalLength;
+    }
+
+    /**
+     * @param region an ISO 3166 country code, in any case; unknown or null regions only strip formatting
+     */
+    public static E164Normalizer forRegion(String region) {
+        E164Normalizer normalizer = region != null ? BY_REGION.get(region.toUpperCase(Locale.ROOT)) : null;
+        return normalizer != null ? normalizer : UNKNOWN_REGION;
+    }
+
+    /**
+     * @return the regions {@link #forRegion} knows, sorted
+     */
+    public static Set<String> regions() {
+        return Collections.unmodifiableSet(BY_REGION.keySet());
+    }
+
+    /**
+     * @return the region, or null if unknown
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return the country code without '+', or null if the region is unknown
+     */
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    @Override
+    public String normalize(String number) {
+        if (number == null || number.isEmpty()) {
+            return "";
+        }
+        // Digits are collected behind the head room so the prefix can be written in front in place
+        char[] buf = new char[number.length() + HEAD_ROOM];
+        int start = HEAD_ROOM;
+        int end = HEAD_ROOM;
+        boolean plus = false;
+        boolean dialString = false;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            int digit = Character.digit(c, 10);
+            if (digit != -1) {
+                buf[end++] = (char) ('0' + digit);
+            } else if (c == '+' && end == start && !plus) {
+                plus = true;
+            } else if (c == '(' && plus && number.startsWith("0)", i + 1)) {
+                i += 2; // "+44 (0)20 ..." repeats the trunk prefix for national callers
+            } else if (c >= 'a' && c <= 'z') {
+                buf[end++] = KEYPAD.charAt(c - 'a');
+            } else if (c >= 'A' && c <= 'Z') {
+                buf[end++] = KEYPAD.charAt(c - 'A');
+            } else if (c == '*' || c == '#' || c == ',' || c == ';') {
+                buf[end++] = c;
+                dialString = true;
+            }
+        }
+        int length = end - start;
+        if (plus) {
+            buf[--start] = '+';
+        } else if (countryCode != null && !dialString) {
+            if (length > internationalPrefix.length() && startsWith(buf, start, end, internationalPrefix)) {
+                start += internationalPrefix.length() - 1;
+                buf[start] = '+';
+            } else if (!trunkPrefix.isEmpty() && startsWith(buf, start, end, trunkPrefix)
+                    && (nationalLength > 0 ? length - trunkPrefix.length() == nationalLength
+                    : length > trunkPrefix.length())) {
+                // Where the trunk prefix is a digit numbers can start with ("1" in the US) only a
+                // full national number after it is read as one
+                start = prependCountryCode(buf, start + trunkPrefix.length());
+            } else if (nationalLength > 0 && length == nationalLength) {
+                start = prependCountryCode(buf, start);
+            }
+        }
+        return new String(buf, start, end - start);
+    }
+
+    // Writes '+' and the country code in front of buf[start], returning the new start
+    private int prependCountryCode(char[] buf, int start) {
+        start -= countryCode.length() + 1;
+        buf[start] = '+';
+        countryCode.getChars(0, countryCode.length(), buf, start + 1);
+        return start;
+    }
+
+    private static boolean startsWith(char[] buf, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.List;
+
+/**
+ * A named set of settings to switch between, e.g. "Work", "On-call" or "Vacation". The whitelist
+ * itself is shared, a profile only picks which of its numbers ring.
+ */
+public class FilterProfile {
+    private final String id;
+    private final String name;
+    private final List<DaySchedule> schedule;
+    private final List<NumberRule> rules;
+    // Numbers of the whitelisted contacts that ring in this profile, null for all of them
+    private final List<String> whitelist;
+
+    public FilterProfile(String id, String name, List<DaySchedule> schedule, List<NumberRule> rules,
+                         List<String> whitelist) {
+        this.id = id;
+        this.name = name;
+        this.schedule = schedule;
+        this.rules = rules;
+        this.whitelist = whitelist;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<DaySchedule> getSchedule() {
+        return schedule;
+    }
+
+    public List<NumberRule> getRules() {
+        return rules;
+    }
+
+    public List<String> getWhitelist() {
+        return whitelist;
+    }
+
+    public FilterProfile withSchedule(List<DaySchedule> schedule) {
+        return new FilterProfile(id, name, schedule, rules, whitelist);
+    }
+
+    public FilterProfile withRules(List<NumberRule> rules) {
+        return new FilterProfile(id, name, schedule, rules, whitelist);
+    }
+}
@@ -0,0 +1,289 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.PrintWriter;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, pre-compiled view of the filter configuration used to screen calls.
+ * Built once per configuration change so the screening path never touches JSON.
+ */
+public final class FilterSnapshot implements WhitelistMatcher, ScheduleEvaluator {
+
+    // Override layers, checked in this order ahead of the weekly schedule
+    public static final int EXCEPTIONS = 0;
+    public static final int RECURRING = 1;
+    public static final int CALENDAR = 2;
+    private static final int OVERRIDE_LAYERS = 3;
+
+    private static final AtomicLong versions = new AtomicLong();
+
+    private final long version = versions.incrementAndGet();
+    private final long createdAtMillis = System.currentTimeMillis();
+    private final boolean enabled;
+    private final NumberMatcher matcher;
+    private final WhitelistIndex whitelist;
+    // Every device contact, or EMPTY unless all contacts may ring
+    private final ContactNumberSet contacts;
+    private final NumberRuleTrie rules;
+    private final SpamBlocklist spam;
+    private final ScheduleBitmap schedule;
+    private final ScheduleExceptionIndex[] overrides;
+    // Null to follow the device's zone
+    private final ZoneId scheduleZone;
+    // The FilterProfile the whitelist, rules and schedule came from, null for the default settings
+    private final String profileId;
+    private final RepeatCallerRule repeatCallerRule;
+
+    // Compiled on first use for the zone in effect and again once the time runs past it
+    private volatile ScheduleTimeline scheduleTimeline;
+    // Memoized until the next schedule transition; recomputing it always gives the same answer
+    private volatile ScheduleState scheduleState;
+
+    // The JSON strings this snapshot was compiled from, used to skip redundant rebuilds
+    private final String whitelistSource;
+    private final String rulesSource;
+    private final String scheduleSource;
+    private final String[] overrideSources;
+
+    private FilterSnapshot(boolean enabled, NumberMatcher matcher, WhitelistIndex whitelist, NumberRuleTrie rules,
+                           SpamBlocklist spam, ScheduleBitmap schedule, ScheduleExceptionIndex[] overrides,
+                           String whitelistSource, String rulesSource, String scheduleSource,
+                           String[] overrideSources, ZoneId scheduleZone, String profileId,
+                           RepeatCallerRule repeatCallerRule, ContactNumberSet contacts) {
+        this.enabled = enabled;
+        this.matcher = matcher;
+        this.whitelist = whitelist;
+        this.rules = rules;
+        this.spam = spam;
+        this.schedule = schedule;
+        this.overrides = overrides;
+        this.whitelistSource = whitelistSource;
+        this.rulesSource = rulesSource;
+        this.scheduleSource = scheduleSource;
+        this.overrideSources = overrideSources;
+        this.scheduleZone = scheduleZone;
+        this.profileId = profileId;
+        this.repeatCallerRule = repeatCallerRule;
+        this.contacts = contacts;
+    }
+
+    /**
+     * Compiles a snapshot without overrides, see {@link #withOverride}.
+     */
+    public static FilterSnapshot compile(boolean enabled, NumberMatcher matcher,
+                                         List<WhitelistedContact> whitelist, String whitelistSource,
+                                         List<NumberRule> rules, String rulesSource,
+                                         SpamBlocklist spam,
+                                         ScheduleBitmap schedule, String scheduleSource) {
+        ScheduleExceptionIndex[] overrides = new ScheduleExceptionIndex[OVERRIDE_LAYERS];
+        Arrays.fill(overrides, ScheduleExceptionIndex.EMPTY);
+        return new FilterSnapshot(enabled, matcher, new WhitelistIndex(whitelist, matcher), NumberRuleTrie.compile(rules),
+                spam != null ? spam : SpamBlocklist.EMPTY, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, new String[OVERRIDE_LAYERS], null, null,
+                RepeatCallerRule.OFF, ContactNumberSet.EMPTY);
+    }
+
+    public FilterSnapshot withEnabled(boolean enabled) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public FilterSnapshot withWhitelist(List<WhitelistedContact> whitelist, String source) {
+        return new FilterSnapshot(enabled, matcher, new WhitelistIndex(whitelist, matcher), rules, spam, schedule,
+                overrides, source, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public FilterSnapshot withRules(List<NumberRule> rules, String source) {
+        return new FilterSnapshot(enabled, matcher, whitelist, NumberRuleTrie.compile(rules), spam, schedule,
+                overrides, whitelistSource, source, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public FilterSnapshot withSpamBlocklist(SpamBlocklist spam) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public FilterSnapshot withSchedule(ScheduleBitmap schedule, String source) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, source, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public FilterSnapshot withProfileId(String profileId) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public FilterSnapshot withRepeatCallerRule(RepeatCallerRule rule) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                rule != null ? rule : RepeatCallerRule.OFF, contacts);
+    }
+
+    /**
+     * @param contacts the contact numbers that may always ring, {@link ContactNumberSet#EMPTY} for none
+     */
+    public FilterSnapshot withContacts(ContactNumberSet contacts) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    /**
+     * @param zone the zone the schedule and its overrides are kept in, or null to follow the clock's
+     *             zone wherever the device goes
+     */
+    public FilterSnapshot withScheduleZone(ZoneId zone) {
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, zone, profileId, repeatCallerRule,
+                contacts);
+    }
+
+    /**
+     * @param layer {@link #EXCEPTIONS} for the user's own date ranges, {@link #CALENDAR} for
+     *              windows read from the device calendar
+     */
+    public FilterSnapshot withOverride(int layer, List<ScheduleException> exceptions, String source) {
+        return withOverride(layer, ScheduleExceptionIndex.compile(exceptions), source);
+    }
+
+    /**
+     * @param layer {@link #RECURRING} for occurrences expanded by a {@link RecurrenceTable}, or any
+     *              other layer with an index compiled elsewhere
+     */
+    public FilterSnapshot withOverride(int layer, ScheduleExceptionIndex index, String source) {
+        ScheduleExceptionIndex[] overrides = this.overrides.clone();
+        String[] overrideSources = this.overrideSources.clone();
+        overrides[layer] = index;
+        overrideSources[layer] = source;
+        return new FilterSnapshot(enabled, matcher, whitelist, rules, spam, schedule, overrides,
+                whitelistSource, rulesSource, scheduleSource, overrideSources, scheduleZone, profileId,
+                repeatCallerRule, contacts);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getWhitelistSource() {
+        return whitelistSource;
+    }
+
+    public String getRulesSource() {
+        return rulesSource;
+    }
+
+    public String getScheduleSource() {
+        return scheduleSource;
+    }
+
+    public String getOverrideSource(int layer) {
+        return overrideSources[layer];
+    }
+
+    public ZoneId getScheduleZone() {
+        return scheduleZone;
+    }
+
+    public String getProfileId() {
+        return profileId;
+    }
+
+    public RepeatCallerRule getRepeatCallerRule() {
+        return repeatCallerRule;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isWhitelisted(String normalizedNumber) {
+        return whitelist.isWhitelisted(normalizedNumber);
+    }
+
+    public boolean isContact(String normalizedNumber) {
+        return contacts.contains(normalizedNumber, matcher);
+    }
+
+    public ContactNumberSet getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return {@link NumberRuleTrie#ALLOW}, {@link NumberRuleTrie#BLOCK} or {@link NumberRuleTrie#NO_MATCH}
+     */
+    public int matchRule(String normalizedNumber) {
+        return rules.match(normalizedNumber);
+    }
+
+    public boolean isSpam(String normalizedNumber) {
+        return spam.contains(normalizedNumber);
+    }
+
+    @Override
+    public boolean isAllowedAt(int dayOfWeek, int minutes) {
+        return schedule.isAllowedAt(dayOfWeek, minutes);
+    }
+
+    /**
+     * Returns whether the schedule allows calls at the clock's current time and until when, reusing
+     * the last answer while it still holds. The schedule is read in its own zone if it has one.
+     */
+    public ScheduleState getScheduleState(Clock clock) {
+        long now = clock.millis();
+        ZoneId zone = scheduleZone != null ? scheduleZone : clock.getZone();
+        ScheduleState state = scheduleState;
+        if (state == null || !state.covers(now, zone)) {
+            ScheduleTimeline timeline = scheduleTimeline;
+            if (timeline == null || !timeline.covers(now, zone)) {
+                timeline = ScheduleTimeline.compile(schedule, overrides, zone, now);
+                scheduleTimeline = timeline;
+            }
+            state = timeline.stateAt(now);
+            scheduleState = state;
+        }
+        return state;
+    }
+
+    /**
+     * Drops the memoized state after the wall clock or time zone was changed.
+     */
+    public void invalidateScheduleState() {
+        scheduleState = null;
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Snapshot version: " + version
+                + ", age: " + (System.currentTimeMillis() - createdAtMillis) / 1000 + "s");
+        pw.println(prefix + "  Enabled: " + enabled);
+        pw.println(prefix + "  Profile: " + (profileId != null ? profileId : "default"));
+        pw.println(prefix + "  Whitelist entries: " + whitelist.size());
+        contacts.dump(pw, prefix + "  ");
+        pw.println(prefix + "  Number rules: " + rules.size() + " (" + rules.nodeCount() + " trie nodes)");
+        spam.dump(pw, prefix + "  ");
+        pw.println(prefix + "  Allowed minutes per week: " + schedule.allowedMinutes());
+        pw.println(prefix + "  Repeat callers: " + (repeatCallerRule.isEnabled()
+                ? repeatCallerRule.getCalls() + " calls in " + repeatCallerRule.getWindowMinutes() + " minutes" : "off"));
+        pw.println(prefix + "  Schedule zone: " + (scheduleZone != null ? scheduleZone : "device"));
+        ScheduleTimeline timeline = scheduleTimeline;
+        if (timeline != null) {
+            pw.println(prefix + "  Schedule transitions compiled: " + timeline.transitionCount());
+        }
+        pw.println(prefix + "  Schedule exceptions: " + overrides[EXCEPTIONS].size()
+                + " (" + overrides[EXCEPTIONS].intervalCount() + " intervals)");
+        pw.println(prefix + "  Recurring occurrences: " + overrides[RECURRING].size()
+                + " (" + overrides[RECURRING].intervalCount() + " intervals)");
+        pw.println(prefix + "  Calendar windows: " + overrides[CALENDAR].size()
+                + " (" + overrides[CALENDAR].intervalCount() + " intervals)");
+    }
+}
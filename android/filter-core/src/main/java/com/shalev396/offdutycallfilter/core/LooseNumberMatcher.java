@@ -0,0 +1,174 @@
+package com.shalev396.offdutycallfilter.core;
+
+/**
+ * Plain-Java port of the loose comparison behind {@code PhoneNumberUtils.compare}, so the
+ * matching logic can run and be benchmarked off-device.
+ * <p>
+ * Numbers match when their last {@link #MIN_MATCH} dialable characters agree and whatever is left
+ * over is only an international prefix, a trunk '0' or a country code. Short codes match only when
+ * all their dialable characters agree.
+ */
+public final class LooseNumberMatcher implements NumberMatcher {
+
+    public static final int MIN_MATCH = 7;
+
+    private static final char PAUSE = ',';
+    private static final char WAIT = ';';
+    private static final char WILD = 'N';
+
+    @Override
+    public boolean matches(String a, String b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a.isEmpty() || b.isEmpty()) {
+            return false;
+        }
+
+        int ia = indexOfLastNetworkChar(a);
+        int ib = indexOfLastNetworkChar(b);
+        int matched = 0;
+        int nonDialableInA = 0;
+        int nonDialableInB = 0;
+
+        while (ia >= 0 && ib >= 0) {
+            boolean skipCompare = false;
+            char ca = a.charAt(ia);
+            if (!isDialable(ca)) {
+                ia--;
+                skipCompare = true;
+                nonDialableInA++;
+            }
+            char cb = b.charAt(ib);
+            if (!isDialable(cb)) {
+                ib--;
+                skipCompare = true;
+                nonDialableInB++;
+            }
+            if (!skipCompare) {
+                if (cb != ca && ca != WILD && cb != WILD) {
+                    break;
+                }
+                ia--;
+                ib--;
+                matched++;
+            }
+        }
+
+        if (matched < MIN_MATCH) {
+            int effectiveALength = a.length() - nonDialableInA;
+            int effectiveBLength = b.length() - nonDialableInB;
+            return effectiveALength == effectiveBLength && effectiveALength == matched;
+        }
+        if (ia < 0 || ib < 0) {
+            return true;
+        }
+        // What remains must be an international prefix on both, or a trunk prefix on one and an
+        // international prefix plus country code on the other
+        return (matchIntlPrefix(a, ia + 1) && matchIntlPrefix(b, ib + 1))
+                || (matchTrunkPrefix(a, ia + 1) && matchIntlPrefixAndCountryCode(b, ib + 1))
+                || (matchTrunkPrefix(b, ib + 1) && matchIntlPrefixAndCountryCode(a, ia + 1));
+    }
+
+    private static int indexOfLastNetworkChar(String a) {
+        int pause = a.indexOf(PAUSE);
+        int wait = a.indexOf(WAIT);
+        int trim = pause < 0 ? wait : (wait < 0 ? pause : Math.min(pause, wait));
+        return trim < 0 ? a.length() - 1 : trim - 1;
+    }
+
+    private static boolean isDialable(char c) {
+        return (c >= '0' && c <= '9') || c == '*' || c == '#' || c == '+' || c == WILD;
+    }
+
+    private static boolean isNonSeparator(char c) {
+        return isDialable(c) || c == PAUSE || c == WAIT;
+    }
+
+    /**
+     * Everything before {@code len} is '+', "00" or "011", ignoring separators.
+     */
+    private static boolean matchIntlPrefix(String a, int len) {
+        int state = 0;
+        for (int i = 0; i < len; i++) {
+            char c = a.charAt(i);
+            switch (state) {
+                case 0:
+                    if (c == '+') state = 1;
+                    else if (c == '0') state = 2;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                case 2:
+                    if (c == '0') state = 3;
+                    else if (c == '1') state = 4;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                case 4:
+                    if (c == '1') state = 5;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                default:
+                    if (isNonSeparator(c)) return false;
+                    break;
+            }
+        }
+        return state == 1 || state == 3 || state == 5;
+    }
+
+    /**
+     * Everything before {@code len} is a single trunk '0', ignoring separators.
+     */
+    private static boolean matchTrunkPrefix(String a, int len) {
+        boolean found = false;
+        for (int i = 0; i < len; i++) {
+            char c = a.charAt(i);
+            if (c == '0' && !found) {
+                found = true;
+            } else if (isNonSeparator(c)) {
+                return false;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Everything before {@code len} is an international prefix followed by a 1-3 digit country code.
+     */
+    private static boolean matchIntlPrefixAndCountryCode(String a, int len) {
+        int state = 0;
+        for (int i = 0; i < len; i++) {
+            char c = a.charAt(i);
+            switch (state) {
+                case 0:
+                    if (c == '+') state = 1;
+                    else if (c == '0') state = 2;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                case 2:
+                    if (c == '0') state = 3;
+                    else if (c == '1') state = 4;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                case 4:
+                    if (c == '1') state = 5;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                case 1:
+                case 3:
+                case 5:
+                    if (c >= '0' && c <= '9') state = 6;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                case 6:
+                case 7:
+                    if (c >= '0' && c <= '9') state++;
+                    else if (isNonSeparator(c)) return false;
+                    break;
+                default:
+                    if (isNonSeparator(c)) return false;
+                    break;
+            }
+        }
+        return state == 6 || state == 7 || state == 8;
+    }
+}
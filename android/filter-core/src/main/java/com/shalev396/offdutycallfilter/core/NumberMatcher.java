@@ -0,0 +1,9 @@
+package com.shalev396.offdutycallfilter.core;
+
+/**
+ * Decides whether two numbers refer to the same line.
+ */
+public interface NumberMatcher {
+
+    boolean matches(String a, String b);
+}
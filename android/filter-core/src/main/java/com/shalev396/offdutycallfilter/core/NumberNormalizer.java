@@ -0,0 +1,9 @@
+package com.shalev396.offdutycallfilter.core;
+
+/**
+ * Turns a number as dialled or stored into the form the matchers compare.
+ */
+public interface NumberNormalizer {
+
+    String normalize(String number);
+}
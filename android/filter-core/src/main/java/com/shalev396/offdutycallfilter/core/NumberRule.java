@@ -0,0 +1,42 @@
+package com.shalev396.offdutycallfilter.core;
+
+/**
+ * Allows or blocks every number in an inclusive range, e.g. {@code +97235550000..+97235559999}.
+ * A prefix rule (an area code, a PBX block) has {@code from} equal to {@code to} and matches every
+ * number that starts with it. Bounds are compared with the normalized number, so they have to be
+ * stored normalized the same way: with an {@link E164Normalizer} a national prefix such as
+ * {@code 03555} becomes {@code +9723555}.
+ */
+public class NumberRule {
+    private final String label;
+    private final String from;
+    private final String to;
+    private final boolean block;
+
+    public NumberRule(String label, String from, String to, boolean block) {
+        this.label = label;
+        this.from = from;
+        this.to = to;
+        this.block = block;
+    }
+
+    public static NumberRule prefix(String label, String prefix, boolean block) {
+        return new NumberRule(label, prefix, prefix, block);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public boolean isBlock() {
+        return block;
+    }
+}
@@ -0,0 +1,227 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Digit trie over {@link NumberRule}s, so lookup walks the caller's number once no matter how many
+ * rules exist.
+ * <p>
+ * A range is stored as the handful of prefixes that exactly cover it:
+ * {@code 0350..0729} becomes {@code 035-039, 04-06, 070-072}. That is at most about 18 nodes per
+ * digit of the range. Those prefixes only match numbers as long as the range's bounds, so ranges
+ * go into a separate trie per length and a number is only looked up in the one for its own
+ * length; prefix rules share the trie every number is looked up in. When several rules match, the
+ * longest prefix wins, so an allowed extension range inside a blocked country code still rings.
+ * When an allow and a block rule cover exactly the same prefix, the block wins.
+ */
+public final class NumberRuleTrie {
+
+    public static final int NO_MATCH = 0;
+    public static final int ALLOW = 1;
+    public static final int BLOCK = 2;
+
+    // Digits 0-9, plus '+' which is only accepted as the first character
+    private static final int FANOUT = 11;
+    private static final int PLUS = 10;
+
+    // children[node * FANOUT + symbol], 0 meaning no child (the root is never anyone's child)
+    private int[] children;
+    private byte[] actions;
+    private int nodeCount;
+    private int ruleCount;
+    // Root of the range trie for numbers of each length, 0 if there are no ranges that long
+    private int[] rangeRoots = new int[0];
+
+    private NumberRuleTrie() {
+        children = new int[FANOUT * 16];
+        actions = new byte[16];
+        nodeCount = 1;
+    }
+
+    /**
+     * Builds the trie, skipping rules whose bounds aren't numbers of the same length in order.
+     */
+    public static NumberRuleTrie compile(List<NumberRule> rules) {
+        NumberRuleTrie trie = new NumberRuleTrie();
+        if (rules != null) {
+            for (NumberRule rule : rules) {
+                if (rule != null) {
+                    trie.add(rule);
+                }
+            }
+        }
+        trie.children = Arrays.copyOf(trie.children, trie.nodeCount * FANOUT);
+        trie.actions = Arrays.copyOf(trie.actions, trie.nodeCount);
+        return trie;
+    }
+
+    /**
+     * @return {@link #ALLOW}, {@link #BLOCK} or {@link #NO_MATCH} for the longest matching rule
+     */
+    public int match(String number) {
+        if (number == null) {
+            return NO_MATCH;
+        }
+        int best = walk(0, number);
+        int length = number.length();
+        if (length < rangeRoots.length && rangeRoots[length] != 0 && isPlain(number)) {
+            best = Math.max(best, walk(rangeRoots[length], number));
+        }
+        return best & 3;
+    }
+
+    /**
+     * @return the deepest marked node on the number's path from {@code root}, as its depth plus one
+     * shifted left by two and or-ed with its action, so a larger value is a better match; 0 if none
+     */
+    private int walk(int root, String number) {
+        int node = root;
+        int best = actions[root] != NO_MATCH ? 1 << 2 | actions[root] : 0;
+        for (int i = 0; i < number.length(); i++) {
+            int symbol = symbol(number.charAt(i), i);
+            if (symbol < 0) {
+                break;
+            }
+            node = children[node * FANOUT + symbol];
+            if (node == 0) {
+                break;
+            }
+            if (actions[node] != NO_MATCH) {
+                best = (i + 2) << 2 | actions[node];
+            }
+        }
+        return best;
+    }
+
+    // Only numbers made of digits, with an optional leading '+', can be inside a range
+    private static boolean isPlain(String number) {
+        for (int i = 0; i < number.length(); i++) {
+            if (symbol(number.charAt(i), i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return ruleCount;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    private void add(NumberRule rule) {
+        String from = digitsOf(rule.getFrom());
+        String to = rule.getTo() == null ? from : digitsOf(rule.getTo());
+        if (from == null || to == null || from.length() != to.length()
+                || from.charAt(0) != to.charAt(0) && (from.charAt(0) == '+' || to.charAt(0) == '+')
+                || from.compareTo(to) > 0) {
+            return;
+        }
+        cover(from.equals(to) ? 0 : rangeRoot(from.length()), from, to, 0, rule.isBlock() ? BLOCK : ALLOW);
+        ruleCount++;
+    }
+
+    private int rangeRoot(int length) {
+        if (length >= rangeRoots.length) {
+            rangeRoots = Arrays.copyOf(rangeRoots, length + 1);
+        }
+        if (rangeRoots[length] == 0) {
+            rangeRoots[length] = newNode();
+        }
+        return rangeRoots[length];
+    }
+
+    /**
+     * Marks the smallest set of prefixes covering every string between {@code lo} and {@code hi}
+     * (same length, inclusive) that share the first {@code i} characters, which lead to {@code node}.
+     */
+    private void cover(int node, String lo, String hi, int i, int action) {
+        if (coversAll(lo, hi, i)) {
+            mark(node, action);
+            return;
+        }
+        int first = symbol(lo.charAt(i), i);
+        int last = symbol(hi.charAt(i), i);
+        if (first == last) {
+            cover(child(node, first), lo, hi, i + 1, action);
+            return;
+        }
+        cover(child(node, first), lo, fill(hi, i + 1, '9'), i + 1, action);
+        for (int symbol = first + 1; symbol < last; symbol++) {
+            mark(child(node, symbol), action);
+        }
+        cover(child(node, last), fill(lo, i + 1, '0'), hi, i + 1, action);
+    }
+
+    private static boolean coversAll(String lo, String hi, int i) {
+        for (int j = i; j < lo.length(); j++) {
+            if (lo.charAt(j) != '0' || hi.charAt(j) != '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the first {@code i} characters of {@code s} and replaces the rest with {@code c}.
+     */
+    private static String fill(String s, int i, char c) {
+        char[] chars = s.toCharArray();
+        Arrays.fill(chars, i, chars.length, c);
+        return new String(chars);
+    }
+
+    private void mark(int node, int action) {
+        actions[node] = (byte) Math.max(actions[node], action);
+    }
+
+    private int child(int node, int symbol) {
+        int index = node * FANOUT + symbol;
+        if (children[index] == 0) {
+            int created = newNode();
+            children[index] = created;
+        }
+        return children[index];
+    }
+
+    private int newNode() {
+        if (nodeCount == actions.length) {
+            actions = Arrays.copyOf(actions, nodeCount * 2);
+            children = Arrays.copyOf(children, nodeCount * 2 * FANOUT);
+        }
+        return nodeCount++;
+    }
+
+    private static int symbol(char c, int index) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        return c == '+' && index == 0 ? PLUS : -1;
+    }
+
+    /**
+     * Strips formatting so rules can be written as {@code +972-3-555-0000}.
+     *
+     * @return the digits with an optional leading '+', or null if the rule has other characters
+     */
+    static String digitsOf(String number) {
+        if (number == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sb.append(c);
+            } else if (c == '+' && sb.length() == 0) {
+                sb.append(c);
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')' && c != '.' && c != '/') {
+                return null;
+            }
+        }
+        return sb.length() == 0 || (sb.length() == 1 && sb.charAt(0) == '+') ? null : sb.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.shalev396.offdutycallfilter.core;
+
+/**
+ * Packs a dialable number (digits with an optional leading '+') into a single long.
+ * <p>
+ * Layout: bit 63 is the leading '+', bits 60-62 hold the count of leading zeros (up to 7) and
+ * bits 0-59 hold the remaining digits as a number, which fits up to 18 digits.
+ */
+public final class PhoneNumberCodec {
+
+    /** Encoding of the empty number, also used for numbers that can't be packed. */
+    public static final long UNKNOWN = 0;
+
+    private static final int MAX_LEADING_ZEROS = 7;
+    private static final int MAX_DIGITS = 18;
+    private static final long PLUS_BIT = 1L << 63;
+    private static final int ZEROS_SHIFT = 60;
+    private static final long VALUE_MASK = (1L << ZEROS_SHIFT) - 1;
+
+    private PhoneNumberCodec() {
+    }
+
+    public static long encode(String number) {
+        if (number == null || number.isEmpty()) {
+            return UNKNOWN;
+        }
+        int i = 0;
+        long encoded = 0;
+        if (number.charAt(0) == '+') {
+            encoded = PLUS_BIT;
+            i = 1;
+        }
+        int leadingZeros = 0;
+        while (i < number.length() && number.charAt(i) == '0') {
+            leadingZeros++;
+            i++;
+        }
+        if (leadingZeros > MAX_LEADING_ZEROS || number.length() - i > MAX_DIGITS) {
+            return UNKNOWN;
+        }
+        long value = 0;
+        for (; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return UNKNOWN;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return encoded | ((long) leadingZeros << ZEROS_SHIFT) | value;
+    }
+
+    public static String decode(long encoded) {
+        if (encoded == UNKNOWN) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(20);
+        if ((encoded & PLUS_BIT) != 0) {
+            sb.append('+');
+        }
+        int leadingZeros = (int) ((encoded >>> ZEROS_SHIFT) & MAX_LEADING_ZEROS);
+        for (int i = 0; i < leadingZeros; i++) {
+            sb.append('0');
+        }
+        long value = encoded & VALUE_MASK;
+        if (value != 0) {
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,272 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The part of RFC 5545 RRULE that describes work rotations: {@code FREQ} DAILY, WEEKLY or
+ * MONTHLY, {@code INTERVAL}, {@code BYDAY} (with ordinals such as {@code 1MO} or {@code -1FR}
+ * for MONTHLY), {@code BYMONTHDAY}, {@code COUNT} and {@code UNTIL}. Weeks start on Monday.
+ */
+public final class RecurrenceRule {
+
+    private enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    private static final DateTimeFormatter UNTIL_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final Frequency frequency;
+    private final int interval;
+    // BYDAY as ISO day of week (1 = Monday) and ordinal within the month, 0 meaning every
+    private final int[] byDay;
+    private final int[] byDayOrdinal;
+    private final int[] byMonthDay;
+    private final int count;
+    private final LocalDateTime until;
+
+    private RecurrenceRule(Frequency frequency, int interval, int[] byDay, int[] byDayOrdinal, int[] byMonthDay,
+                           int count, LocalDateTime until) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.byDayOrdinal = byDayOrdinal;
+        this.byMonthDay = byMonthDay;
+        this.count = count;
+        this.until = until;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule is malformed or uses parts outside the subset
+     */
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("Missing rule");
+        }
+        Frequency frequency = null;
+        int interval = 1;
+        int[] byDay = new int[0];
+        int[] byDayOrdinal = new int[0];
+        int[] byMonthDay = new int[0];
+        int count = 0;
+        LocalDateTime until = null;
+        String body = rule.startsWith("RRULE:") ? rule.substring("RRULE:".length()) : rule;
+        try {
+            for (String part : body.split(";")) {
+                int eq = part.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("Malformed part: " + part);
+                }
+                String name = part.substring(0, eq).toUpperCase(Locale.ROOT);
+                String value = part.substring(eq + 1).toUpperCase(Locale.ROOT);
+                switch (name) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(value);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        break;
+                    case "UNTIL":
+                        until = value.length() == 8
+                                ? LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE).atTime(23, 59, 59)
+                                : LocalDateTime.parse(value.endsWith("Z") ? value.substring(0, value.length() - 1) : value,
+                                UNTIL_DATE_TIME);
+                        break;
+                    case "BYDAY": {
+                        String[] days = value.split(",");
+                        byDay = new int[days.length];
+                        byDayOrdinal = new int[days.length];
+                        for (int i = 0; i < days.length; i++) {
+                            String day = days[i];
+                            int code = Arrays.asList(DAY_CODES).indexOf(day.substring(Math.max(0, day.length() - 2)));
+                            if (code < 0) {
+                                throw new IllegalArgumentException("Unknown day: " + day);
+                            }
+                            byDay[i] = code + 1;
+                            byDayOrdinal[i] = day.length() > 2 ? Integer.parseInt(day.substring(0, day.length() - 2)) : 0;
+                        }
+                        break;
+                    }
+                    case "BYMONTHDAY": {
+                        String[] days = value.split(",");
+                        byMonthDay = new int[days.length];
+                        for (int i = 0; i < days.length; i++) {
+                            byMonthDay[i] = Integer.parseInt(days[i]);
+                        }
+                        break;
+                    }
+                    case "WKST":
+                        if (!value.equals("MO")) {
+                            throw new IllegalArgumentException("Only WKST=MO is supported");
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported part: " + name);
+                }
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed rule: " + rule, e);
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("Missing FREQ: " + rule);
+        }
+        if (interval < 1 || count < 0) {
+            throw new IllegalArgumentException("INTERVAL and COUNT must be positive: " + rule);
+        }
+        for (int ordinal : byDayOrdinal) {
+            if (ordinal != 0 && (frequency != Frequency.MONTHLY || ordinal < -5 || ordinal > 5)) {
+                throw new IllegalArgumentException("BYDAY ordinals only work with FREQ=MONTHLY: " + rule);
+            }
+        }
+        for (int day : byMonthDay) {
+            if (day == 0 || day < -31 || day > 31 || frequency != Frequency.MONTHLY) {
+                throw new IllegalArgumentException("BYMONTHDAY must be 1..31 or -31..-1 with FREQ=MONTHLY: " + rule);
+            }
+        }
+        return new RecurrenceRule(frequency, interval, byDay, byDayOrdinal, byMonthDay, count, until);
+    }
+
+    /**
+     * Adds the occurrences starting in {@code [from, to)} to {@code out}, in order. The first
+     * occurrence is {@code start} itself when the rule matches it.
+     */
+    public void expand(LocalDateTime start, LocalDateTime from, LocalDateTime to, List<LocalDateTime> out) {
+        LocalDate first = start.toLocalDate();
+        long period = 0;
+        if (count == 0 && from.isAfter(start)) {
+            // Without COUNT nothing before the horizon matters, so jump straight to it
+            long elapsed = periodsBetween(first, from.toLocalDate());
+            period = Math.max(0, elapsed / interval * interval);
+        }
+        int emitted = 0;
+        List<LocalDate> dates = new ArrayList<>();
+        while (true) {
+            LocalDate periodStart = periodStart(first, period);
+            if (!periodStart.atStartOfDay().isBefore(to)) {
+                return;
+            }
+            dates.clear();
+            candidates(start, periodStart, dates);
+            for (LocalDate date : dates) {
+                LocalDateTime occurrence = date.atTime(start.toLocalTime());
+                if (occurrence.isBefore(start)) {
+                    continue;
+                }
+                if ((until != null && occurrence.isAfter(until)) || (count > 0 && emitted >= count)
+                        || !occurrence.isBefore(to)) {
+                    return;
+                }
+                emitted++;
+                if (!occurrence.isBefore(from)) {
+                    out.add(occurrence);
+                }
+            }
+            period += interval;
+        }
+    }
+
+    private long periodsBetween(LocalDate first, LocalDate date) {
+        switch (frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS.between(first, date);
+            case WEEKLY:
+                return ChronoUnit.WEEKS.between(weekStart(first), weekStart(date));
+            default:
+                return ChronoUnit.MONTHS.between(YearMonth.from(first), YearMonth.from(date));
+        }
+    }
+
+    private LocalDate periodStart(LocalDate first, long period) {
+        switch (frequency) {
+            case DAILY:
+                return first.plusDays(period);
+            case WEEKLY:
+                return weekStart(first).plusWeeks(period);
+            default:
+                return first.withDayOfMonth(1).plusMonths(period);
+        }
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    // The dates in one period that the BY* parts select, sorted
+    private void candidates(LocalDateTime start, LocalDate periodStart, List<LocalDate> dates) {
+        switch (frequency) {
+            case DAILY:
+                if (byDay.length == 0 || contains(byDay, periodStart.getDayOfWeek().getValue())) {
+                    dates.add(periodStart);
+                }
+                return;
+            case WEEKLY:
+                if (byDay.length == 0) {
+                    dates.add(periodStart.plusDays(start.getDayOfWeek().getValue() - 1));
+                    return;
+                }
+                for (int day = 1; day <= 7; day++) {
+                    if (contains(byDay, day)) {
+                        dates.add(periodStart.plusDays(day - 1));
+                    }
+                }
+                return;
+            default:
+                monthlyCandidates(start, YearMonth.from(periodStart), dates);
+        }
+    }
+
+    private void monthlyCandidates(LocalDateTime start, YearMonth month, List<LocalDate> dates) {
+        int length = month.lengthOfMonth();
+        for (int day : byMonthDay) {
+            int dayOfMonth = day > 0 ? day : length + day + 1;
+            if (dayOfMonth >= 1 && dayOfMonth <= length) {
+                dates.add(month.atDay(dayOfMonth)); // Months too short for the day are skipped
+            }
+        }
+        for (int i = 0; i < byDay.length; i++) {
+            DayOfWeek dayOfWeek = DayOfWeek.of(byDay[i]);
+            if (byDayOrdinal[i] == 0) {
+                for (LocalDate date = month.atDay(1).with(TemporalAdjusters.nextOrSame(dayOfWeek));
+                     date.getMonthValue() == month.getMonthValue(); date = date.plusWeeks(1)) {
+                    dates.add(date);
+                }
+            } else {
+                LocalDate date = month.atDay(1).with(TemporalAdjusters.dayOfWeekInMonth(byDayOrdinal[i], dayOfWeek));
+                if (YearMonth.from(date).equals(month)) { // A fifth Monday doesn't exist every month
+                    dates.add(date);
+                }
+            }
+        }
+        if (byMonthDay.length == 0 && byDay.length == 0 && start.getDayOfMonth() <= length) {
+            dates.add(month.atDay(start.getDayOfMonth()));
+        }
+        dates.sort(null);
+        // BYMONTHDAY and BYDAY may select the same date
+        for (int i = dates.size() - 1; i > 0; i--) {
+            if (dates.get(i).equals(dates.get(i - 1))) {
+                dates.remove(i);
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
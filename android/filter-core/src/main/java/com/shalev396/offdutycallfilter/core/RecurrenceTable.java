@@ -0,0 +1,161 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The occurrences of {@link RecurringWindow}s over a rolling horizon, compiled into a
+ * {@link ScheduleExceptionIndex} so screening only ever looks them up.
+ * <p>
+ * Tables are immutable; {@link #update} derives the next one and only expands what changed: a
+ * window that was added or edited, and for the others just the days the horizon moved forward by.
+ */
+public final class RecurrenceTable {
+
+    public static final RecurrenceTable EMPTY = new RecurrenceTable(new HashMap<>(), 0, 0, ScheduleExceptionIndex.EMPTY, 0);
+
+    private final Map<RecurringWindow, Occurrences> occurrences;
+    private final long from;
+    private final long until;
+    private final ScheduleExceptionIndex index;
+    private final int expanded;
+
+    private RecurrenceTable(Map<RecurringWindow, Occurrences> occurrences, long from, long until,
+                            ScheduleExceptionIndex index, int expanded) {
+        this.occurrences = occurrences;
+        this.from = from;
+        this.until = until;
+        this.index = index;
+        this.expanded = expanded;
+    }
+
+    /**
+     * Builds the table for {@code windows} over {@code [from, until)}, reusing the occurrences this
+     * table already holds. Windows with an unparseable start or rule are skipped.
+     */
+    public RecurrenceTable update(List<RecurringWindow> windows, LocalDateTime from, LocalDateTime until) {
+        long fromMinutes = ScheduleExceptionIndex.localMinutes(from);
+        long untilMinutes = ScheduleExceptionIndex.localMinutes(until);
+        Map<RecurringWindow, Occurrences> next = new HashMap<>();
+        int expandedWindows = 0;
+        int total = 0;
+        if (windows != null) {
+            for (RecurringWindow window : windows) {
+                if (window == null || next.containsKey(window)) {
+                    continue;
+                }
+                Occurrences previous = occurrences.get(window);
+                Occurrences current;
+                if (previous != null && this.from <= fromMinutes && fromMinutes <= this.until) {
+                    current = previous.trim(fromMinutes, untilMinutes, window.getDurationMinutes());
+                    if (untilMinutes > this.until) {
+                        current.addAll(expand(window, this.until, untilMinutes));
+                    }
+                } else {
+                    current = expand(window, fromMinutes - window.getDurationMinutes(), untilMinutes);
+                    expandedWindows++;
+                }
+                if (current != null) {
+                    next.put(window, current);
+                    total += current.count;
+                }
+            }
+        }
+
+        long[] starts = new long[total];
+        long[] ends = new long[total];
+        boolean[] allow = new boolean[total];
+        int n = 0;
+        for (Map.Entry<RecurringWindow, Occurrences> entry : next.entrySet()) {
+            Occurrences windowOccurrences = entry.getValue();
+            for (int i = 0; i < windowOccurrences.count; i++) {
+                starts[n] = windowOccurrences.starts[i];
+                ends[n] = windowOccurrences.starts[i] + entry.getKey().getDurationMinutes();
+                allow[n++] = entry.getKey().isAllow();
+            }
+        }
+        return new RecurrenceTable(next, fromMinutes, untilMinutes,
+                ScheduleExceptionIndex.compile(starts, ends, allow, n), expandedWindows);
+    }
+
+    /**
+     * @return the occurrences starting in {@code [fromMinutes, untilMinutes)}, or null if the
+     * window is invalid
+     */
+    private static Occurrences expand(RecurringWindow window, long fromMinutes, long untilMinutes) {
+        if (window.getDurationMinutes() <= 0 || window.getStart() == null) {
+            return null;
+        }
+        LocalDateTime start;
+        RecurrenceRule rule;
+        try {
+            start = LocalDateTime.parse(window.getStart());
+            rule = RecurrenceRule.parse(window.getRule());
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return null;
+        }
+        List<LocalDateTime> found = new ArrayList<>();
+        rule.expand(start, toLocal(fromMinutes), toLocal(untilMinutes), found);
+        Occurrences result = new Occurrences(found.size());
+        for (LocalDateTime occurrence : found) {
+            result.add(ScheduleExceptionIndex.localMinutes(occurrence));
+        }
+        return result;
+    }
+
+    private static LocalDateTime toLocal(long localMinutes) {
+        return LocalDateTime.ofEpochSecond(localMinutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    public ScheduleExceptionIndex getIndex() {
+        return index;
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Recurring windows: " + occurrences.size() + ", " + index.size() + " occurrences until "
+                + toLocal(until) + " (" + expanded + " expanded in full on the last update)");
+    }
+
+    // Occurrence start times of one window in local minutes, ascending
+    private static final class Occurrences {
+        long[] starts;
+        int count;
+
+        Occurrences(int capacity) {
+            starts = new long[Math.max(capacity, 4)];
+        }
+
+        void add(long start) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = start;
+        }
+
+        void addAll(Occurrences other) {
+            if (other != null) {
+                for (int i = 0; i < other.count; i++) {
+                    add(other.starts[i]);
+                }
+            }
+        }
+
+        // A copy holding only the occurrences that overlap [from, until)
+        Occurrences trim(long from, long until, int durationMinutes) {
+            Occurrences trimmed = new Occurrences(count);
+            for (int i = 0; i < count; i++) {
+                if (starts[i] + durationMinutes > from && starts[i] < until) {
+                    trimmed.add(starts[i]);
+                }
+            }
+            return trimmed;
+        }
+    }
+}
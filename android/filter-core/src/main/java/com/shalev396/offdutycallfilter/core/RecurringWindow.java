@@ -0,0 +1,65 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.Objects;
+
+/**
+ * A window that repeats by a recurrence rule, e.g. every other week or the first Monday of the
+ * month. {@code start} is the first occurrence as an ISO local date-time and {@code rule} an
+ * RRULE in the subset {@link RecurrenceRule} understands. "4 on / 4 off" is
+ * {@code FREQ=DAILY;INTERVAL=8} with a four day window.
+ */
+public class RecurringWindow {
+    private final String label;
+    private final String start;
+    private final int durationMinutes;
+    private final String rule;
+    private final boolean allow;
+
+    public RecurringWindow(String label, String start, int durationMinutes, String rule, boolean allow) {
+        this.label = label;
+        this.start = start;
+        this.durationMinutes = durationMinutes;
+        this.rule = rule;
+        this.allow = allow;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getStart() {
+        return start;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public boolean isAllow() {
+        return allow;
+    }
+
+    // Value equality, so an unchanged window keeps its expanded occurrences
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecurringWindow)) {
+            return false;
+        }
+        RecurringWindow other = (RecurringWindow) o;
+        return durationMinutes == other.durationMinutes && allow == other.allow
+                && Objects.equals(label, other.label) && Objects.equals(start, other.start)
+                && Objects.equals(rule, other.rule);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(label, start, durationMinutes, rule, allow);
+    }
+}
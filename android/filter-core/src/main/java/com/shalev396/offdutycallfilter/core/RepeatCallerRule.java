@@ -0,0 +1,59 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Allow if the same number called {@code calls} times within {@code windowMinutes} minutes", for
+ * calls the schedule would otherwise silence. A second call within minutes is often an emergency.
+ */
+public final class RepeatCallerRule {
+
+    public static final RepeatCallerRule OFF = new RepeatCallerRule(0, 0);
+
+    private final int calls;
+    private final int windowMinutes;
+
+    /**
+     * @param calls 2 to {@link RepeatCallerTracker#MAX_CALLS}, or 0 for {@link #OFF}
+     */
+    public RepeatCallerRule(int calls, int windowMinutes) {
+        if (calls != 0 && (calls < 2 || calls > RepeatCallerTracker.MAX_CALLS || windowMinutes <= 0)) {
+            throw new IllegalArgumentException("Unsupported rule: " + calls + " calls in " + windowMinutes + " minutes");
+        }
+        this.calls = calls;
+        this.windowMinutes = windowMinutes;
+    }
+
+    public boolean isEnabled() {
+        return calls > 0;
+    }
+
+    public int getCalls() {
+        return calls;
+    }
+
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    public long getWindowMillis() {
+        return TimeUnit.MINUTES.toMillis(windowMinutes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RepeatCallerRule)) {
+            return false;
+        }
+        RepeatCallerRule other = (RepeatCallerRule) o;
+        return calls == other.calls && windowMinutes == other.windowMinutes;
+    }
+
+    @Override
+    public int hashCode() {
+        return calls * 31 + windowMinutes;
+    }
+}
@@ -0,0 +1,113 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * The last few call times of recently screened numbers, for {@link RepeatCallerRule}.
+ * <p>
+ * An open-addressing table keyed by numbers packed with {@link PhoneNumberCodec}, each slot holding
+ * a ring of up to {@link #MAX_CALLS} call times. A number is looked for in a fixed number of slots
+ * only; if it isn't there it takes an empty one, or the one whose number called least recently. A
+ * robocall flood of one-off numbers therefore costs the same per call as a quiet day, and can only
+ * push out numbers that have gone quiet. Old calls aren't removed, they just stop being counted
+ * once they fall out of the window.
+ */
+public final class RepeatCallerTracker {
+
+    public static final int MAX_CALLS = 8;
+
+    private static final int MAX_PROBES = 8;
+    private static final long EMPTY = PhoneNumberCodec.UNKNOWN;
+
+    private final int mask;
+    private final long[] keys;
+    private final long[] lastCall;
+    private final long[] times; // MAX_CALLS per slot
+    private final byte[] next;
+    private final byte[] count;
+    private int size;
+    private long evictions;
+
+    /**
+     * @param capacity numbers to remember, rounded up to a power of two
+     */
+    public RepeatCallerTracker(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        mask = slots - 1;
+        keys = new long[slots];
+        lastCall = new long[slots];
+        times = new long[slots * MAX_CALLS];
+        next = new byte[slots];
+        count = new byte[slots];
+    }
+
+    /**
+     * Records a call and returns how many calls from the number fell within the window, this one
+     * included. Numbers that can't be packed ({@link PhoneNumberCodec#UNKNOWN}) aren't tracked and
+     * always count 1, so withheld numbers can't add up to a repeat caller.
+     */
+    public synchronized int record(long number, long nowMillis, long windowMillis) {
+        if (number == EMPTY) {
+            return 1;
+        }
+        int slot = slotFor(number);
+        int base = slot * MAX_CALLS;
+        times[base + next[slot]] = nowMillis;
+        next[slot] = (byte) ((next[slot] + 1) % MAX_CALLS);
+        if (count[slot] < MAX_CALLS) {
+            count[slot]++;
+        }
+        lastCall[slot] = nowMillis;
+
+        int calls = 0;
+        long since = nowMillis - windowMillis;
+        for (int i = 0; i < count[slot]; i++) {
+            if (times[base + i] > since) {
+                calls++;
+            }
+        }
+        return calls;
+    }
+
+    // The slot holding the number, claiming one for it if there is none
+    private int slotFor(long number) {
+        int home = (int) ((number * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        int victim = home;
+        long victimLastCall = Long.MAX_VALUE;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (home + i) & mask;
+            if (keys[slot] == number) {
+                return slot;
+            }
+            // Slots are reused in place, so every probe is checked rather than stopping at a gap
+            long last = keys[slot] == EMPTY ? Long.MIN_VALUE : lastCall[slot];
+            if (last < victimLastCall) {
+                victim = slot;
+                victimLastCall = last;
+            }
+        }
+        if (keys[victim] == EMPTY) {
+            size++;
+        } else {
+            evictions++;
+        }
+        keys[victim] = number;
+        next[victim] = 0;
+        count[victim] = 0;
+        return victim;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Repeat callers: " + size + "/" + keys.length + " numbers tracked, " + evictions + " evicted");
+    }
+}
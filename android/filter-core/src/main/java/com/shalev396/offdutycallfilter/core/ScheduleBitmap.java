@@ -0,0 +1,112 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The weekly schedule compiled to one bit per minute (7 x 1440 bits, about 1.3 KB).
+ * Checking whether a minute is allowed is a single bit test.
+ */
+public final class ScheduleBitmap implements ScheduleEvaluator {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private final long[] bits;
+
+    private ScheduleBitmap(long[] bits) {
+        this.bits = bits;
+    }
+
+    public static ScheduleBitmap compile(List<DaySchedule> schedule) {
+        long[] bits = new long[(MINUTES_PER_WEEK + 63) / 64];
+        for (DaySchedule daySchedule : ScheduleNormalizer.normalize(schedule)) {
+            int day = daySchedule.getDayOfWeek();
+            for (TimeWindow window : daySchedule.getWindows()) {
+                for (int minute = window.getStartMinutes(); minute < window.getEndMinutes(); minute++) {
+                    int bit = day * MINUTES_PER_DAY + minute;
+                    bits[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+        return new ScheduleBitmap(bits);
+    }
+
+    @Override
+    public boolean isAllowedAt(int dayOfWeek, int minutes) {
+        int bit = dayOfWeek * MINUTES_PER_DAY + minutes;
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return how many minutes after the given minute the allowed state first flips, or -1 if the
+     * schedule is the same all week
+     */
+    public int minutesUntilChange(int dayOfWeek, int minutes) {
+        int start = dayOfWeek * MINUTES_PER_DAY + minutes;
+        boolean allowed = isAllowedAt(dayOfWeek, minutes);
+        for (int offset = 1; offset < MINUTES_PER_WEEK; ) {
+            int bit = (start + offset) % MINUTES_PER_WEEK;
+            // Look at the rest of this word at once, flipped so the bits we're looking for are set
+            long word = bits[bit >>> 6] >>> bit;
+            if (allowed) {
+                word = ~word;
+            }
+            int span = Math.min(64 - (bit & 63), MINUTES_PER_WEEK - bit);
+            if (span < 64) {
+                word &= (1L << span) - 1;
+            }
+            if (word != 0) {
+                return offset + Long.numberOfTrailingZeros(word);
+            }
+            offset += span;
+        }
+        return -1;
+    }
+
+    /**
+     * @return how many minutes of the week calls are allowed
+     */
+    public int allowedMinutes() {
+        int total = 0;
+        for (long word : bits) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    public String encode() {
+        byte[] bytes = new byte[bits.length * 8];
+        for (int i = 0; i < bits.length; i++) {
+            for (int b = 0; b < 8; b++) {
+                bytes[i * 8 + b] = (byte) (bits[i] >>> (b * 8));
+            }
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * @return the decoded bitmap, or null if {@code encoded} is missing or malformed
+     */
+    public static ScheduleBitmap decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        long[] bits = new long[(MINUTES_PER_WEEK + 63) / 64];
+        if (bytes.length != bits.length * 8) {
+            return null;
+        }
+        for (int i = 0; i < bits.length; i++) {
+            for (int b = 0; b < 8; b++) {
+                bits[i] |= (bytes[i * 8 + b] & 0xFFL) << (b * 8);
+            }
+        }
+        return new ScheduleBitmap(bits);
+    }
+}
@@ -0,0 +1,10 @@
+package com.shalev396.offdutycallfilter.core;
+
+public interface ScheduleEvaluator {
+
+    /**
+     * @param dayOfWeek Sunday = 0, Monday = 1, ...
+     * @param minutes   minutes since midnight
+     */
+    boolean isAllowedAt(int dayOfWeek, int minutes);
+}
@@ -0,0 +1,46 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.time.LocalDate;
+
+/**
+ * Overrides the weekly schedule between two local date-times, e.g. blocking calls for a vacation
+ * or allowing them for a weekend on call. Bounds are ISO local date-times such as
+ * {@code 2026-12-24T00:00}; the end is exclusive.
+ */
+public class ScheduleException {
+    private final String label;
+    private final String start;
+    private final String end;
+    private final boolean allow;
+
+    public ScheduleException(String label, String start, String end, boolean allow) {
+        this.label = label;
+        this.start = start;
+        this.end = end;
+        this.allow = allow;
+    }
+
+    /**
+     * Covers whole days, from the start of {@code first} through the end of {@code last}.
+     */
+    public static ScheduleException allDay(String label, LocalDate first, LocalDate last, boolean allow) {
+        return new ScheduleException(label, first.atStartOfDay().toString(),
+                last.plusDays(1).atStartOfDay().toString(), allow);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getStart() {
+        return start;
+    }
+
+    public String getEnd() {
+        return end;
+    }
+
+    public boolean isAllow() {
+        return allow;
+    }
+}
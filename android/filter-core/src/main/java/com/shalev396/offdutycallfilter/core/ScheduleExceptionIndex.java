@@ -0,0 +1,163 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * {@link ScheduleException}s flattened into disjoint, sorted intervals of local wall-clock minutes,
+ * so a lookup is one binary search however many years of holidays have been added.
+ * <p>
+ * Where exceptions overlap the shortest one wins, so an on-call weekend inside a vacation still
+ * rings. When two of the same length disagree, the block wins.
+ */
+public final class ScheduleExceptionIndex {
+
+    public static final int NO_MATCH = 0;
+    public static final int ALLOW = 1;
+    public static final int BLOCK = 2;
+
+    public static final ScheduleExceptionIndex EMPTY = new ScheduleExceptionIndex(new long[0], new long[0], new boolean[0], 0);
+
+    // Minutes since 1970-01-01T00:00 local time, [starts[i], ends[i]) sorted and non-overlapping
+    private final long[] starts;
+    private final long[] ends;
+    private final boolean[] allowed;
+    private final int exceptionCount;
+
+    private ScheduleExceptionIndex(long[] starts, long[] ends, boolean[] allowed, int exceptionCount) {
+        this.starts = starts;
+        this.ends = ends;
+        this.allowed = allowed;
+        this.exceptionCount = exceptionCount;
+    }
+
+    /**
+     * Builds the index, skipping exceptions whose bounds don't parse or end before they start.
+     */
+    public static ScheduleExceptionIndex compile(List<ScheduleException> exceptions) {
+        if (exceptions == null || exceptions.isEmpty()) {
+            return EMPTY;
+        }
+        int n = 0;
+        long[] from = new long[exceptions.size()];
+        long[] to = new long[exceptions.size()];
+        boolean[] allow = new boolean[exceptions.size()];
+        for (ScheduleException exception : exceptions) {
+            if (exception == null || exception.getStart() == null || exception.getEnd() == null) {
+                continue;
+            }
+            try {
+                from[n] = localMinutes(LocalDateTime.parse(exception.getStart()));
+                to[n] = localMinutes(LocalDateTime.parse(exception.getEnd()));
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (from[n] < to[n]) {
+                allow[n++] = exception.isAllow();
+            }
+        }
+        return compile(from, to, allow, n);
+    }
+
+    /**
+     * Builds the index from already converted intervals, {@code [from[i], to[i])} in local minutes
+     * with {@code from[i] < to[i]}.
+     */
+    public static ScheduleExceptionIndex compile(long[] from, long[] to, boolean[] allow, int n) {
+        if (n == 0) {
+            return EMPTY;
+        }
+        Integer[] byStart = new Integer[n];
+        long[] bounds = new long[n * 2];
+        for (int i = 0; i < n; i++) {
+            byStart[i] = i;
+            bounds[i * 2] = from[i];
+            bounds[i * 2 + 1] = to[i];
+        }
+        Arrays.sort(byStart, (a, b) -> Long.compare(from[a], from[b]));
+        Arrays.sort(bounds);
+
+        // Sweep the bounds keeping the exceptions in force, the winning one on top. Exceptions
+        // that have ended are only dropped once they surface.
+        PriorityQueue<Integer> active = new PriorityQueue<>((a, b) -> {
+            int byLength = Long.compare(to[a] - from[a], to[b] - from[b]);
+            return byLength != 0 ? byLength : Boolean.compare(allow[a], allow[b]);
+        });
+        long[] starts = new long[n * 2];
+        long[] ends = new long[n * 2];
+        boolean[] allowed = new boolean[n * 2];
+        int count = 0;
+        int next = 0;
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            long segmentStart = bounds[i];
+            long segmentEnd = bounds[i + 1];
+            if (segmentStart == segmentEnd) {
+                continue;
+            }
+            while (next < n && from[byStart[next]] <= segmentStart) {
+                active.add(byStart[next++]);
+            }
+            while (!active.isEmpty() && to[active.peek()] <= segmentStart) {
+                active.poll();
+            }
+            if (active.isEmpty()) {
+                continue;
+            }
+            boolean segmentAllowed = allow[active.peek()];
+            if (count > 0 && ends[count - 1] == segmentStart && allowed[count - 1] == segmentAllowed) {
+                ends[count - 1] = segmentEnd;
+            } else {
+                starts[count] = segmentStart;
+                ends[count] = segmentEnd;
+                allowed[count++] = segmentAllowed;
+            }
+        }
+        return new ScheduleExceptionIndex(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count),
+                Arrays.copyOf(allowed, count), n);
+    }
+
+    public static long localMinutes(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * @return {@link #ALLOW}, {@link #BLOCK} or {@link #NO_MATCH} for the given local minute
+     */
+    public int match(long localMinutes) {
+        int i = floor(localMinutes);
+        if (i < 0 || localMinutes >= ends[i]) {
+            return NO_MATCH;
+        }
+        return allowed[i] ? ALLOW : BLOCK;
+    }
+
+    /**
+     * @return the first local minute after {@code localMinutes} at which {@link #match} may
+     * change, or {@link Long#MAX_VALUE} if it never does
+     */
+    public long nextBoundary(long localMinutes) {
+        int i = floor(localMinutes);
+        if (i >= 0 && localMinutes < ends[i]) {
+            return ends[i];
+        }
+        return i + 1 < starts.length ? starts[i + 1] : Long.MAX_VALUE;
+    }
+
+    // Index of the last interval starting at or before the given minute, or -1
+    private int floor(long localMinutes) {
+        int i = Arrays.binarySearch(starts, localMinutes);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public int size() {
+        return exceptionCount;
+    }
+
+    public int intervalCount() {
+        return starts.length;
+    }
+}
@@ -0,0 +1,93 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rewrites a schedule the way the user drew it into sorted, non-overlapping windows that each fit
+ * inside one day. A window whose end is not after its start wraps past midnight, so 22:00-06:00
+ * becomes 22:00-24:00 on its own day and 00:00-06:00 on the next.
+ */
+public final class ScheduleNormalizer {
+
+    private static final int DAYS = 7;
+
+    private ScheduleNormalizer() {
+    }
+
+    public static List<DaySchedule> normalize(List<DaySchedule> schedule) {
+        // Per day: window bounds packed as start << 16 | end so a plain int sort orders them by start
+        int[][] packed = new int[DAYS][];
+        int[] counts = new int[DAYS];
+        boolean[] seen = new boolean[DAYS];
+        if (schedule != null) {
+            for (DaySchedule daySchedule : schedule) {
+                int day = daySchedule.getDayOfWeek();
+                if (day < 0 || day >= DAYS || seen[day]) {
+                    continue; // Screening only ever used the first entry for a day
+                }
+                seen[day] = true;
+                if (daySchedule.getWindows() == null) {
+                    continue;
+                }
+                for (TimeWindow window : daySchedule.getWindows()) {
+                    int start = clamp(window.getStartMinutes());
+                    int end = clamp(window.getEndMinutes());
+                    if (start == end) {
+                        continue;
+                    }
+                    if (start < end) {
+                        add(packed, counts, day, start, end);
+                    } else {
+                        if (start < ScheduleBitmap.MINUTES_PER_DAY) {
+                            add(packed, counts, day, start, ScheduleBitmap.MINUTES_PER_DAY);
+                        }
+                        if (end > 0) {
+                            add(packed, counts, (day + 1) % DAYS, 0, end);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<DaySchedule> normalized = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            if (counts[day] == 0) {
+                continue;
+            }
+            int[] windows = packed[day];
+            Arrays.sort(windows, 0, counts[day]);
+            List<TimeWindow> merged = new ArrayList<>();
+            int start = windows[0] >>> 16;
+            int end = windows[0] & 0xFFFF;
+            for (int i = 1; i < counts[day]; i++) {
+                int nextStart = windows[i] >>> 16;
+                int nextEnd = windows[i] & 0xFFFF;
+                if (nextStart <= end) {
+                    end = Math.max(end, nextEnd); // Overlapping or touching
+                } else {
+                    merged.add(new TimeWindow(start, end));
+                    start = nextStart;
+                    end = nextEnd;
+                }
+            }
+            merged.add(new TimeWindow(start, end));
+            normalized.add(new DaySchedule(day, merged));
+        }
+        return normalized;
+    }
+
+    private static int clamp(int minutes) {
+        return Math.max(0, Math.min(ScheduleBitmap.MINUTES_PER_DAY, minutes));
+    }
+
+    private static void add(int[][] packed, int[] counts, int day, int start, int end) {
+        if (packed[day] == null) {
+            packed[day] = new int[4];
+        } else if (counts[day] == packed[day].length) {
+            packed[day] = Arrays.copyOf(packed[day], counts[day] * 2);
+        }
+        packed[day][counts[day]++] = start << 16 | end;
+    }
+}
@@ -0,0 +1,95 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+
+/**
+ * Whether the schedule allows calls right now and until when, so screening only compares the time
+ * against {@link #getValidUntil()} instead of working out the day and minute for every call.
+ */
+public final class ScheduleState {
+
+    /** {@link #getValidUntil()} of a schedule that is the same all week. */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private final boolean allowed;
+    private final long validFrom;
+    private final long validUntil;
+    private final ZoneId zone;
+
+    ScheduleState(boolean allowed, long validFrom, long validUntil, ZoneId zone) {
+        this.allowed = allowed;
+        this.validFrom = validFrom;
+        this.validUntil = validUntil;
+        this.zone = zone;
+    }
+
+    /**
+     * @param overrides checked in order before the weekly schedule, the first one that covers the
+     *                  current minute decides
+     */
+    public static ScheduleState compute(ScheduleBitmap schedule, ScheduleExceptionIndex[] overrides,
+                                        long nowMillis, ZoneId zone) {
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(zone);
+        long localMinutes = ScheduleExceptionIndex.localMinutes(now.toLocalDateTime());
+        // The state also ends where an override checked earlier starts or ends
+        long untilChange = -1;
+        for (ScheduleExceptionIndex override : overrides) {
+            long boundary = override.nextBoundary(localMinutes);
+            if (boundary != Long.MAX_VALUE) {
+                untilChange = earliest(untilChange, boundary - localMinutes);
+            }
+            int match = override.match(localMinutes);
+            if (match != ScheduleExceptionIndex.NO_MATCH) {
+                return new ScheduleState(match == ScheduleExceptionIndex.ALLOW, nowMillis,
+                        nextChange(now, untilChange), zone);
+            }
+        }
+        int dayOfWeek = now.getDayOfWeek().getValue() % 7; // Sunday = 0, Monday = 1, ...
+        int minutes = now.getHour() * 60 + now.getMinute();
+        boolean allowed = schedule.isAllowedAt(dayOfWeek, minutes);
+        untilChange = earliest(untilChange, schedule.minutesUntilChange(dayOfWeek, minutes));
+        return new ScheduleState(allowed, nowMillis, nextChange(now, untilChange), zone);
+    }
+
+    // Smaller of two distances where -1 means never
+    private static long earliest(long a, long b) {
+        return a < 0 ? b : b < 0 ? a : Math.min(a, b);
+    }
+
+    /**
+     * Converts a wall-clock distance to the next schedule transition into an instant. A DST change
+     * in between ends the state early, so a transition inside a skipped hour is never missed. In a
+     * repeated hour the current offset is kept, the earlier one would be in the past.
+     */
+    private static long nextChange(ZonedDateTime now, long minutesUntilChange) {
+        if (minutesUntilChange < 0) {
+            return FOREVER;
+        }
+        long until = ZonedDateTime.ofLocal(now.toLocalDateTime().truncatedTo(ChronoUnit.MINUTES).plusMinutes(minutesUntilChange),
+                now.getZone(), now.getOffset()).toInstant().toEpochMilli();
+        ZoneOffsetTransition transition = now.getZone().getRules().nextTransition(now.toInstant());
+        if (transition != null) {
+            until = Math.min(until, transition.getInstant().toEpochMilli());
+        }
+        return until;
+    }
+
+    /**
+     * @return false once the time has moved past the state (either way) or the zone has changed
+     */
+    public boolean covers(long nowMillis, ZoneId zone) {
+        return nowMillis >= validFrom && nowMillis < validUntil && this.zone.equals(zone);
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public long getValidUntil() {
+        return validUntil;
+    }
+}
@@ -0,0 +1,82 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The schedule and its overrides compiled for one zone into the UTC instants at which calls switch
+ * between allowed and blocked, months ahead and through any DST changes. Finding the state for a
+ * call is then a binary search over longs with no calendar arithmetic.
+ */
+public final class ScheduleTimeline {
+
+    static final long HORIZON_MILLIS = TimeUnit.DAYS.toMillis(90);
+
+    private final ZoneId zone;
+    // Epoch millis at which each segment starts, starts[0] is the start of the table
+    private final long[] starts;
+    private final boolean[] allowed;
+    // End of the last segment, ScheduleState.FOREVER if it never ends
+    private final long until;
+
+    private ScheduleTimeline(ZoneId zone, long[] starts, boolean[] allowed, long until) {
+        this.zone = zone;
+        this.starts = starts;
+        this.allowed = allowed;
+        this.until = until;
+    }
+
+    /**
+     * Compiles the transitions in {@code zone} from {@code fromMillis} until {@link #HORIZON_MILLIS}
+     * later, or until the schedule stops changing.
+     */
+    public static ScheduleTimeline compile(ScheduleBitmap schedule, ScheduleExceptionIndex[] overrides,
+                                           ZoneId zone, long fromMillis) {
+        long horizon = fromMillis + HORIZON_MILLIS;
+        long[] starts = new long[64];
+        boolean[] allowed = new boolean[64];
+        int count = 0;
+        long time = fromMillis;
+        while (time < horizon) {
+            ScheduleState state = ScheduleState.compute(schedule, overrides, time, zone);
+            // Segments that ScheduleState split at a DST change are joined again
+            if (count == 0 || allowed[count - 1] != state.isAllowed()) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    allowed = Arrays.copyOf(allowed, count * 2);
+                }
+                starts[count] = time;
+                allowed[count++] = state.isAllowed();
+            }
+            if (state.getValidUntil() <= time) {
+                break; // Can't happen, but a table that never grows must not loop forever
+            }
+            time = state.getValidUntil();
+        }
+        return new ScheduleTimeline(zone, Arrays.copyOf(starts, count), Arrays.copyOf(allowed, count),
+                time == ScheduleState.FOREVER ? ScheduleState.FOREVER : Math.min(time, horizon));
+    }
+
+    /**
+     * @return false if the time is outside the table or the table was compiled for another zone
+     */
+    public boolean covers(long nowMillis, ZoneId zone) {
+        return nowMillis >= starts[0] && nowMillis < until && this.zone.equals(zone);
+    }
+
+    /**
+     * @return the state at a time the table {@link #covers}, valid until the next transition
+     */
+    public ScheduleState stateAt(long nowMillis) {
+        int i = Arrays.binarySearch(starts, nowMillis);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return new ScheduleState(allowed[i], starts[i], i + 1 < starts.length ? starts[i + 1] : until, zone);
+    }
+
+    public int transitionCount() {
+        return starts.length - 1;
+    }
+}
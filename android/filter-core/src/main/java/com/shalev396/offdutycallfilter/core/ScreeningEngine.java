@@ -0,0 +1,164 @@
+package com.shalev396.offdutycallfilter.core;
+
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Outcome;
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Stage;
+
+import java.time.Clock;
+
+/**
+ * The decision pipeline for an incoming call: filter switch, whitelist, device contacts (when all
+ * of them may ring), number rules, spam list, then schedule exceptions (holidays, on-call
+ * overrides) and the weekly schedule.
+ * Shared by the screening service and the offline replay tool, which drives it with a fake clock.
+ * Stage latencies and outcomes are recorded in {@link ScreeningStats}. With a {@link DecisionCache}
+ * a repeat caller is answered from the cache until the configuration or the schedule changes.
+ * With a {@link RepeatCallerTracker} a number the schedule blocks is let through once it has called
+ * often enough under the snapshot's {@link RepeatCallerRule}.
+ */
+public final class ScreeningEngine {
+
+    private final NumberNormalizer normalizer;
+    private final Clock clock;
+    private final DecisionCache cache;
+    private final RepeatCallerTracker repeatCallers;
+
+    public ScreeningEngine(NumberNormalizer normalizer, Clock clock) {
+        this(normalizer, clock, null, null);
+    }
+
+    public ScreeningEngine(NumberNormalizer normalizer, Clock clock, DecisionCache cache) {
+        this(normalizer, clock, cache, null);
+    }
+
+    /**
+     * @param cache         remembers decisions for repeat callers, or null to evaluate every call in full
+     * @param repeatCallers counts calls the schedule blocks, or null to never escalate them
+     */
+    public ScreeningEngine(NumberNormalizer normalizer, Clock clock, DecisionCache cache,
+                           RepeatCallerTracker repeatCallers) {
+        this.normalizer = normalizer;
+        this.clock = clock;
+        this.cache = cache;
+        this.repeatCallers = repeatCallers;
+    }
+
+    public Decision screen(FilterSnapshot snapshot, String number) {
+        if (!snapshot.isEnabled()) {
+            return decide(Outcome.ALLOWED_DISABLED, null);
+        }
+
+        long mark = System.nanoTime();
+        // Normalized first, so every way the network formats a caller finds the same cache entry
+        String normalizedNumber = normalizer.normalize(number);
+        mark = ScreeningStats.lap(Stage.NORMALIZE, mark);
+
+        if (cache != null) {
+            Outcome cached = cache.get(normalizedNumber, snapshot.getVersion(), clock.millis());
+            mark = ScreeningStats.lap(Stage.CACHE, mark);
+            if (cached != null) {
+                // A cached schedule block still has to be counted, or a second call could never escalate
+                if (cached == Outcome.BLOCKED && isRepeatCaller(snapshot, normalizedNumber, mark)) {
+                    return decide(Outcome.ALLOWED_REPEAT, normalizedNumber);
+                }
+                return decide(cached, normalizedNumber);
+            }
+        }
+
+        boolean whitelisted = snapshot.isWhitelisted(normalizedNumber);
+        mark = ScreeningStats.lap(Stage.WHITELIST, mark);
+        if (whitelisted) {
+            return remember(snapshot, Outcome.ALLOWED_WHITELIST, normalizedNumber, DecisionCache.NEVER);
+        }
+
+        boolean contact = snapshot.isContact(normalizedNumber);
+        mark = ScreeningStats.lap(Stage.CONTACTS, mark);
+        if (contact) {
+            return remember(snapshot, Outcome.ALLOWED_CONTACT, normalizedNumber, DecisionCache.NEVER);
+        }
+
+        int rule = snapshot.matchRule(normalizedNumber);
+        mark = ScreeningStats.lap(Stage.RULES, mark);
+        if (rule == NumberRuleTrie.ALLOW) {
+            return remember(snapshot, Outcome.ALLOWED_RULE, normalizedNumber, DecisionCache.NEVER);
+        }
+        if (rule == NumberRuleTrie.BLOCK) {
+            return remember(snapshot, Outcome.BLOCKED_RULE, normalizedNumber, DecisionCache.NEVER);
+        }
+
+        boolean spam = snapshot.isSpam(normalizedNumber);
+        mark = ScreeningStats.lap(Stage.SPAM, mark);
+        if (spam) {
+            return remember(snapshot, Outcome.BLOCKED_SPAM, normalizedNumber, DecisionCache.NEVER);
+        }
+
+        ScheduleState state = snapshot.getScheduleState(clock);
+        mark = ScreeningStats.lap(Stage.SCHEDULE, mark);
+        if (state.isAllowed()) {
+            return remember(snapshot, Outcome.ALLOWED_SCHEDULE, normalizedNumber, state.getValidUntil());
+        }
+        if (isRepeatCaller(snapshot, normalizedNumber, mark)) {
+            // Only the block is cached, whether the next call escalates again depends on when it comes
+            if (cache != null) {
+                cache.put(normalizedNumber, snapshot.getVersion(), Outcome.BLOCKED, state.getValidUntil());
+            }
+            return decide(Outcome.ALLOWED_REPEAT, normalizedNumber);
+        }
+        return remember(snapshot, Outcome.BLOCKED, normalizedNumber, state.getValidUntil());
+    }
+
+    private boolean isRepeatCaller(FilterSnapshot snapshot, String normalizedNumber, long mark) {
+        RepeatCallerRule rule = snapshot.getRepeatCallerRule();
+        if (repeatCallers == null || !rule.isEnabled()) {
+            return false;
+        }
+        int calls = repeatCallers.record(PhoneNumberCodec.encode(normalizedNumber), clock.millis(),
+                rule.getWindowMillis());
+        ScreeningStats.lap(Stage.REPEAT, mark);
+        return calls >= rule.getCalls();
+    }
+
+    private Decision remember(FilterSnapshot snapshot, Outcome outcome, String normalizedNumber,
+                              long expiresAt) {
+        if (cache != null) {
+            cache.put(normalizedNumber, snapshot.getVersion(), outcome, expiresAt);
+        }
+        return decide(outcome, normalizedNumber);
+    }
+
+    private Decision decide(Outcome outcome, String normalizedNumber) {
+        ScreeningStats.count(outcome);
+        return new Decision(outcome, normalizedNumber, clock.millis());
+    }
+
+    public static final class Decision {
+
+        private final Outcome outcome;
+        private final String normalizedNumber;
+        private final long timestamp;
+
+        Decision(Outcome outcome, String normalizedNumber, long timestamp) {
+            this.outcome = outcome;
+            this.normalizedNumber = normalizedNumber;
+            this.timestamp = timestamp;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public boolean isBlocked() {
+            return outcome.isBlocked();
+        }
+
+        /**
+         * @return the normalized caller number, or null when the filter was disabled
+         */
+        public String getNormalizedNumber() {
+            return normalizedNumber;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide decision counters and latency histograms for each stage of screening a call.
+ */
+public final class ScreeningStats {
+
+    public enum Stage {
+        CONFIG_LOAD("Config load"),
+        NORMALIZE("Normalize number"),
+        CACHE("Decision cache"),
+        WHITELIST("Whitelist match"),
+        CONTACTS("Contact match"),
+        RULES("Rule match"),
+        SPAM("Spam list"),
+        SCHEDULE("Schedule check"),
+        REPEAT("Repeat caller check"),
+        LOG("Log blocked call"),
+        RESPOND("Respond"),
+        TOTAL("Total");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public enum Outcome {
+        ALLOWED_DISABLED("Allowed, filter disabled", false),
+        ALLOWED_WHITELIST("Allowed by whitelist", false),
+        ALLOWED_CONTACT("Allowed as contact", false),
+        ALLOWED_RULE("Allowed by rule", false),
+        ALLOWED_SCHEDULE("Allowed by schedule", false),
+        ALLOWED_REPEAT("Allowed as repeat caller", false),
+        BLOCKED_RULE("Blocked by rule", true),
+        BLOCKED_SPAM("Blocked as spam", true),
+        BLOCKED("Blocked", true);
+
+        private final String label;
+        private final boolean blocked;
+
+        Outcome(String label, boolean blocked) {
+            this.label = label;
+            this.blocked = blocked;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+    }
+
+    private static final AtomicLongArray outcomes = new AtomicLongArray(Outcome.values().length);
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private ScreeningStats() {
+    }
+
+    public static void count(Outcome outcome) {
+        outcomes.incrementAndGet(outcome.ordinal());
+    }
+
+    public static long get(Outcome outcome) {
+        return outcomes.get(outcome.ordinal());
+    }
+
+    public static long screened() {
+        long total = 0;
+        for (int i = 0; i < outcomes.length(); i++) {
+            total += outcomes.get(i);
+        }
+        return total;
+    }
+
+    public static void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].recordNanos(nanos);
+    }
+
+    /**
+     * Records the time since {@code since} for the stage and returns the current time for the next one.
+     */
+    public static long lap(Stage stage, long since) {
+        long now = System.nanoTime();
+        record(stage, now - since);
+        return now;
+    }
+
+    public static LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public static void reset() {
+        for (int i = 0; i < outcomes.length(); i++) {
+            outcomes.set(i, 0);
+        }
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    public static void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Calls screened: " + screened());
+        for (Outcome outcome : Outcome.values()) {
+            pw.println(prefix + "  " + outcome.getLabel() + ": " + get(outcome));
+        }
+        pw.println(prefix + "Latency (us):");
+        pw.println(prefix + String.format(Locale.US, "  %-18s %8s %8s %8s %8s %8s", "stage", "n", "p50", "p95", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            pw.println(prefix + String.format(Locale.US, "  %-18s %8d %8.1f %8.1f %8.1f %8.1f", stage.getLabel(),
+                    histogram.count(),
+                    histogram.percentileNanos(50) / 1000.0,
+                    histogram.percentileNanos(95) / 1000.0,
+                    histogram.percentileNanos(99) / 1000.0,
+                    histogram.maxNanos() / 1000.0));
+        }
+    }
+}
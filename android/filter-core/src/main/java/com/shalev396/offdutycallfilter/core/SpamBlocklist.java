@@ -0,0 +1,161 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.LongStream;
+
+/**
+ * Read-only view of an imported spam list.
+ * <p>
+ * The file holds the numbers packed by {@link PhoneNumberCodec} as a sorted array of longs, followed
+ * by a Bloom filter over them. The array stays on disk and is memory-mapped; only the Bloom filter
+ * (about 10 bits per number) is copied to the heap, so most callers that aren't listed are
+ * answered without touching the mapped pages. Written by {@link SpamBlocklistImporter}.
+ */
+public final class SpamBlocklist {
+
+    public static final SpamBlocklist EMPTY = new SpamBlocklist(null, LongBuffer.allocate(0), new long[1], 1);
+
+    static final int MAGIC = 0x4F44424C; // "ODBL"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int BLOOM_BITS_PER_KEY = 10;
+    static final int BLOOM_HASHES = 7;
+
+    private final File file;
+    private final LongBuffer keys;
+    private final long[] bloom;
+    private final long bloomBits;
+    private final int bloomHashes;
+
+    private SpamBlocklist(File file, LongBuffer keys, long[] bloom, int bloomHashes) {
+        this.file = file;
+        this.keys = keys;
+        this.bloom = bloom;
+        this.bloomBits = (long) bloom.length * Long.SIZE;
+        this.bloomHashes = bloomHashes;
+    }
+
+    /**
+     * Maps a list written by {@link SpamBlocklistImporter}, or returns {@link #EMPTY} if there is none.
+     */
+    public static SpamBlocklist open(File file) throws IOException {
+        if (!file.exists()) {
+            return EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated spam list header in " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a spam list: " + file);
+            }
+            long count = header.getLong();
+            int hashes = header.getInt();
+            int bloomWords = header.getInt();
+            long keysEnd = HEADER_SIZE + count * Long.BYTES;
+            if (count < 0 || bloomWords <= 0 || keysEnd + (long) bloomWords * Long.BYTES != channel.size()) {
+                throw new IOException("Corrupt spam list: " + file);
+            }
+            if (count * Long.BYTES > Integer.MAX_VALUE) {
+                throw new IOException("Spam list too large to map: " + count + " numbers");
+            }
+
+            // The mapping stays valid after the channel is closed
+            LongBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, count * Long.BYTES).asLongBuffer();
+            ByteBuffer bloomBytes = ByteBuffer.allocate(bloomWords * Long.BYTES);
+            while (bloomBytes.hasRemaining()) {
+                if (channel.read(bloomBytes, keysEnd + bloomBytes.position()) < 0) {
+                    throw new IOException("Truncated spam list: " + file);
+                }
+            }
+            bloomBytes.flip();
+            long[] bloom = new long[bloomWords];
+            bloomBytes.asLongBuffer().get(bloom);
+            return new SpamBlocklist(file, keys, bloom, hashes);
+        }
+    }
+
+    public boolean contains(String normalizedNumber) {
+        long key = PhoneNumberCodec.encode(normalizedNumber);
+        return key != PhoneNumberCodec.UNKNOWN && contains(key);
+    }
+
+    public boolean contains(long key) {
+        if (!mightContain(bloom, bloomBits, bloomHashes, key)) {
+            return false;
+        }
+        int low = 0;
+        int high = keys.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = keys.get(mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the numbers in the list, encoded by {@link PhoneNumberCodec}, ascending
+     */
+    public LongStream keys() {
+        return LongStream.range(0, keys.limit()).map(i -> keys.get((int) i));
+    }
+
+    public long size() {
+        return keys.limit();
+    }
+
+    public void dump(PrintWriter pw, String prefix) {
+        pw.println(prefix + "Spam list: " + size() + " numbers, Bloom filter " + bloom.length * Long.BYTES
+                + " bytes" + (file != null ? " (" + file.length() + " bytes on disk)" : ""));
+    }
+
+    static void add(long[] bloom, long bloomBits, int hashes, long key) {
+        long hash = mix(key);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((hash + i * step) & Long.MAX_VALUE) % bloomBits;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    static boolean mightContain(long[] bloom, long bloomBits, int hashes, long key) {
+        long hash = mix(key);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((hash + i * step) & Long.MAX_VALUE) % bloomBits;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * MurmurHash3 finalizer, spreads the packed digits over all 64 bits.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
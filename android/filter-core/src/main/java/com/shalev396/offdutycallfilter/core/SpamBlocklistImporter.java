@@ -0,0 +1,231 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a {@link SpamBlocklist} file from a text list with one number per line (extra CSV columns
+ * and lines without a number are ignored).
+ * <p>
+ * The input is streamed: numbers are packed into fixed-size chunks that are sorted and spilled to
+ * temporary files, then merged into the final sorted, de-duplicated array. Memory use is bounded by
+ * the chunk size plus the Bloom filter, however long the list is. The result is written next to the
+ * target and renamed over it, so readers see either the old list or the complete new one.
+ */
+public final class SpamBlocklistImporter {
+
+    static final int DEFAULT_CHUNK_KEYS = 1 << 20;
+
+    private final NumberNormalizer normalizer;
+    private final int chunkKeys;
+
+    public SpamBlocklistImporter(NumberNormalizer normalizer) {
+        this(normalizer, DEFAULT_CHUNK_KEYS);
+    }
+
+    SpamBlocklistImporter(NumberNormalizer normalizer, int chunkKeys) {
+        this.normalizer = normalizer;
+        this.chunkKeys = chunkKeys;
+    }
+
+    /**
+     * @return the number of distinct numbers written to {@code target}
+     */
+    public long importTo(BufferedReader in, File target) throws IOException {
+        try {
+            return write(in.lines().mapToLong(this::parse).iterator(), target);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Rewrites a list imported with another normalizer into this one's form. {@code target} may
+     * be the file {@code source} was opened from.
+     *
+     * @return the number of distinct numbers written to {@code target}
+     */
+    public long renormalize(SpamBlocklist source, File target) throws IOException {
+        return write(source.keys()
+                .map(key -> PhoneNumberCodec.encode(normalizer.normalize(PhoneNumberCodec.decode(key))))
+                .iterator(), target);
+    }
+
+    private long write(PrimitiveIterator.OfLong keys, File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        List<File> chunks = new ArrayList<>();
+        File temp = new File(dir, target.getName() + ".tmp");
+        try {
+            long total = spill(keys, dir, target.getName(), chunks);
+            long count = merge(chunks, total, temp);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            for (File chunk : chunks) {
+                chunk.delete();
+            }
+            temp.delete();
+        }
+    }
+
+    /**
+     * Reads all keys into sorted chunk files, skipping {@link PhoneNumberCodec#UNKNOWN}.
+     *
+     * @return the number of keys written across all chunks, duplicates included
+     */
+    private long spill(PrimitiveIterator.OfLong keys, File dir, String name, List<File> chunks) throws IOException {
+        long[] chunk = new long[chunkKeys];
+        int size = 0;
+        long total = 0;
+        while (keys.hasNext()) {
+            long key = keys.nextLong();
+            if (key == PhoneNumberCodec.UNKNOWN) {
+                continue;
+            }
+            chunk[size++] = key;
+            if (size == chunk.length) {
+                chunks.add(writeChunk(chunk, size, new File(dir, name + ".chunk" + chunks.size())));
+                total += size;
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            chunks.add(writeChunk(chunk, size, new File(dir, name + ".chunk" + chunks.size())));
+            total += size;
+        }
+        return total;
+    }
+
+    private long parse(String line) {
+        int end = line.length();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ',' || c == ';' || c == '\t') {
+                end = i;
+                break;
+            }
+            // Skip header rows and comments rather than letting the keypad mapping turn them into digits
+            if (Character.isLetter(c) || c == '#') {
+                return PhoneNumberCodec.UNKNOWN;
+            }
+        }
+        String field = line.substring(0, end).replace("\"", "").trim();
+        if (field.isEmpty()) {
+            return PhoneNumberCodec.UNKNOWN;
+        }
+        return PhoneNumberCodec.encode(normalizer.normalize(field));
+    }
+
+    private static File writeChunk(long[] chunk, int size, File file) throws IOException {
+        Arrays.sort(chunk, 0, size);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(chunk[i]);
+            }
+        }
+        return file;
+    }
+
+    private static long merge(List<File> chunks, long total, File temp) throws IOException {
+        long bloomBitsWanted = Math.max(Long.SIZE, total * SpamBlocklist.BLOOM_BITS_PER_KEY);
+        long bloomWords = (bloomBitsWanted + Long.SIZE - 1) / Long.SIZE;
+        if (bloomWords > Integer.MAX_VALUE) {
+            throw new IOException("Spam list too large: " + total + " numbers");
+        }
+        long[] bloom = new long[(int) bloomWords];
+        long bloomBits = bloomWords * Long.SIZE;
+
+        PriorityQueue<ChunkCursor> queue = new PriorityQueue<>(Math.max(1, chunks.size()),
+                (a, b) -> Long.compare(a.current, b.current));
+        long count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            for (File chunk : chunks) {
+                ChunkCursor cursor = new ChunkCursor(chunk);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            out.write(new byte[SpamBlocklist.HEADER_SIZE]); // Filled in once the count is known
+            boolean first = true;
+            long last = 0;
+            while (!queue.isEmpty()) {
+                ChunkCursor cursor = queue.poll();
+                long key = cursor.current;
+                if (first || key != last) {
+                    out.writeLong(key);
+                    SpamBlocklist.add(bloom, bloomBits, SpamBlocklist.BLOOM_HASHES, key);
+                    count++;
+                    last = key;
+                    first = false;
+                }
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+        } finally {
+            for (ChunkCursor cursor : queue) {
+                cursor.close();
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            file.writeInt(SpamBlocklist.MAGIC);
+            file.writeInt(SpamBlocklist.FORMAT_VERSION);
+            file.writeLong(count);
+            file.writeInt(SpamBlocklist.BLOOM_HASHES);
+            file.writeInt(bloom.length);
+            file.getChannel().force(true);
+        }
+        return count;
+    }
+
+    private static final class ChunkCursor {
+
+        private final DataInputStream in;
+        long current;
+
+        ChunkCursor(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                current = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
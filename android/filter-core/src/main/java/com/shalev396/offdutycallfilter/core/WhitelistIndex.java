@@ -0,0 +1,142 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash index over whitelisted numbers keyed by their trailing digits.
+ * <p>
+ * A loose match ({@link LooseNumberMatcher}, or {@code PhoneNumberUtils.compare} on the device) is
+ * only reported when the last {@link #SUFFIX_DIGITS} digits agree (or, for short codes, when all
+ * digits agree), so two numbers it considers equal always share a suffix key. Lookup hashes the
+ * incoming number once and then runs the matcher on the few entries in that bucket, after an
+ * exact comparison that settles it for entries normalized the same way as the call.
+ */
+public final class WhitelistIndex implements WhitelistMatcher {
+
+    static final int SUFFIX_DIGITS = LooseNumberMatcher.MIN_MATCH;
+    static final long NO_KEY = -1;
+
+    private final NumberMatcher matcher;
+
+    private final String[] numbers;
+    // Open addressing table, 0 marks an empty slot (valid keys are always >= 1)
+    private final long[] keys;
+    private final int[] heads;
+    // Chains entries that share a key, -1 terminated
+    private final int[] next;
+    private final int mask;
+    // Entries with characters we can't key on (pauses, '*', '#', ...), compared one by one
+    private final String[] unindexed;
+
+    public WhitelistIndex(List<WhitelistedContact> whitelist, NumberMatcher matcher) {
+        this.matcher = matcher;
+        List<String> keyed = new ArrayList<>();
+        List<String> rest = new ArrayList<>();
+        if (whitelist != null) {
+            for (WhitelistedContact contact : whitelist) {
+                if (contact == null || contact.getPhoneE164() == null) {
+                    continue;
+                }
+                if (suffixKey(contact.getPhoneE164()) == NO_KEY) {
+                    rest.add(contact.getPhoneE164());
+                } else {
+                    keyed.add(contact.getPhoneE164());
+                }
+            }
+        }
+        numbers = keyed.toArray(new String[0]);
+        unindexed = rest.toArray(new String[0]);
+
+        int capacity = Integer.highestOneBit(Math.max(2, numbers.length * 2) - 1) << 1;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        next = new int[numbers.length];
+        mask = capacity - 1;
+
+        for (int i = 0; i < numbers.length; i++) {
+            long key = suffixKey(numbers[i]);
+            int slot = slotOf(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                heads[slot] = -1;
+            }
+            next[i] = heads[slot];
+            heads[slot] = i;
+        }
+    }
+
+    public int size() {
+        return numbers.length + unindexed.length;
+    }
+
+    @Override
+    public boolean isWhitelisted(String number) {
+        if (number == null) {
+            return false;
+        }
+        long key = suffixKey(number);
+        if (key == NO_KEY) {
+            return scan(numbers, number) || scan(unindexed, number);
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            // Entries stored in the same canonical form as the incoming number match exactly
+            for (int i = heads[slot]; i >= 0; i = next[i]) {
+                if (numbers[i].equals(number)) {
+                    return true;
+                }
+            }
+            for (int i = heads[slot]; i >= 0; i = next[i]) {
+                if (matcher.matches(numbers[i], number)) {
+                    return true;
+                }
+            }
+        }
+        return scan(unindexed, number);
+    }
+
+    private int slotOf(long key) {
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean scan(String[] candidates, String number) {
+        for (String candidate : candidates) {
+            if (matcher.matches(candidate, number)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Packs the last {@link #SUFFIX_DIGITS} digits into a long behind a leading 1, so "0411" and
+     * "411" get different keys. Formatting characters are ignored; a leading '+' is allowed.
+     *
+     * @return the key, or {@link #NO_KEY} if the number has characters we can't key on
+     */
+    static long suffixKey(String number) {
+        long key = 1;
+        int digits = 0;
+        for (int i = number.length() - 1; i >= 0; i--) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits < SUFFIX_DIGITS) {
+                    key = key * 10 + (c - '0');
+                    digits++;
+                }
+            } else if (c == '+') {
+                if (i != 0) {
+                    return NO_KEY;
+                }
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')' && c != '.' && c != '/') {
+                return NO_KEY;
+            }
+        }
+        return digits == 0 ? NO_KEY : key;
+    }
+}
@@ -0,0 +1,9 @@
+package com.shalev396.offdutycallfilter.core;
+
+public interface WhitelistMatcher {
+
+    /**
+     * @param normalizedNumber the caller's number after {@link NumberNormalizer#normalize}
+     */
+    boolean isWhitelisted(String normalizedNumber);
+}
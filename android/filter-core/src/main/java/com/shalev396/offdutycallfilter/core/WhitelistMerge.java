@@ -0,0 +1,94 @@
+package com.shalev396.offdutycallfilter.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges the current members of synced contact groups into the whitelist in one pass.
+ * <p>
+ * Members not yet whitelisted are added; entries an earlier sync added whose number left every
+ * synced group are removed. Entries added by hand are never removed, even when they are also group
+ * members. Both lookups go through a {@link WhitelistIndex}, so a sync costs one probe per entry
+ * and per member however large the group, and numbers written differently ("054..." and
+ * "+97254...") are still recognized as the same.
+ */
+public final class WhitelistMerge {
+
+    private final List<WhitelistedContact> whitelist;
+    private final Set<String> synced;
+    private final int added;
+    private final int removed;
+
+    private WhitelistMerge(List<WhitelistedContact> whitelist, Set<String> synced, int added, int removed) {
+        this.whitelist = whitelist;
+        this.synced = synced;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * @param whitelist        the whitelist as stored; null entries are dropped
+     * @param previouslySynced numbers of the entries earlier syncs added
+     * @param members          the contacts of the synced groups now
+     */
+    public static WhitelistMerge merge(List<WhitelistedContact> whitelist, Set<String> previouslySynced,
+                                       List<WhitelistedContact> members, NumberMatcher matcher) {
+        WhitelistIndex memberIndex = new WhitelistIndex(members, matcher);
+        List<WhitelistedContact> merged = new ArrayList<>(whitelist.size() + members.size());
+        Set<String> synced = new HashSet<>();
+        int removed = 0;
+        for (WhitelistedContact contact : whitelist) {
+            if (contact == null) {
+                continue;
+            }
+            String number = contact.getPhoneE164();
+            if (previouslySynced.contains(number)) {
+                if (!memberIndex.isWhitelisted(number)) {
+                    removed++;
+                    continue;
+                }
+                synced.add(number);
+            }
+            merged.add(contact);
+        }
+
+        WhitelistIndex kept = new WhitelistIndex(merged, matcher);
+        int added = 0;
+        for (WhitelistedContact member : members) {
+            String number = member != null ? member.getPhoneE164() : null;
+            // The same number may be listed under several contacts or groups
+            if (number == null || synced.contains(number) || kept.isWhitelisted(number)) {
+                continue;
+            }
+            merged.add(member);
+            synced.add(number);
+            added++;
+        }
+        return new WhitelistMerge(merged, synced, added, removed);
+    }
+
+    public List<WhitelistedContact> getWhitelist() {
+        return whitelist;
+    }
+
+    /**
+     * @return the numbers of the entries added by syncs, to pass to the next merge
+     */
+    public Set<String> getSynced() {
+        return synced;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public boolean isChanged() {
+        return added > 0 || removed > 0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BlockedCallJournalTest {
+
+    @Test
+    public void unpackableNumbers_roundTripThroughTheSideFile() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            BlockedCallJournal journal = new BlockedCallJournal(dir);
+            journal.append(Arrays.asList(
+                    new BlockedCall("+972541234567", 1),
+                    new BlockedCall("*3232#", 2),
+                    new BlockedCall("+12345678901234567890", 3),
+                    new BlockedCall("", 4)));
+            // A reopened journal finds the side file again
+            journal = new BlockedCallJournal(dir);
+            journal.append(Arrays.asList(new BlockedCall("#31#0541234567", 5)));
+
+            List<BlockedCall> calls = journal.read(0, 10);
+            assertEquals(5, calls.size());
+            assertEquals("#31#0541234567", calls.get(0).getNumber());
+            assertEquals("", calls.get(1).getNumber());
+            assertEquals("+12345678901234567890", calls.get(2).getNumber());
+            assertEquals("*3232#", calls.get(3).getNumber());
+            assertEquals("+972541234567", calls.get(4).getNumber());
+            assertEquals(1, calls.get(4).getTimestamp());
+            journal.clear();
+        } finally {
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void oldestSegments_areDroppedWithTheirSideFiles() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            BlockedCallJournal journal = new BlockedCallJournal(dir);
+            List<BlockedCall> batch = new ArrayList<>();
+            for (int i = 0; i < BlockedCallJournal.MAX_RECORDS + BlockedCallJournal.RECORDS_PER_SEGMENT; i++) {
+                batch.add(new BlockedCall("*" + i, i));
+            }
+            journal.append(batch);
+            assertEquals(BlockedCallJournal.MAX_RECORDS, journal.size());
+            assertEquals(2 * BlockedCallJournal.MAX_SEGMENTS, dir.listFiles().length);
+            List<BlockedCall> oldest = journal.read(BlockedCallJournal.MAX_RECORDS - 1, 1);
+            assertEquals("*" + BlockedCallJournal.RECORDS_PER_SEGMENT, oldest.get(0).getNumber());
+            journal.clear();
+        } finally {
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void readBefore_isntShiftedByNewCalls() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            BlockedCallJournal journal = new BlockedCallJournal(dir);
+            int calls = BlockedCallJournal.RECORDS_PER_SEGMENT + 50;
+            List<BlockedCall> batch = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                batch.add(new BlockedCall("+97254" + (1000000 + i), i));
+            }
+            journal.append(batch);
+
+            List<BlockedCall> shown = new ArrayList<>();
+            long cursor = BlockedCallJournal.NEWEST;
+            for (int page = 0; page < 6; page++) {
+                cursor = journal.readBefore(cursor, 1000, shown);
+                // A call blocked while the log is open doesn't move the pages still to come
+                journal.append(Arrays.asList(new BlockedCall("*3232", calls + page)));
+            }
+            assertEquals(calls, shown.size());
+            for (int i = 0; i < calls; i++) {
+                assertEquals(calls - 1 - i, shown.get(i).getTimestamp());
+            }
+            assertEquals(cursor, journal.readBefore(cursor, 1000, shown));
+            assertEquals(calls, shown.size());
+            journal.clear();
+        } finally {
+            dir.delete();
+        }
+    }
+}
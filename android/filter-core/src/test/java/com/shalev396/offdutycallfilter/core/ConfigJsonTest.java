@@ -0,0 +1,71 @@
+package com.shalev396.offdutycallfilter.core;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConfigJsonTest {
+
+    private final Gson reflective = new Gson();
+    private final Gson adapters = ConfigJson.builder().create();
+
+    @Test
+    public void write_matchesReflectiveGson() {
+        assertSameJson(schedule(), ConfigJson.DAY_SCHEDULES);
+        assertSameJson(Arrays.asList(new WhitelistedContact("Dana <work> & \"home\"", "+972541234567"),
+                new WhitelistedContact(null, "*3232"), null), ConfigJson.WHITELIST);
+        assertSameJson(Arrays.asList(new NumberRule("Office", "+97235550000", "+97235559999", false),
+                NumberRule.prefix(null, "+1900", true)), ConfigJson.NUMBER_RULES);
+        assertSameJson(Collections.singletonList(new ScheduleException("Vacation", "2026-08-01T00:00",
+                "2026-08-15T00:00", false)), ConfigJson.SCHEDULE_EXCEPTIONS);
+        assertSameJson(Collections.singletonList(new RecurringWindow("On call", "2026-03-02T08:00", 5760,
+                "FREQ=DAILY;INTERVAL=8", true)), ConfigJson.RECURRING_WINDOWS);
+        assertSameJson(Collections.singletonList(new BlockedCall("+12125550100", 1767225600000L)),
+                ConfigJson.BLOCKED_CALLS);
+        assertSameJson(new FilterProfile("id-1", "Weekend", schedule(), new ArrayList<>(),
+                Arrays.asList("+972541234567", null)), FilterProfile.class);
+        assertSameJson(new FilterProfile("id-2", "Everyone", null, null, null), FilterProfile.class);
+    }
+
+    @Test
+    public void read_matchesReflectiveGson() {
+        String json = "[{\"dayOfWeek\":1,\"unknown\":{\"a\":[1,2]},\"windows\":[{\"startMinutes\":480,"
+                + "\"endMinutes\":null},null]},{\"windows\":null},null]";
+        List<DaySchedule> expected = reflective.fromJson(json, ConfigJson.DAY_SCHEDULES);
+        List<DaySchedule> actual = adapters.fromJson(json, ConfigJson.DAY_SCHEDULES);
+        assertEquals(reflective.toJson(expected, ConfigJson.DAY_SCHEDULES),
+                adapters.toJson(actual, ConfigJson.DAY_SCHEDULES));
+
+        String profile = reflective.toJson(new FilterProfile("id-1", "Weekend", schedule(), null,
+                Collections.singletonList("+972541234567")));
+        assertEquals(profile, adapters.toJson(adapters.fromJson(profile, FilterProfile.class)));
+        assertNull(adapters.fromJson("null", FilterProfile.class));
+    }
+
+    private void assertSameJson(Object value, Type type) {
+        String expected = reflective.toJson(value, type);
+        assertEquals(expected, adapters.toJson(value, type));
+        assertEquals(expected, adapters.toJson(adapters.fromJson(expected, type), type));
+    }
+
+    private static List<DaySchedule> schedule() {
+        List<DaySchedule> schedule = new ArrayList<>();
+        for (int day = 1; day <= 7; day++) {
+            List<TimeWindow> windows = new ArrayList<>();
+            if (day <= 5) {
+                windows.add(new TimeWindow(8 * 60, 17 * 60));
+                windows.add(new TimeWindow(22 * 60, 26 * 60));
+            }
+            schedule.add(new DaySchedule(day, windows));
+        }
+        return schedule;
+    }
+}
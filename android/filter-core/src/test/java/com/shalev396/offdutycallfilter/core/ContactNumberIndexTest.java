@@ -0,0 +1,59 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContactNumberIndexTest {
+
+    private final NumberMatcher matcher = new LooseNumberMatcher();
+
+    @Test
+    public void sharedSuffix_isNotAContact() {
+        ContactNumberIndex index = new ContactNumberIndex();
+        index.put(1, Collections.singletonList("+972541234567"));
+        ContactNumberSet contacts = index.compile();
+
+        assertTrue(contacts.contains("+972541234567", matcher));
+        assertTrue(contacts.contains("0541234567", matcher));
+        // Same last seven digits, different number
+        assertFalse(contacts.contains("+12125234567", matcher));
+        assertFalse(contacts.contains("+972521234567", matcher));
+    }
+
+    @Test
+    public void put_replacesAContactsNumbers() {
+        ContactNumberIndex index = new ContactNumberIndex();
+        assertTrue(index.put(1, Arrays.asList("+972541234567", "*86", null)));
+        assertFalse(index.put(1, Collections.singletonList("+972541234567")));
+        assertTrue(index.put(2, Collections.singletonList("+972541234567")));
+        assertEquals(1, index.compile().size());
+
+        assertTrue(index.put(1, Collections.emptyList()));
+        assertEquals(1, index.contactCount());
+        assertFalse(index.compile().contains("*86", matcher));
+    }
+
+    @Test
+    public void writeTo_roundTrips() throws Exception {
+        ContactNumberIndex index = new ContactNumberIndex();
+        index.put(7, Arrays.asList("+972541234567", "+12125550100"));
+        index.setSyncedUntil(1767225600000L);
+        File file = File.createTempFile("contacts", ".bin");
+        try {
+            index.writeTo(file);
+            ContactNumberIndex read = ContactNumberIndex.readFrom(file);
+            assertEquals(1767225600000L, read.getSyncedUntil());
+            assertTrue(read.compile().contains("+12125550100", matcher));
+            assertFalse(read.compile().contains("+12125550101", matcher));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.shalev396.offdutycallfilter.core;
+
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Outcome;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DecisionCacheTest {
+
+    @Test
+    public void scheduleDecisions_expireAtTheNextTransition() {
+        DecisionCache cache = new DecisionCache(8);
+        assertNull(cache.get("+972541234567", 1, 0));
+        cache.put("+972541234567", 1, Outcome.BLOCKED, 1000);
+
+        assertEquals(Outcome.BLOCKED, cache.get("+972541234567", 1, 999));
+        assertNull(cache.get("+972541234567", 1, 1000));
+        // Expired entries are dropped, not revived by an earlier clock
+        assertNull(cache.get("+972541234567", 1, 500));
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void newSnapshotVersion_dropsEverything() {
+        DecisionCache cache = new DecisionCache(8);
+        cache.get("a", 1, 0);
+        cache.put("a", 1, Outcome.ALLOWED_WHITELIST, DecisionCache.NEVER);
+        assertNotNull(cache.get("a", 1, Long.MAX_VALUE - 1));
+
+        assertNull(cache.get("a", 2, 0));
+        // Decided under the old version while the new one was being looked up
+        cache.put("a", 1, Outcome.ALLOWED_WHITELIST, DecisionCache.NEVER);
+        assertNull(cache.get("a", 2, 0));
+        cache.put("a", 2, Outcome.BLOCKED_SPAM, DecisionCache.NEVER);
+        assertEquals(Outcome.BLOCKED_SPAM, cache.get("a", 2, 0));
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() {
+        DecisionCache cache = new DecisionCache(2);
+        cache.get("a", 1, 0);
+        cache.put("a", 1, Outcome.BLOCKED, DecisionCache.NEVER);
+        cache.put("b", 1, Outcome.BLOCKED, DecisionCache.NEVER);
+        cache.get("a", 1, 0);
+        cache.put("c", 1, Outcome.BLOCKED, DecisionCache.NEVER);
+
+        assertNotNull(cache.get("a", 1, 0));
+        assertNull(cache.get("b", 1, 0));
+        assertNotNull(cache.get("c", 1, 0));
+
+        cache.clear();
+        assertNull(cache.get("a", 1, 0));
+    }
+}
@@ -0,0 +1,60 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class E164NormalizerTest {
+
+    private static final E164Normalizer IL = E164Normalizer.forRegion("IL");
+    private static final E164Normalizer US = E164Normalizer.forRegion("us");
+
+    @Test
+    public void nationalNumbers_getTheRegionsCountryCode() {
+        assertEquals("+972541234567", IL.normalize("054-123 4567"));
+        assertEquals("+12125550100", US.normalize("(212) 555-0100"));
+        assertEquals("+12125550100", US.normalize("1 212 555 0100"));
+        assertEquals("+34912345678", E164Normalizer.forRegion("ES").normalize("912 34 56 78"));
+    }
+
+    @Test
+    public void internationalForms_agree() {
+        assertEquals("+442079460000", IL.normalize("+44 20 7946 0000"));
+        assertEquals("+442079460000", IL.normalize("00 44 20 7946 0000"));
+        assertEquals("+442079460000", US.normalize("011 44 20 7946 0000"));
+        assertEquals("+442079460000", US.normalize("+44 (0)20 7946 0000"));
+    }
+
+    @Test
+    public void unplacedNumbers_keepTheirDigits() {
+        assertEquals("5551234", US.normalize("555-1234"));
+        assertEquals("*3232", IL.normalize("*3232"));
+        assertEquals("1700500500", IL.normalize("1-700-500-500"));
+        assertEquals("0541234567", E164Normalizer.forRegion("XX").normalize("054-123-4567"));
+        assertEquals("+972541234567", E164Normalizer.forRegion(null).normalize("+972 54 123 4567"));
+    }
+
+    @Test
+    public void prefixes_normalizeLikeNumbers() {
+        assertEquals("+9723555", IL.normalize("03555"));
+        assertEquals("1800", US.normalize("1800"));
+        assertEquals("1212555", US.normalize("1-212-555"));
+    }
+
+    @Test
+    public void variableLengthPlans_onlyPlaceInternationalForms() {
+        E164Normalizer it = E164Normalizer.forRegion("IT");
+        // Italian numbers run from 6 to 11 digits, so none of them is read as national by length
+        assertEquals("3471234567", it.normalize("347 123 4567"));
+        assertEquals("061234", it.normalize("06 1234"));
+        assertEquals("+393471234567", it.normalize("0039 347 123 4567"));
+        assertEquals("+390612345678", it.normalize("+39 06 1234 5678"));
+    }
+
+    @Test
+    public void lettersAndEmpty() {
+        assertEquals("+18003569377", US.normalize("1-800-FLOWERS"));
+        assertEquals("", IL.normalize(""));
+        assertEquals("", IL.normalize(null));
+    }
+}
@@ -0,0 +1,72 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class NumberRuleTrieTest {
+
+    @Test
+    public void range_isCoveredByAFewPrefixes() {
+        NumberRuleTrie trie = NumberRuleTrie.compile(Collections.singletonList(
+                new NumberRule("Extensions", "0350", "0729", true)));
+
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("0350"));
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("0499"));
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("0729"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("0349"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("0730"));
+        // Root, range root, 0, 3, 035-039, 04-06, 7, 070-072
+        assertEquals(16, trie.nodeCount());
+    }
+
+    @Test
+    public void range_onlyMatchesNumbersOfItsLength() {
+        NumberRuleTrie trie = NumberRuleTrie.compile(Collections.singletonList(
+                new NumberRule("Office", "+97235550000", "+97235559999", true)));
+
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("+97235551234"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("+972355500001"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("+9723555000"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("+9723555*234"));
+    }
+
+    @Test
+    public void prefix_matchesEveryLongerNumber() {
+        NumberRuleTrie trie = NumberRuleTrie.compile(Collections.singletonList(
+                NumberRule.prefix("Area", "+9723", true)));
+
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("+9723"));
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("+97235551234"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("+9724"));
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match(null));
+    }
+
+    @Test
+    public void longestMatch_winsAndBlockWinsTies() {
+        NumberRuleTrie trie = NumberRuleTrie.compile(Arrays.asList(
+                NumberRule.prefix("Israel", "+972", true),
+                new NumberRule("Office", "+97235550000", "+97235559999", false),
+                NumberRule.prefix("Mobile", "+97254", false),
+                NumberRule.prefix("Mobile spam", "+97254", true)));
+
+        assertEquals(NumberRuleTrie.ALLOW, trie.match("+97235551234"));
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("+972355512345"));
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("+97231234567"));
+        assertEquals(NumberRuleTrie.BLOCK, trie.match("+972541234567"));
+    }
+
+    @Test
+    public void invalidRules_areSkipped() {
+        NumberRuleTrie trie = NumberRuleTrie.compile(Arrays.asList(
+                new NumberRule("Backwards", "0729", "0350", true),
+                new NumberRule("Uneven", "035", "0729", true),
+                null));
+
+        assertEquals(0, trie.size());
+        assertEquals(NumberRuleTrie.NO_MATCH, trie.match("0500"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecurrenceTableTest {
+
+    // 2026-08-01 is a Saturday
+    private static final RecurringWindow ON_CALL =
+            new RecurringWindow("On call", "2026-08-01T08:00", 600, "FREQ=WEEKLY;BYDAY=SA", true);
+    private static final RecurringWindow NIGHTS =
+            new RecurringWindow("Nights", "2026-08-01T22:00", 600, "FREQ=DAILY", false);
+
+    @Test
+    public void update_onlyExpandsTheDaysTheHorizonMoved() {
+        List<RecurringWindow> windows = Arrays.asList(ON_CALL, NIGHTS);
+        RecurrenceTable first = RecurrenceTable.EMPTY.update(windows, at("2026-08-01T00:00"), at("2026-08-15T00:00"));
+        assertTrue(dump(first).contains("(2 expanded in full"));
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, first.getIndex().match(minutes("2026-08-22T10:00")));
+
+        RecurrenceTable moved = first.update(windows, at("2026-08-08T00:00"), at("2026-08-29T00:00"));
+        assertTrue(dump(moved).contains("(0 expanded in full"));
+        RecurrenceTable full = RecurrenceTable.EMPTY.update(windows, at("2026-08-08T00:00"), at("2026-08-29T00:00"));
+        assertEquals(full.getIndex().size(), moved.getIndex().size());
+        assertEquals(full.getIndex().intervalCount(), moved.getIndex().intervalCount());
+        for (String time : new String[]{"2026-08-01T10:00", "2026-08-08T05:00", "2026-08-08T10:00",
+                "2026-08-12T23:00", "2026-08-22T10:00", "2026-08-28T22:30"}) {
+            assertEquals(time, full.getIndex().match(minutes(time)), moved.getIndex().match(minutes(time)));
+        }
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, moved.getIndex().match(minutes("2026-08-01T10:00")));
+        // The night that started before the horizon still covers its early hours
+        assertEquals(ScheduleExceptionIndex.BLOCK, moved.getIndex().match(minutes("2026-08-08T05:00")));
+        assertEquals(ScheduleExceptionIndex.ALLOW, moved.getIndex().match(minutes("2026-08-22T10:00")));
+    }
+
+    @Test
+    public void update_expandsEditedWindowsInFull() {
+        RecurrenceTable first = RecurrenceTable.EMPTY.update(Arrays.asList(ON_CALL, NIGHTS),
+                at("2026-08-01T00:00"), at("2026-08-15T00:00"));
+        RecurringWindow sundays = new RecurringWindow("On call", "2026-08-01T08:00", 600, "FREQ=WEEKLY;BYDAY=SU", true);
+
+        RecurrenceTable edited = first.update(Arrays.asList(sundays, NIGHTS), at("2026-08-01T00:00"), at("2026-08-15T00:00"));
+        assertTrue(dump(edited).contains("(1 expanded in full"));
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, edited.getIndex().match(minutes("2026-08-08T10:00")));
+        assertEquals(ScheduleExceptionIndex.ALLOW, edited.getIndex().match(minutes("2026-08-09T10:00")));
+
+        // A horizon that jumped past the old one can't reuse anything
+        RecurrenceTable jumped = edited.update(Arrays.asList(sundays, NIGHTS), at("2026-09-01T00:00"), at("2026-09-15T00:00"));
+        assertTrue(dump(jumped).contains("(2 expanded in full"));
+        assertEquals(ScheduleExceptionIndex.ALLOW, jumped.getIndex().match(minutes("2026-09-06T10:00")));
+    }
+
+    @Test
+    public void invalidWindows_areSkipped() {
+        RecurrenceTable table = RecurrenceTable.EMPTY.update(Arrays.asList(
+                new RecurringWindow("No rule", "2026-08-01T08:00", 60, "FREQ=YEARLY", true),
+                new RecurringWindow("No start", "yesterday", 60, "FREQ=DAILY", true),
+                new RecurringWindow("Empty", "2026-08-01T08:00", 0, "FREQ=DAILY", true),
+                null), at("2026-08-01T00:00"), at("2026-08-15T00:00"));
+
+        assertEquals(0, table.getIndex().size());
+    }
+
+    private static LocalDateTime at(String localDateTime) {
+        return LocalDateTime.parse(localDateTime);
+    }
+
+    private static long minutes(String localDateTime) {
+        return ScheduleExceptionIndex.localMinutes(at(localDateTime));
+    }
+
+    private static String dump(RecurrenceTable table) {
+        StringWriter out = new StringWriter();
+        table.dump(new PrintWriter(out), "");
+        return out.toString();
+    }
+}
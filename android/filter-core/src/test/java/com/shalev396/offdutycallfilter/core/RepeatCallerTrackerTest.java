@@ -0,0 +1,75 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RepeatCallerTrackerTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    public void record_countsCallsInsideTheWindow() {
+        RepeatCallerTracker tracker = new RepeatCallerTracker(64);
+        long number = number(1);
+
+        assertEquals(1, tracker.record(number, 0, 5 * MINUTE));
+        assertEquals(2, tracker.record(number, MINUTE, 5 * MINUTE));
+        assertEquals(3, tracker.record(number, 2 * MINUTE, 5 * MINUTE));
+        // The first call is exactly one window old and no longer counts
+        assertEquals(3, tracker.record(number, 5 * MINUTE, 5 * MINUTE));
+        assertEquals(1, tracker.record(number, 20 * MINUTE, 5 * MINUTE));
+        assertEquals(1, tracker.record(number(2), 20 * MINUTE, 5 * MINUTE));
+        assertEquals(2, tracker.size());
+    }
+
+    @Test
+    public void record_keepsOnlyTheLastCalls() {
+        RepeatCallerTracker tracker = new RepeatCallerTracker(64);
+        for (int i = 0; i < RepeatCallerTracker.MAX_CALLS * 2; i++) {
+            assertEquals(Math.min(i + 1, RepeatCallerTracker.MAX_CALLS), tracker.record(number(1), i, MINUTE));
+        }
+    }
+
+    @Test
+    public void unpackableNumbers_neverRepeat() {
+        RepeatCallerTracker tracker = new RepeatCallerTracker(64);
+        assertEquals(1, tracker.record(PhoneNumberCodec.UNKNOWN, 0, MINUTE));
+        assertEquals(1, tracker.record(PhoneNumberCodec.UNKNOWN, 1, MINUTE));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void fullTable_evictsTheLeastRecentCaller() {
+        // Eight slots, all probed for every number
+        RepeatCallerTracker tracker = new RepeatCallerTracker(8);
+        for (int i = 1; i <= 8; i++) {
+            tracker.record(number(i), i * MINUTE, 60 * MINUTE);
+        }
+        assertEquals(8, tracker.size());
+
+        tracker.record(number(9), 10 * MINUTE, 60 * MINUTE);
+        assertEquals(8, tracker.size());
+        assertTrue(dump(tracker).contains("1 evicted"));
+        assertEquals(2, tracker.record(number(8), 11 * MINUTE, 60 * MINUTE));
+        // Number 1 called least recently, so its calls were forgotten
+        assertEquals(1, tracker.record(number(1), 12 * MINUTE, 60 * MINUTE));
+
+        tracker.clear();
+        assertEquals(0, tracker.size());
+    }
+
+    private static long number(int i) {
+        return PhoneNumberCodec.encode("+9725412345" + (10 + i));
+    }
+
+    private static String dump(RepeatCallerTracker tracker) {
+        StringWriter out = new StringWriter();
+        tracker.dump(new PrintWriter(out), "");
+        return out.toString();
+    }
+}
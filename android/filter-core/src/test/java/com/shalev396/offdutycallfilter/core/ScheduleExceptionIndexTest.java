@@ -0,0 +1,73 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScheduleExceptionIndexTest {
+
+    @Test
+    public void shortestException_wins() {
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(Arrays.asList(
+                ScheduleException.allDay("Vacation", LocalDate.of(2026, 8, 1), LocalDate.of(2026, 8, 14), false),
+                ScheduleException.allDay("On call", LocalDate.of(2026, 8, 8), LocalDate.of(2026, 8, 9), true),
+                new ScheduleException("Dentist", "2026-08-08T10:00", "2026-08-08T11:00", false)));
+
+        assertEquals(3, index.size());
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, index.match(at("2026-07-31T23:59")));
+        assertEquals(ScheduleExceptionIndex.BLOCK, index.match(at("2026-08-07T12:00")));
+        assertEquals(ScheduleExceptionIndex.ALLOW, index.match(at("2026-08-08T09:59")));
+        assertEquals(ScheduleExceptionIndex.BLOCK, index.match(at("2026-08-08T10:30")));
+        assertEquals(ScheduleExceptionIndex.ALLOW, index.match(at("2026-08-09T23:59")));
+        assertEquals(ScheduleExceptionIndex.BLOCK, index.match(at("2026-08-10T00:00")));
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, index.match(at("2026-08-15T00:00")));
+        // Block, allow, block, allow, block
+        assertEquals(5, index.intervalCount());
+    }
+
+    @Test
+    public void equalLengths_blockWins() {
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(Arrays.asList(
+                new ScheduleException("Allow", "2026-08-01T10:00", "2026-08-01T12:00", true),
+                new ScheduleException("Block", "2026-08-01T11:00", "2026-08-01T13:00", false)));
+
+        assertEquals(ScheduleExceptionIndex.ALLOW, index.match(at("2026-08-01T10:30")));
+        assertEquals(ScheduleExceptionIndex.BLOCK, index.match(at("2026-08-01T11:30")));
+        assertEquals(ScheduleExceptionIndex.BLOCK, index.match(at("2026-08-01T12:30")));
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, index.match(at("2026-08-01T13:00")));
+    }
+
+    @Test
+    public void nextBoundary_isTheNextIntervalEdge() {
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(Arrays.asList(
+                new ScheduleException("Morning", "2026-08-01T08:00", "2026-08-01T09:00", false),
+                new ScheduleException("Evening", "2026-08-01T18:00", "2026-08-01T19:00", false)));
+
+        assertEquals(at("2026-08-01T08:00"), index.nextBoundary(at("2026-08-01T07:00")));
+        assertEquals(at("2026-08-01T09:00"), index.nextBoundary(at("2026-08-01T08:00")));
+        assertEquals(at("2026-08-01T18:00"), index.nextBoundary(at("2026-08-01T12:00")));
+        assertEquals(Long.MAX_VALUE, index.nextBoundary(at("2026-08-01T19:00")));
+    }
+
+    @Test
+    public void invalidExceptions_areSkipped() {
+        ScheduleExceptionIndex index = ScheduleExceptionIndex.compile(Arrays.asList(
+                new ScheduleException("Backwards", "2026-08-02T00:00", "2026-08-01T00:00", false),
+                new ScheduleException("Garbled", "tomorrow", "2026-08-01T00:00", false),
+                new ScheduleException("Open", "2026-08-01T00:00", null, false),
+                null));
+
+        assertEquals(0, index.size());
+        assertEquals(ScheduleExceptionIndex.NO_MATCH, index.match(at("2026-08-01T12:00")));
+        assertEquals(ScheduleExceptionIndex.EMPTY, ScheduleExceptionIndex.compile(Collections.emptyList()));
+    }
+
+    private static long at(String localDateTime) {
+        return ScheduleExceptionIndex.localMinutes(LocalDateTime.parse(localDateTime));
+    }
+}
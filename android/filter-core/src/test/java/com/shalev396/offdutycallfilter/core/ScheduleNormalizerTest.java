@@ -0,0 +1,82 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScheduleNormalizerTest {
+
+    private static final int MONDAY = 1;
+    private static final int SATURDAY = 6;
+
+    @Test
+    public void overnightWindow_isSplitAtMidnight() {
+        List<DaySchedule> schedule = ScheduleNormalizer.normalize(Collections.singletonList(
+                day(MONDAY, window(22, 0, 6, 0))));
+
+        assertEquals("1 22:00-24:00; 2 00:00-06:00", describe(schedule));
+    }
+
+    @Test
+    public void overlappingAndTouchingWindows_areMerged() {
+        List<DaySchedule> schedule = ScheduleNormalizer.normalize(Collections.singletonList(
+                day(MONDAY, window(13, 0, 17, 0), window(9, 0, 12, 0), window(11, 0, 13, 0), window(18, 0, 19, 0))));
+
+        assertEquals("1 09:00-17:00 18:00-19:00", describe(schedule));
+    }
+
+    @Test
+    public void saturdayNight_wrapsToSunday() {
+        List<DaySchedule> schedule = ScheduleNormalizer.normalize(Arrays.asList(
+                day(SATURDAY, window(23, 0, 2, 0)),
+                day(0, window(1, 0, 8, 0))));
+
+        // Sunday's own window merges with the part carried over from Saturday
+        assertEquals("0 00:00-08:00; 6 23:00-24:00", describe(schedule));
+    }
+
+    @Test
+    public void duplicateDays_keepTheFirstEntry() {
+        List<DaySchedule> schedule = ScheduleNormalizer.normalize(Arrays.asList(
+                day(MONDAY, window(9, 0, 17, 0)),
+                day(MONDAY, window(0, 0, 23, 0)),
+                day(7, window(9, 0, 17, 0)),
+                new DaySchedule(2, null),
+                day(3, window(10, 0, 10, 0))));
+
+        assertEquals("1 09:00-17:00", describe(schedule));
+        assertEquals("", describe(ScheduleNormalizer.normalize(null)));
+    }
+
+    private static DaySchedule day(int dayOfWeek, TimeWindow... windows) {
+        return new DaySchedule(dayOfWeek, Arrays.asList(windows));
+    }
+
+    private static TimeWindow window(int startHour, int startMinute, int endHour, int endMinute) {
+        return new TimeWindow(startHour * 60 + startMinute, endHour * 60 + endMinute);
+    }
+
+    // "day start-end start-end; day ..." in the order the normalizer returned the days
+    private static String describe(List<DaySchedule> schedule) {
+        StringBuilder sb = new StringBuilder();
+        for (DaySchedule day : schedule) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(day.getDayOfWeek());
+            for (TimeWindow window : day.getWindows()) {
+                sb.append(' ').append(time(window.getStartMinutes())).append('-').append(time(window.getEndMinutes()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String time(int minutes) {
+        return String.format(Locale.ROOT, "%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,177 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduleTimelineTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final ZoneId TOKYO = ZoneId.of("Asia/Tokyo");
+
+    @Test
+    public void scheduleZone_winsOverDeviceZone() {
+        FakeClock clock = new FakeClock("2026-03-02T03:00:00Z", TOKYO); // Monday 04:00 in Berlin
+        FilterSnapshot snapshot = snapshot(businessHours()).withScheduleZone(BERLIN);
+
+        assertState(snapshot, clock, false, "2026-03-02T08:00:00Z");
+        clock.set("2026-03-02T08:00:00Z");
+        assertState(snapshot, clock, true, "2026-03-02T16:00:00Z");
+    }
+
+    @Test
+    public void noScheduleZone_followsDeviceZone() {
+        FilterSnapshot snapshot = snapshot(businessHours());
+
+        // 09:00 on Monday in Berlin, 17:00 in Tokyo
+        assertTrue(snapshot.getScheduleState(new FakeClock("2026-03-02T08:00:00Z", BERLIN)).isAllowed());
+        assertFalse(snapshot.getScheduleState(new FakeClock("2026-03-02T08:00:00Z", TOKYO)).isAllowed());
+    }
+
+    @Test
+    public void springForward_shiftsWorkingHoursInUtc() {
+        FakeClock clock = new FakeClock("2026-03-27T07:30:00Z", TOKYO); // Friday 08:30 CET
+        FilterSnapshot snapshot = snapshot(businessHours()).withScheduleZone(BERLIN);
+
+        assertState(snapshot, clock, false, "2026-03-27T08:00:00Z");
+        // Sunday 2026-03-29 moves to CEST, Monday starts an hour earlier in UTC
+        clock.set("2026-03-30T06:30:00Z");
+        assertState(snapshot, clock, false, "2026-03-30T07:00:00Z");
+        clock.set("2026-03-30T07:00:00Z");
+        assertState(snapshot, clock, true, "2026-03-30T15:00:00Z");
+    }
+
+    @Test
+    public void springForward_windowInSkippedHourOpensAfterGap() {
+        // Sunday 02:30 to 04:00, but on 2026-03-29 02:00 jumps straight to 03:00
+        FilterSnapshot snapshot = snapshot(day(0, new TimeWindow(150, 240))).withScheduleZone(BERLIN);
+        FakeClock clock = new FakeClock("2026-03-29T00:30:00Z", TOKYO);
+
+        assertState(snapshot, clock, false, "2026-03-29T01:00:00Z");
+        clock.set("2026-03-29T01:00:00Z");
+        assertState(snapshot, clock, true, "2026-03-29T02:00:00Z");
+    }
+
+    @Test
+    public void fallBack_windowInRepeatedHourAppliesTwice() {
+        // Sunday 02:30 to 03:00, which happens once in CEST and once in CET on 2026-10-25
+        FilterSnapshot snapshot = snapshot(day(0, new TimeWindow(150, 180))).withScheduleZone(BERLIN);
+        FakeClock clock = new FakeClock("2026-10-25T00:30:00Z", TOKYO);
+
+        assertState(snapshot, clock, true, "2026-10-25T01:00:00Z");
+        clock.set("2026-10-25T01:00:00Z");
+        assertState(snapshot, clock, false, "2026-10-25T01:30:00Z");
+        clock.set("2026-10-25T01:30:00Z");
+        assertState(snapshot, clock, true, "2026-10-25T02:00:00Z");
+        clock.set("2026-10-25T02:00:00Z");
+        assertFalse(snapshot.getScheduleState(clock).isAllowed());
+    }
+
+    @Test
+    public void compile_matchesDirectEvaluationThroughDstChanges() {
+        ScheduleBitmap schedule = ScheduleBitmap.compile(businessHours());
+        ScheduleExceptionIndex[] overrides = {ScheduleExceptionIndex.EMPTY};
+        long from = Instant.parse("2026-03-20T00:00:00Z").toEpochMilli();
+        ScheduleTimeline timeline = ScheduleTimeline.compile(schedule, overrides, BERLIN, from);
+
+        // 10 working days and the weekend between them, each opening and closing once
+        assertTrue(timeline.transitionCount() >= 40);
+        for (long now = from; now < from + 45L * 24 * 60 * 60 * 1000; now += 7 * 60 * 1000) {
+            ScheduleState state = timeline.stateAt(now);
+            assertEquals(ScheduleState.compute(schedule, overrides, now, BERLIN).isAllowed(), state.isAllowed());
+            assertTrue(state.getValidUntil() > now);
+        }
+    }
+
+    @Test
+    public void pastHorizon_timelineIsRecompiled() {
+        FilterSnapshot snapshot = snapshot(businessHours()).withScheduleZone(BERLIN);
+        FakeClock clock = new FakeClock("2026-01-05T08:00:00Z", TOKYO); // Monday 09:00 CET
+
+        assertTrue(snapshot.getScheduleState(clock).isAllowed());
+        clock.set("2026-07-06T07:00:00Z"); // Monday 09:00 CEST, well past the first table
+        assertState(snapshot, clock, true, "2026-07-06T15:00:00Z");
+    }
+
+    @Test
+    public void unchangingSchedule_isValidForever() {
+        ScheduleTimeline timeline = ScheduleTimeline.compile(ScheduleBitmap.compile(Collections.emptyList()),
+                new ScheduleExceptionIndex[]{ScheduleExceptionIndex.EMPTY}, BERLIN, 0);
+
+        assertEquals(0, timeline.transitionCount());
+        assertEquals(ScheduleState.FOREVER, timeline.stateAt(Long.MAX_VALUE - 1).getValidUntil());
+    }
+
+    private static void assertState(FilterSnapshot snapshot, Clock clock, boolean allowed, String until) {
+        ScheduleState state = snapshot.getScheduleState(clock);
+        assertEquals(allowed, state.isAllowed());
+        assertEquals(Instant.parse(until).toEpochMilli(), state.getValidUntil());
+    }
+
+    private static FilterSnapshot snapshot(List<DaySchedule> schedule) {
+        return FilterSnapshot.compile(true, null, new ArrayList<>(), null, new ArrayList<>(), null, null,
+                ScheduleBitmap.compile(schedule), null);
+    }
+
+    // Monday to Friday, 09:00 to 17:00
+    private static List<DaySchedule> businessHours() {
+        List<DaySchedule> schedule = new ArrayList<>();
+        for (int day = 1; day <= 5; day++) {
+            schedule.addAll(day(day, new TimeWindow(9 * 60, 17 * 60)));
+        }
+        return schedule;
+    }
+
+    private static List<DaySchedule> day(int dayOfWeek, TimeWindow window) {
+        List<TimeWindow> windows = new ArrayList<>();
+        windows.add(window);
+        List<DaySchedule> schedule = new ArrayList<>();
+        schedule.add(new DaySchedule(dayOfWeek, windows));
+        return schedule;
+    }
+
+    private static final class FakeClock extends Clock {
+        private final ZoneId zone;
+        private long millis;
+
+        FakeClock(String instant, ZoneId zone) {
+            this.zone = zone;
+            set(instant);
+        }
+
+        void set(String instant) {
+            millis = Instant.parse(instant).toEpochMilli();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            FakeClock clock = new FakeClock("1970-01-01T00:00:00Z", zone);
+            clock.millis = millis;
+            return clock;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpamBlocklistTest {
+
+    private static final E164Normalizer IL = E164Normalizer.forRegion("IL");
+
+    @Test
+    public void import_mergesChunksAndDropsDuplicates() throws Exception {
+        File dir = Files.createTempDirectory("spam").toFile();
+        File file = new File(dir, "spam.bin");
+        try {
+            String list = "number,reports\n"
+                    + "# exported list\n"
+                    + "054-123-4567,12\n"
+                    + "+972541234567,3\n"
+                    + "\"+12125550100\";1\n"
+                    + "\n"
+                    + "03-555-1234\t7\n"
+                    + "0541234567\n"
+                    + "+12125550100\n"
+                    + "+442079460000\n";
+            // Chunks of two keys, so the merge sees duplicates coming from different chunks
+            long count = new SpamBlocklistImporter(IL, 2).importTo(new BufferedReader(new StringReader(list)), file);
+            assertEquals(4, count);
+            assertFalse(new File(dir, "spam.bin.chunk0").exists());
+            assertFalse(new File(dir, "spam.bin.tmp").exists());
+
+            SpamBlocklist spam = SpamBlocklist.open(file);
+            assertEquals(4, spam.size());
+            long[] keys = spam.keys().toArray();
+            for (int i = 1; i < keys.length; i++) {
+                assertTrue(keys[i - 1] < keys[i]);
+            }
+            assertTrue(spam.contains("+972541234567"));
+            assertTrue(spam.contains("+97235551234"));
+            assertTrue(spam.contains("+12125550100"));
+            assertTrue(spam.contains("+442079460000"));
+            assertFalse(spam.contains("+972541234568"));
+            assertFalse(spam.contains("0541234567"));
+            assertFalse(spam.contains("*3232"));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void renormalize_rewritesTheOpenFile() throws Exception {
+        File dir = Files.createTempDirectory("spam").toFile();
+        File file = new File(dir, "spam.bin");
+        try {
+            String list = "054-123-4567\n+972541234567\n03-555-1234\n";
+            new SpamBlocklistImporter(new DigitNumberNormalizer()).importTo(new BufferedReader(new StringReader(list)), file);
+            SpamBlocklist digits = SpamBlocklist.open(file);
+            assertEquals(3, digits.size());
+            assertTrue(digits.contains("0541234567"));
+
+            assertEquals(2, new SpamBlocklistImporter(IL).renormalize(digits, file));
+            SpamBlocklist e164 = SpamBlocklist.open(file);
+            assertTrue(e164.contains("+972541234567"));
+            assertTrue(e164.contains("+97235551234"));
+            assertFalse(e164.contains("0541234567"));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void missingFile_isEmpty() throws Exception {
+        SpamBlocklist spam = SpamBlocklist.open(new File("does-not-exist.bin"));
+        assertEquals(0, spam.size());
+        assertFalse(spam.contains("+972541234567"));
+        assertFalse(SpamBlocklist.EMPTY.contains(PhoneNumberCodec.encode("+972541234567")));
+    }
+
+    @Test
+    public void bloomFilter_hasNoFalseNegativesAndFewFalsePositives() {
+        int keys = 10000;
+        long bloomBits = keys * SpamBlocklist.BLOOM_BITS_PER_KEY;
+        long[] bloom = new long[(int) (bloomBits / Long.SIZE) + 1];
+        bloomBits = (long) bloom.length * Long.SIZE;
+        for (int i = 0; i < keys; i++) {
+            SpamBlocklist.add(bloom, bloomBits, SpamBlocklist.BLOOM_HASHES, PhoneNumberCodec.encode("+97254" + (1000000 + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < keys; i++) {
+            assertTrue(SpamBlocklist.mightContain(bloom, bloomBits, SpamBlocklist.BLOOM_HASHES,
+                    PhoneNumberCodec.encode("+97254" + (1000000 + i))));
+            if (SpamBlocklist.mightContain(bloom, bloomBits, SpamBlocklist.BLOOM_HASHES,
+                    PhoneNumberCodec.encode("+97252" + (1000000 + i)))) {
+                falsePositives++;
+            }
+        }
+        // About 1% at 10 bits and 7 hashes per key
+        assertTrue("false positives: " + falsePositives, falsePositives < keys / 50);
+    }
+}
@@ -0,0 +1,65 @@
+package com.shalev396.offdutycallfilter.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WhitelistIndexTest {
+
+    private final NumberMatcher matcher = new LooseNumberMatcher();
+
+    @Test
+    public void looseMatches_findTheEntry() {
+        WhitelistIndex index = new WhitelistIndex(Collections.singletonList(
+                new WhitelistedContact("Dana", "+972541234567")), matcher);
+
+        assertTrue(index.isWhitelisted("+972541234567"));
+        assertTrue(index.isWhitelisted("0541234567"));
+        assertTrue(index.isWhitelisted("00972541234567"));
+        assertFalse(index.isWhitelisted("+12121234567"));
+        assertFalse(index.isWhitelisted("+972541234568"));
+        assertFalse(index.isWhitelisted(null));
+    }
+
+    @Test
+    public void sharedSuffix_checksEveryEntryInTheBucket() {
+        WhitelistIndex index = new WhitelistIndex(Arrays.asList(
+                new WhitelistedContact("US", "+12121234567"),
+                new WhitelistedContact("IL", "+972541234567")), matcher);
+
+        assertTrue(index.isWhitelisted("0541234567"));
+        assertTrue(index.isWhitelisted("+12121234567"));
+        assertFalse(index.isWhitelisted("+442071234567"));
+    }
+
+    @Test
+    public void shortCodes_matchOnlyInFull() {
+        WhitelistIndex index = new WhitelistIndex(Arrays.asList(
+                new WhitelistedContact("Pharmacy", "*3232"),
+                new WhitelistedContact("Info", "411"),
+                null,
+                new WhitelistedContact("Nobody", null)), matcher);
+
+        assertEquals(2, index.size());
+        assertTrue(index.isWhitelisted("*3232"));
+        assertFalse(index.isWhitelisted("*3233"));
+        assertTrue(index.isWhitelisted("411"));
+        assertFalse(index.isWhitelisted("0411"));
+    }
+
+    @Test
+    public void looseMatcher_acceptsOnlyPrefixesLeftOver() {
+        assertTrue(matcher.matches("+972541234567", "0541234567"));
+        assertTrue(matcher.matches("054-123-4567", "+972 54 123 4567"));
+        assertTrue(matcher.matches("1234567", "+972541234567"));
+        assertFalse(matcher.matches("+972541234567", "+12541234567"));
+        assertFalse(matcher.matches("123456", "0123456"));
+        assertTrue(matcher.matches(null, null));
+        assertFalse(matcher.matches("", ""));
+    }
+}
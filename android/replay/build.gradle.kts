@@ -0,0 +1,17 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":filter-core"))
+}
+
+application {
+    mainClass = "com.shalev396.offdutycallfilter.replay.ReplayMain"
+    applicationDefaultJvmArgs = listOf("-Xmx2g")
+}
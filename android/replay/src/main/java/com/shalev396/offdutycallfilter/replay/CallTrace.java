@@ -0,0 +1,26 @@
+package com.shalev396.offdutycallfilter.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Cursor over (timestamp, number) call events, read one at a time so traces of any length stream
+ * through without being held in memory.
+ */
+interface CallTrace extends Closeable {
+
+    /**
+     * Advances to the next event.
+     *
+     * @return false once the trace is exhausted
+     */
+    boolean next() throws IOException;
+
+    long timestamp();
+
+    String number();
+
+    @Override
+    default void close() throws IOException {
+    }
+}
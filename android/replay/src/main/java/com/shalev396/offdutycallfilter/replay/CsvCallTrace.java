@@ -0,0 +1,76 @@
+package com.shalev396.offdutycallfilter.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Recorded trace with one {@code epochMillis,number} event per line. Blank lines and lines starting
+ * with '#' are skipped.
+ */
+final class CsvCallTrace implements CallTrace {
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private long timestamp;
+    private String number;
+
+    CsvCallTrace(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int comma = line.indexOf(',');
+            if (comma < 0) {
+                throw new IOException("Line " + lineNumber + ": expected epochMillis,number");
+            }
+            try {
+                timestamp = Long.parseLong(line.substring(0, comma).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": bad timestamp", e);
+            }
+            number = line.substring(comma + 1).trim();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String number() {
+        return number;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Drains {@code trace} into {@code out} in the format this class reads.
+     *
+     * @return the number of events written
+     */
+    static long write(CallTrace trace, Writer out) throws IOException {
+        long count = 0;
+        StringBuilder sb = new StringBuilder(32);
+        while (trace.next()) {
+            sb.setLength(0);
+            sb.append(trace.timestamp()).append(',').append(trace.number()).append('\n');
+            out.append(sb);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,44 @@
+package com.shalev396.offdutycallfilter.replay;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Clock that only moves when the replay sets it to the next event's timestamp, so schedule
+ * boundaries and DST transitions are hit at exactly the same calls on every run.
+ */
+final class ReplayClock extends Clock {
+
+    private final ZoneId zone;
+    private long millis;
+
+    ReplayClock(ZoneId zone, long millis) {
+        this.zone = zone;
+        this.millis = millis;
+    }
+
+    void set(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new ReplayClock(zone, millis);
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+}
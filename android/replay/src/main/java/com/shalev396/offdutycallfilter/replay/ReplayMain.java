@@ -0,0 +1,367 @@
+package com.shalev396.offdutycallfilter.replay;
+
+import com.shalev396.offdutycallfilter.core.ContactNumberIndex;
+import com.shalev396.offdutycallfilter.core.ContactNumberSet;
+import com.shalev396.offdutycallfilter.core.DaySchedule;
+import com.shalev396.offdutycallfilter.core.DecisionCache;
+import com.shalev396.offdutycallfilter.core.DigitNumberNormalizer;
+import com.shalev396.offdutycallfilter.core.E164Normalizer;
+import com.shalev396.offdutycallfilter.core.FilterSnapshot;
+import com.shalev396.offdutycallfilter.core.LatencyHistogram;
+import com.shalev396.offdutycallfilter.core.LooseNumberMatcher;
+import com.shalev396.offdutycallfilter.core.NumberNormalizer;
+import com.shalev396.offdutycallfilter.core.NumberRule;
+import com.shalev396.offdutycallfilter.core.RecurrenceTable;
+import com.shalev396.offdutycallfilter.core.RecurringWindow;
+import com.shalev396.offdutycallfilter.core.RepeatCallerRule;
+import com.shalev396.offdutycallfilter.core.RepeatCallerTracker;
+import com.shalev396.offdutycallfilter.core.ScheduleBitmap;
+import com.shalev396.offdutycallfilter.core.ScheduleException;
+import com.shalev396.offdutycallfilter.core.ScreeningEngine;
+import com.shalev396.offdutycallfilter.core.ScreeningStats;
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Outcome;
+import com.shalev396.offdutycallfilter.core.ScreeningStats.Stage;
+import com.shalev396.offdutycallfilter.core.SpamBlocklist;
+import com.shalev396.offdutycallfilter.core.SpamBlocklistImporter;
+import com.shalev396.offdutycallfilter.core.TimeWindow;
+import com.shalev396.offdutycallfilter.core.WhitelistedContact;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Streams a call trace through {@link ScreeningEngine} with a {@link ReplayClock} and reports
+ * decision counts, per-stage and per-decision latency and throughput.
+ */
+public final class ReplayMain {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: replay [options]",
+            "  --trace FILE            replay a recorded trace (epochMillis,number per line)",
+            "  --write-trace FILE      write the synthetic trace to FILE instead of replaying it",
+            "  --events N              synthetic events (default 1000000)",
+            "  --callers N             distinct synthetic callers (default 10000)",
+            "  --zipf S                caller skew, 0 for uniform (default 1.1)",
+            "  --gap-ms MS             mean gap between synthetic calls (default 1000)",
+            "  --start INSTANT         first synthetic call, ISO-8601 (default 2026-03-29T00:00:00Z)",
+            "  --seed N                random seed (default 1)",
+            "  --whitelist N           whitelist entries (default 100)",
+            "  --whitelist-overlap F   fraction of the whitelist taken from the callers (default 0.1)",
+            "  --contacts N            device contacts allowed to ring, picked from the callers (default 0)",
+            "  --rules N               random allow/block range rules over the caller space (default 0)",
+            "  --spam N                spam list size; the busiest callers are listed first (default 0)",
+            "  --schedule KIND         business, always, never or random:WINDOWS_PER_DAY (default business)",
+            "  --exceptions N          random all-day exceptions over two years from the start (default 0)",
+            "  --recurring N           random recurring windows, expanded over two years from the start (default 0)",
+            "  --region REGION         normalize numbers to E.164 as dialled in REGION, e.g. US (default: digits only)",
+            "  --zone ZONE             zone of the device clock (default system zone)",
+            "  --schedule-zone ZONE    zone the schedule is kept in (default: follow --zone)",
+            "  --cache N               decision cache entries, 0 to disable (default 0)",
+            "  --repeat CALLS:MINUTES  let schedule-blocked numbers through on the CALLS-th call within MINUTES (default off)",
+            "  --repeat-capacity N     numbers the repeat caller tracker remembers (default 1024)",
+            "  --warmup N              leading events excluded from the report (default 100000)");
+
+    private ReplayMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.containsKey("help")) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        Random random = new Random(seed);
+        int callerCount = Integer.parseInt(options.getOrDefault("callers", "10000"));
+        int whitelistSize = Integer.parseInt(options.getOrDefault("whitelist", "100"));
+        int fromCallers = (int) Math.min(callerCount,
+                Math.round(whitelistSize * Double.parseDouble(options.getOrDefault("whitelist-overlap", "0.1"))));
+        String[] population = SyntheticCallTrace.population(callerCount + whitelistSize - fromCallers, random);
+        String[] callers = Arrays.copyOf(population, callerCount);
+
+        if (options.containsKey("write-trace")) {
+            try (CallTrace trace = synthetic(options, callers, seed);
+                 Writer out = Files.newBufferedWriter(Paths.get(options.get("write-trace")), StandardCharsets.UTF_8)) {
+                long written = CsvCallTrace.write(trace, out);
+                System.out.println("Wrote " + written + " events to " + options.get("write-trace"));
+            }
+            return;
+        }
+
+        List<WhitelistedContact> whitelist = new ArrayList<>(whitelistSize);
+        for (int i = 0; i < fromCallers; i++) {
+            whitelist.add(new WhitelistedContact("Caller " + i, callers[random.nextInt(callerCount)]));
+        }
+        for (int i = callerCount; i < population.length; i++) {
+            whitelist.add(new WhitelistedContact("Contact " + i, population[i]));
+        }
+        ZoneId zone = options.containsKey("zone") ? ZoneId.of(options.get("zone")) : ZoneId.systemDefault();
+        ScheduleBitmap schedule = ScheduleBitmap.compile(schedule(options.getOrDefault("schedule", "business"), random));
+        LocalDate startDate = Instant.parse(options.getOrDefault("start", "2026-03-29T00:00:00Z")).atZone(zone).toLocalDate();
+        List<ScheduleException> exceptions = exceptions(Integer.parseInt(options.getOrDefault("exceptions", "0")),
+                startDate, random);
+        RecurrenceTable recurrences = RecurrenceTable.EMPTY.update(
+                recurring(Integer.parseInt(options.getOrDefault("recurring", "0")), startDate, random),
+                startDate.minusDays(1).atStartOfDay(), startDate.plusYears(2).atStartOfDay());
+        List<NumberRule> rules = rules(Integer.parseInt(options.getOrDefault("rules", "0")), random);
+        NumberNormalizer normalizer = options.containsKey("region")
+                ? E164Normalizer.forRegion(options.get("region")) : new DigitNumberNormalizer();
+        SpamBlocklist spam = spamList(Integer.parseInt(options.getOrDefault("spam", "0")), callers, random, normalizer);
+        FilterSnapshot snapshot = FilterSnapshot.compile(true, new LooseNumberMatcher(),
+                whitelist, null, rules, null, spam, schedule, null)
+                .withOverride(FilterSnapshot.EXCEPTIONS, exceptions, null)
+                .withOverride(FilterSnapshot.RECURRING, recurrences.getIndex(), null)
+                .withScheduleZone(options.containsKey("schedule-zone") ? ZoneId.of(options.get("schedule-zone")) : null)
+                .withRepeatCallerRule(repeatCallerRule(options.get("repeat")))
+                .withContacts(contacts(Integer.parseInt(options.getOrDefault("contacts", "0")), callers, random));
+
+        ReplayClock clock = new ReplayClock(zone, 0);
+        int cacheSize = Integer.parseInt(options.getOrDefault("cache", "0"));
+        DecisionCache cache = cacheSize > 0 ? new DecisionCache(cacheSize) : null;
+        RepeatCallerTracker repeatCallers = snapshot.getRepeatCallerRule().isEnabled()
+                ? new RepeatCallerTracker(Integer.parseInt(options.getOrDefault("repeat-capacity", "1024"))) : null;
+        ScreeningEngine engine = new ScreeningEngine(normalizer, clock, cache, repeatCallers);
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "100000"));
+
+        try (CallTrace trace = options.containsKey("trace")
+                ? new CsvCallTrace(Files.newBufferedReader(Paths.get(options.get("trace")), StandardCharsets.UTF_8))
+                : synthetic(options, callers, seed)) {
+            replay(trace, engine, cache, repeatCallers, snapshot, clock, warmup, zone,
+                    new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)), true));
+        }
+    }
+
+    private static void replay(CallTrace trace, ScreeningEngine engine, DecisionCache cache,
+                               RepeatCallerTracker repeatCallers, FilterSnapshot snapshot, ReplayClock clock,
+                               long warmup, ZoneId zone, PrintWriter out) throws IOException {
+        LatencyHistogram[] byOutcome = new LatencyHistogram[Outcome.values().length];
+        for (int i = 0; i < byOutcome.length; i++) {
+            byOutcome[i] = new LatencyHistogram();
+        }
+
+        long replayed = 0;
+        long firstTimestamp = 0;
+        long lastTimestamp = 0;
+        long startNanos = System.nanoTime();
+        while (trace.next()) {
+            if (replayed == warmup) {
+                // Drop what the JIT warm-up recorded so the report reflects steady state
+                ScreeningStats.reset();
+                if (cache != null) {
+                    cache.resetCounters();
+                }
+                for (LatencyHistogram histogram : byOutcome) {
+                    histogram.reset();
+                }
+                startNanos = System.nanoTime();
+                firstTimestamp = trace.timestamp();
+            }
+            clock.set(trace.timestamp());
+            long start = System.nanoTime();
+            ScreeningEngine.Decision decision = engine.screen(snapshot, trace.number());
+            long elapsed = System.nanoTime() - start;
+            ScreeningStats.record(Stage.TOTAL, elapsed);
+            byOutcome[decision.getOutcome().ordinal()].recordNanos(elapsed);
+            lastTimestamp = trace.timestamp();
+            replayed++;
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+
+        long measured = Math.max(0, replayed - warmup);
+        out.println(String.format(Locale.US, "Replayed %d events (%d warm-up) in %.1f ms, %.0f calls/s",
+                replayed, Math.min(replayed, warmup), wallNanos / 1e6,
+                measured == 0 ? 0.0 : measured / (wallNanos / 1e9)));
+        if (measured == 0) {
+            out.println("Trace shorter than the warm-up, nothing measured");
+            return;
+        }
+        out.println("Fake clock: " + Instant.ofEpochMilli(firstTimestamp).atZone(zone)
+                + " to " + Instant.ofEpochMilli(lastTimestamp).atZone(zone));
+        ScreeningStats.dump(out, "");
+        if (cache != null) {
+            cache.dump(out, "");
+        }
+        if (repeatCallers != null) {
+            repeatCallers.dump(out, "");
+        }
+        out.println("Latency by decision (us):");
+        out.println(String.format(Locale.US, "  %-26s %10s %8s %8s %8s %8s", "decision", "n", "p50", "p95", "p99", "max"));
+        for (Outcome outcome : Outcome.values()) {
+            LatencyHistogram histogram = byOutcome[outcome.ordinal()];
+            out.println(String.format(Locale.US, "  %-26s %10d %8.1f %8.1f %8.1f %8.1f", outcome.getLabel(),
+                    histogram.count(),
+                    histogram.percentileNanos(50) / 1000.0,
+                    histogram.percentileNanos(95) / 1000.0,
+                    histogram.percentileNanos(99) / 1000.0,
+                    histogram.maxNanos() / 1000.0));
+        }
+    }
+
+    private static ContactNumberSet contacts(int count, String[] callers, Random random) {
+        ContactNumberIndex index = new ContactNumberIndex();
+        for (int i = 0; i < count; i++) {
+            index.put(i, Collections.singletonList(callers[random.nextInt(callers.length)]));
+        }
+        return index.compile();
+    }
+
+    private static RepeatCallerRule repeatCallerRule(String spec) {
+        if (spec == null) {
+            return RepeatCallerRule.OFF;
+        }
+        String[] parts = spec.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("--repeat takes CALLS:MINUTES, got " + spec);
+        }
+        return new RepeatCallerRule(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private static CallTrace synthetic(Map<String, String> options, String[] callers, long seed) {
+        return new SyntheticCallTrace(callers,
+                Double.parseDouble(options.getOrDefault("zipf", "1.1")),
+                Long.parseLong(options.getOrDefault("events", "1000000")),
+                Instant.parse(options.getOrDefault("start", "2026-03-29T00:00:00Z")).toEpochMilli(),
+                Double.parseDouble(options.getOrDefault("gap-ms", "1000")),
+                seed);
+    }
+
+    /**
+     * Imports a spam list holding the {@code size} busiest callers (the hottest Zipf ranks), padded
+     * with numbers that never call once the callers run out.
+     */
+    private static SpamBlocklist spamList(int size, String[] callers, Random random, NumberNormalizer normalizer)
+            throws IOException {
+        if (size == 0) {
+            return SpamBlocklist.EMPTY;
+        }
+        Path dir = Files.createTempDirectory("replay-spam");
+        File file = dir.resolve("spam.bin").toFile();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append(i < callers.length ? callers[i] : "+1" + (200 + random.nextInt(800)) + (2000000 + random.nextInt(8000000)))
+                    .append('\n');
+        }
+        new SpamBlocklistImporter(normalizer)
+                .importTo(new BufferedReader(new StringReader(sb.toString())), file);
+        SpamBlocklist spam = SpamBlocklist.open(file);
+        // The mapping outlives the file, so the directory can go right away
+        Files.delete(file.toPath());
+        Files.delete(dir);
+        return spam;
+    }
+
+    /**
+     * Builds ranges of up to 10000 numbers inside random area codes, alternating allow and block.
+     */
+    private static List<NumberRule> rules(int count, Random random) {
+        List<NumberRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String area = "+1" + (200 + random.nextInt(800));
+            int from = 2000000 + random.nextInt(8000000);
+            int to = Math.min(9999999, from + random.nextInt(10000));
+            rules.add(new NumberRule("Rule " + i, area + from, area + to, i % 2 == 1));
+        }
+        return rules;
+    }
+
+    /**
+     * Builds vacations and on-call stretches of 1 to 14 days, alternating block and allow.
+     */
+    private static List<ScheduleException> exceptions(int count, LocalDate from, Random random) {
+        List<ScheduleException> exceptions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate first = from.plusDays(random.nextInt(2 * 365));
+            exceptions.add(ScheduleException.allDay("Exception " + i, first, first.plusDays(random.nextInt(14)), i % 2 == 1));
+        }
+        return exceptions;
+    }
+
+    /**
+     * Builds rotations of the kinds people actually work, starting within a month of {@code from},
+     * alternating block and allow.
+     */
+    private static List<RecurringWindow> recurring(int count, LocalDate from, Random random) {
+        String[] rules = {"FREQ=WEEKLY;INTERVAL=2", "FREQ=MONTHLY;BYDAY=1MO", "FREQ=DAILY;INTERVAL=8",
+                "FREQ=WEEKLY;BYDAY=SA,SU;INTERVAL=3", "FREQ=MONTHLY;BYDAY=-1FR"};
+        int[] durations = {7 * 24 * 60, 24 * 60, 4 * 24 * 60, 2 * 24 * 60, 12 * 60};
+        List<RecurringWindow> windows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(rules.length);
+            String start = from.plusDays(random.nextInt(30)).atTime(random.nextInt(24), 0).toString();
+            windows.add(new RecurringWindow("Rotation " + i, start, durations[kind], rules[kind], i % 2 == 1));
+        }
+        return windows;
+    }
+
+    private static List<DaySchedule> schedule(String kind, Random random) {
+        List<DaySchedule> schedule = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            List<TimeWindow> windows = new ArrayList<>();
+            if (kind.equals("business")) {
+                if (day >= 1 && day <= 5) {
+                    windows.add(new TimeWindow(9 * 60, 17 * 60));
+                }
+            } else if (kind.equals("always")) {
+                windows.add(new TimeWindow(0, ScheduleBitmap.MINUTES_PER_DAY));
+            } else if (kind.startsWith("random:")) {
+                int count = Integer.parseInt(kind.substring("random:".length()));
+                for (int i = 0; i < count; i++) {
+                    int start = random.nextInt(ScheduleBitmap.MINUTES_PER_DAY);
+                    windows.add(new TimeWindow(start, Math.min(ScheduleBitmap.MINUTES_PER_DAY, start + 1 + random.nextInt(180))));
+                }
+            } else if (!kind.equals("never")) {
+                throw new IllegalArgumentException("Unknown schedule: " + kind);
+            }
+            schedule.add(new DaySchedule(day, windows));
+        }
+        return schedule;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String key = args[i].substring(2);
+            if (key.equals("help")) {
+                options.put(key, "");
+            } else if (i + 1 < args.length) {
+                options.put(key, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,97 @@
+package com.shalev396.offdutycallfilter.replay;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generated trace drawing callers from a fixed population.
+ * <p>
+ * With a Zipf exponent above zero the caller at rank {@code k} is picked with probability
+ * proportional to {@code 1 / k^exponent}, so a few numbers dominate the trace the way a robocall
+ * flood does; an exponent of zero picks callers uniformly. Gaps between calls are exponentially
+ * distributed around the mean, and the same seed always produces the same trace.
+ */
+final class SyntheticCallTrace implements CallTrace {
+
+    private final String[] callers;
+    private final double[] cumulative;
+    private final long events;
+    private final double meanGapMillis;
+    private final Random random;
+
+    private long emitted;
+    private long timestamp;
+    private String number;
+
+    SyntheticCallTrace(String[] callers, double zipfExponent, long events, long startMillis,
+                       double meanGapMillis, long seed) {
+        this.callers = callers;
+        this.cumulative = zipfExponent > 0 ? zipfCumulative(callers.length, zipfExponent) : null;
+        this.events = events;
+        this.meanGapMillis = meanGapMillis;
+        this.random = new Random(seed);
+        this.timestamp = startMillis;
+    }
+
+    @Override
+    public boolean next() {
+        if (emitted == events) {
+            return false;
+        }
+        if (emitted > 0) {
+            timestamp += Math.round(-Math.log(1 - random.nextDouble()) * meanGapMillis);
+        }
+        number = callers[pickCaller()];
+        emitted++;
+        return true;
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String number() {
+        return number;
+    }
+
+    private int pickCaller() {
+        if (cumulative == null) {
+            return random.nextInt(callers.length);
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        // A miss returns (-insertionPoint - 1), the first rank whose cumulative weight exceeds the draw
+        return Math.min(index < 0 ? -index - 1 : index, callers.length - 1);
+    }
+
+    private static double[] zipfCumulative(int size, double exponent) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Builds {@code size} distinct NANP numbers in E.164 form.
+     */
+    static String[] population(int size, Random random) {
+        String[] numbers = new String[size];
+        Set<String> seen = new HashSet<>(size * 2);
+        for (int i = 0; i < size; ) {
+            String number = "+1" + (200 + random.nextInt(800)) + (2000000 + random.nextInt(8000000));
+            if (seen.add(number)) {
+                numbers[i++] = number;
+            }
+        }
+        return numbers;
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "OffDuty Call Filter"
 include(":app")
+include(":filter-core")
+include(":replay")